@@ -15,6 +15,7 @@
  */
 package com.google.jstestdriver;
 
+import com.google.jstestdriver.hooks.FileLoadPostProcessor;
 import com.google.jstestdriver.hooks.ResourcePreProcessor;
 import com.google.jstestdriver.hooks.JstdTestCaseProcessor;
 import com.google.jstestdriver.hooks.ResourceDependencyResolver;
@@ -59,7 +60,8 @@ public class ActionRunnerTest extends TestCase {
             Collections.<FileInfo>emptyList(),
             Collections.<ResourcePreProcessor>emptySet(),
             Collections.<FileInfo>emptyList(), new JstdTestCaseFactory(Collections.<JstdTestCaseProcessor>emptySet(),
-              Collections.<ResourceDependencyResolver>emptySet(), new NullStopWatch()), new NullStopWatch()));
+              Collections.<ResourceDependencyResolver>emptySet(), new NullStopWatch()), new NullStopWatch(),
+            Collections.<FileLoadPostProcessor>emptySet()));
 
     runner.runActions();
     assertTrue(action.actionRan());
@@ -34,12 +34,12 @@ public class ActionSequenceBuilderTest extends TestCase {
 
   ActionFactory actionFactory =
       new ActionFactory(null, Collections.<TestsPreProcessor>emptySet(), false,
-          null, null, new NullStopWatch());
+          null, null, new NullStopWatch(), null);
 
   public void testAddTestsWithRemoteServerAddress() throws Exception {
     List<String> tests = tests();
     ActionSequenceBuilder builder =
-        new ActionSequenceBuilder(actionFactory, new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null), new FailureCheckerAction(null, null),
+        new ActionSequenceBuilder(actionFactory, new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null, false, null, false, null, null), new FailureCheckerAction(null, null),
             new UploadAction(null),
             new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0))),
             null,
@@ -74,8 +74,9 @@ public class ActionSequenceBuilderTest extends TestCase {
             false,
             null,
             null,
-            new NullStopWatch()),
-            new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
+            new NullStopWatch(),
+            null),
+            new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null, false, null, false, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
         new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0))),
         null,
         newConfigureGatewayActionFactory(),
@@ -103,8 +104,9 @@ public class ActionSequenceBuilderTest extends TestCase {
             false,
             null,
             null,
-            new NullStopWatch()),
-            new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
+            new NullStopWatch(),
+            null),
+            new BrowserActionExecutorAction(null, null, null, null, null, 0, null, null, false, null, false, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
             new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0))),
             null,
             newConfigureGatewayActionFactory(),
@@ -135,9 +137,10 @@ public class ActionSequenceBuilderTest extends TestCase {
                 false,
                 null,
                 null,
-                new NullStopWatch()),
+                new NullStopWatch(),
+                null),
             new BrowserActionExecutorAction(
-                null, null, null, null, null, 0, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
+                null, null, null, null, null, 0, null, null, false, null, false, null, null), new FailureCheckerAction(null, null), new UploadAction(null),
             new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0))),
             null,
             newConfigureGatewayActionFactory(),
@@ -84,6 +84,9 @@ public class BrowserStartupActionTest extends TestCase {
       return nextId;
     }
 
+    public void prefetch(String browserId, JstdTestCase testCase) {
+    }
+
     public void uploadFiles(String browserId, JstdTestCase testCase) {
     }
   }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.jstestdriver.Response.ResponseType;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class CommandResponseReaderTest extends TestCase {
+  private final String baseUrl = "http://localhost";
+  private final Gson gson = new Gson();
+
+  public void testPollsUntilLast() throws Exception {
+    MockServer server = new MockServer();
+    server.expect(baseUrl + "/cmd?id=1", message(ResponseType.LOG, false));
+    server.expect(baseUrl + "/cmd?id=1", message(ResponseType.TEST_RESULT, true));
+
+    RecordingReceiver receiver = new RecordingReceiver();
+    new CommandResponseReader(server, baseUrl, false).read("1", receiver);
+
+    assertEquals(Lists.newArrayList(ResponseType.LOG, ResponseType.TEST_RESULT), receiver.types);
+  }
+
+  public void testStreamsAllMessagesInOneRequest() throws Exception {
+    MockServer server = new MockServer();
+    server.expect(baseUrl + "/cmd?id=1&stream=true",
+        message(ResponseType.LOG, false) + "\n\n" + message(ResponseType.TEST_RESULT, true) + "\n");
+
+    RecordingReceiver receiver = new RecordingReceiver();
+    new CommandResponseReader(server, baseUrl, true).read("1", receiver);
+
+    assertEquals(Lists.newArrayList(ResponseType.LOG, ResponseType.TEST_RESULT), receiver.types);
+  }
+
+  public void testReopensStreamUntilReceiverIsDone() throws Exception {
+    MockServer server = new MockServer();
+    server.expect(baseUrl + "/cmd?id=1&stream=true", message(ResponseType.LOG, true));
+    server.expect(baseUrl + "/cmd?id=1&stream=true", message(ResponseType.RESET_RESULT, true));
+
+    RecordingReceiver receiver = new RecordingReceiver() {
+      @Override
+      public boolean receive(StreamMessage message) {
+        super.receive(message);
+        return ResponseType.RESET_RESULT.equals(message.getResponse().getResponseType());
+      }
+    };
+    new CommandResponseReader(server, baseUrl, true).read("1", receiver);
+
+    assertEquals(Lists.newArrayList(ResponseType.LOG, ResponseType.RESET_RESULT), receiver.types);
+  }
+
+  private String message(ResponseType type, boolean last) {
+    return gson.toJson(new StreamMessage(last, new Response(type.name(), "{}", null, "", 0L)));
+  }
+
+  private static class RecordingReceiver implements CommandResponseReader.Receiver {
+    final List<ResponseType> types = Lists.newArrayList();
+
+    public boolean receive(StreamMessage message) {
+      types.add(message.getResponse().getResponseType());
+      return message.isLast();
+    }
+  }
+}
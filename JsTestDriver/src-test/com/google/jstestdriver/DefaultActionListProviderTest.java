@@ -72,7 +72,7 @@ public class DefaultActionListProviderTest extends TestCase {
                                                    XmlPrinter xmlPrinter) {
     ActionFactory actionFactory =
         new ActionFactory(null, Collections.<TestsPreProcessor>emptySet(), false,
-            null, null, new NullStopWatch());
+            null, null, new NullStopWatch(), null);
     return new DefaultActionListProvider(
         tests,
         Collections.<String>emptyList(),
@@ -93,6 +93,11 @@ public class DefaultActionListProviderTest extends TestCase {
                 null,
                 -1,
                 null,
+                null,
+                false,
+                null,
+                false,
+                null,
                 null),
             new FailureCheckerAction(null, null),
             new UploadAction(null),
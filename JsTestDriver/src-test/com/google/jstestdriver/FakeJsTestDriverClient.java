@@ -93,6 +93,9 @@ final public class FakeJsTestDriverClient implements JsTestDriverClient {
   public String getNextBrowserId() {
     return null;
   }
+  public void prefetch(String browserId, JstdTestCase testCase) {
+  }
+
   public void uploadFiles(String browserId, JstdTestCase testCase) {
     
   }
@@ -47,4 +47,17 @@ public class FileInfoTest extends TestCase {
     assertTrue("A different length means replace", longer.shouldReplaceWith(shorter));
     */
   }
+
+  public void testShouldReplaceWithComparesDigests() throws Exception {
+    FileInfo oldFile = new FileInfo("a/b/c/file.js", 0, -1, false, false, null, "a/b/c/file.js");
+    oldFile.setDigest("abc");
+    FileInfo touched = new FileInfo("a/b/c/file.js", 10, -1, false, false, null, "a/b/c/file.js");
+    touched.setDigest("abc");
+    FileInfo changed = new FileInfo("a/b/c/file.js", 0, -1, false, false, null, "a/b/c/file.js");
+    changed.setDigest("def");
+
+    assertFalse("The same contents means noreplace", oldFile.shouldReplaceWith(touched));
+    assertTrue("Different contents means replace", oldFile.shouldReplaceWith(changed));
+    assertEquals("Loading keeps the digest", "abc", oldFile.load("foo", 1).getDigest());
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import junit.framework.TestCase;
+
+public class FileLoadBudgetTest extends TestCase {
+
+  public void testDefaultBudget() throws Exception {
+    assertEquals(FileLoadBudget.DEFAULT_BYTES, new FileLoadBudget().getBytes());
+  }
+
+  public void testSlowBrowserGetsSmallerChunks() throws Exception {
+    FileLoadBudget budget = new FileLoadBudget();
+    // 100 bytes per millisecond.
+    budget.record(200 * 1000, 2000);
+    assertEquals(100 * FileLoadBudget.TARGET_CHUNK_MILLIS, budget.getBytes());
+  }
+
+  public void testFastBrowserGetsLargerChunks() throws Exception {
+    FileLoadBudget budget = new FileLoadBudget();
+    budget.record(4 * 1024 * 1024, 1000);
+    assertTrue(budget.getBytes() > FileLoadBudget.DEFAULT_BYTES);
+  }
+
+  public void testBudgetIsBounded() throws Exception {
+    FileLoadBudget budget = new FileLoadBudget();
+    budget.record(1, 100000);
+    assertEquals(FileLoadBudget.MIN_BYTES, budget.getBytes());
+    budget = new FileLoadBudget();
+    budget.record(Integer.MAX_VALUE, 0);
+    assertEquals(FileLoadBudget.MAX_BYTES, budget.getBytes());
+  }
+
+  public void testUnknownLengthsAreIgnored() throws Exception {
+    FileLoadBudget budget = new FileLoadBudget();
+    budget.record(0, 1000);
+    assertEquals(FileLoadBudget.DEFAULT_BYTES, budget.getBytes());
+  }
+}
@@ -22,6 +22,7 @@ import com.google.jstestdriver.SlaveBrowser.BrowserState;
 import com.google.jstestdriver.browser.BrowserFileSet;
 import com.google.jstestdriver.browser.BrowserIdStrategy;
 import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.Sessions;
 import com.google.jstestdriver.runner.RunnerType;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 import com.google.jstestdriver.server.handlers.CaptureHandler;
@@ -72,7 +73,7 @@ public class FileSetRequestHandlerTest extends TestCase {
     assertEquals(
         new BrowserFileSet(Lists.newArrayList(createFile(fileOne, 3)),
             Lists.newArrayList(createFile(fileThree, 3)), false),
-            browserFileCheck.handle(browser, gson.toJson(testCaseToRun)));
+            browserFileCheck.handle(browser, Sessions.DEFAULT_SESSION, gson.toJson(testCaseToRun)));
   }
 
   public void testUploadFilesToServer() throws Exception {
@@ -86,7 +87,7 @@ public class FileSetRequestHandlerTest extends TestCase {
     JstdTestCase jstdTestCase = new JstdTestCase(Lists.newArrayList(createFile(fileOne, 3), createFile(fileTwo, 1)),
         Collections.<FileInfo>emptyList(),
         Collections.<FileInfo>emptyList(), "one");
-    serverFileUpload.handle(null, gson.toJson(Lists.<JstdTestCase>newArrayList(jstdTestCase)));
+    serverFileUpload.handle(null, Sessions.DEFAULT_SESSION, gson.toJson(Lists.<JstdTestCase>newArrayList(jstdTestCase)));
 
     assertEquals(jstdTestCase, store.getCase(jstdTestCase.getId()));
   }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.jstestdriver.Response.ResponseType;
+import com.google.jstestdriver.hooks.FileInfoScheme;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.model.NullPathPrefix;
+import com.google.jstestdriver.util.NullStopWatch;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+public class FileUploaderTest extends TestCase {
+
+  private final Gson gson = new Gson();
+
+  /** Records the order of command posts and result fetches. */
+  private class RecordingServer implements Server {
+    final List<String> requests = Lists.newArrayList();
+    final StringWriter compressedJson = new StringWriter();
+    private int loaded = 0;
+
+    public String fetch(String url) {
+      requests.add("fetch");
+      loaded++;
+      return gson.toJson(new StreamMessage(true, new Response(
+          ResponseType.FILE_LOAD_RESULT.name(), String.valueOf(loaded), null, "", 0)));
+    }
+
+    public void fetchStream(String url, LineHandler handler) {
+      handler.handle(fetch(url));
+    }
+
+    public String post(String url, Map<String, String> params) {
+      requests.add("post");
+      return "";
+    }
+
+    public String postJson(String url, JsonElement json) {
+      return "";
+    }
+
+    public String postCompressedJson(String url, JsonBody body) {
+      requests.add("postCompressedJson");
+      try {
+        body.write(new JsonWriter(compressedJson));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return "";
+    }
+
+    public String startSession(String baseUrl, String id) {
+      return "ID";
+    }
+
+    public void stopSession(String baseUrl, String id, String sessionId) {
+    }
+  }
+
+  /** Collects the streamed responses. */
+  private static class CollectingResponseStream implements ResponseStream {
+    final List<String> responses = Lists.newArrayList();
+
+    public void stream(Response response) {
+      responses.add(response.getResponse());
+    }
+
+    public void finish() {
+    }
+  }
+
+  public void testUploadWaitsForEachChunkByDefault() throws Exception {
+    RecordingServer server = new RecordingServer();
+    CollectingResponseStream stream = new CollectingResponseStream();
+
+    createUploader(server, 1).uploadToTheBrowser("1", stream, createFiles(3), 1);
+
+    assertEquals(Lists.newArrayList("post", "fetch", "post", "fetch", "post", "fetch"),
+        server.requests);
+    assertEquals(Lists.newArrayList("1", "2", "3"), stream.responses);
+  }
+
+  public void testUploadQueuesChunksUpToThePipelineDepth() throws Exception {
+    RecordingServer server = new RecordingServer();
+    CollectingResponseStream stream = new CollectingResponseStream();
+
+    createUploader(server, 2).uploadToTheBrowser("1", stream, createFiles(3), 1);
+
+    assertEquals(Lists.newArrayList("post", "post", "fetch", "post", "fetch", "fetch"),
+        server.requests);
+    assertEquals(Lists.newArrayList("1", "2", "3"), stream.responses);
+  }
+
+  public void testUploadPacksChunksByBytes() throws Exception {
+    RecordingServer server = new RecordingServer();
+    CollectingResponseStream stream = new CollectingResponseStream();
+    List<FileInfo> files = Lists.newArrayList(
+        new FileInfo("small1.js", 0, 10, false, false, null, "small1.js"),
+        new FileInfo("small2.js", 0, 10, false, false, null, "small2.js"),
+        new FileInfo("large.js", 0, 100, false, false, null, "large.js"),
+        new FileInfo("small3.js", 0, 10, false, false, null, "small3.js"));
+
+    createUploader(server, 1).uploadToTheBrowser("1", stream, files, 50, 50);
+
+    assertEquals("Expected chunks of [small1, small2], [large], [small3]",
+        Lists.newArrayList("post", "fetch", "post", "fetch", "post", "fetch"),
+        server.requests);
+  }
+
+  public void testUploadToServerStreamsLoadedFiles() throws Exception {
+    RecordingServer server = new RecordingServer();
+    FileInfo dep = new FileInfo("dep.js", 1, -1, false, false, null, "dep.js");
+    FileInfo test = new FileInfo("test.js", 1, -1, false, false, null, "test.js");
+    MockFileLoader fileLoader = new MockFileLoader();
+    fileLoader.addExpectation(dep, "var dep;");
+    fileLoader.addExpectation(test, "var test;");
+
+    new FileUploader(new NullStopWatch(), server, "http://localhost", fileLoader,
+        new DefaultFileFilter(), ImmutableSet.<FileInfoScheme>of(), new NullPathPrefix(), false, 1,
+        "")
+        .uploadToServer(Lists.newArrayList(new JstdTestCaseDelta(Lists.newArrayList(dep),
+            Lists.newArrayList(test), Lists.<FileInfo>newArrayList())));
+
+    assertEquals(Lists.newArrayList("postCompressedJson"), server.requests);
+    List<JstdTestCaseDelta> deltas = gson.fromJson(server.compressedJson.toString(),
+        new TypeToken<List<JstdTestCaseDelta>>() {}.getType());
+    assertEquals(1, deltas.size());
+    assertEquals("var dep;", deltas.get(0).getDependencies().get(0).getData());
+    assertEquals("var test;", deltas.get(0).getTests().get(0).getData());
+    assertTrue(deltas.get(0).getPlugins().isEmpty());
+  }
+
+  private List<FileInfo> createFiles(int count) {
+    List<FileInfo> files = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      files.add(new FileInfo("file" + i + ".js", 0, -1, false, false, null, "file" + i + ".js"));
+    }
+    return files;
+  }
+
+  private FileUploader createUploader(Server server, int pipelineDepth) {
+    return new FileUploader(new NullStopWatch(), server, "http://localhost", new MockFileLoader(),
+        new DefaultFileFilter(), ImmutableSet.<FileInfoScheme>of(), new NullPathPrefix(), false,
+        pipelineDepth, "");
+  }
+}
@@ -176,6 +176,9 @@ public class IDEPluginActionBuilderTest extends TestCase {
       return gson.toJson(Arrays.asList(browserInfo));
     }
 
+    public void fetchStream(String url, LineHandler handler) {
+    }
+
     public String post(String url, Map<String, String> params) {
       return null;
     }
@@ -184,6 +187,10 @@ public class IDEPluginActionBuilderTest extends TestCase {
       return null;
     }
 
+    public String postCompressedJson(String url, JsonBody body) {
+      return null;
+    }
+
     public String startSession(String baseUrl, String id) {
       return null;
     }
@@ -22,14 +22,11 @@ import java.util.List;
 
 import junit.framework.TestCase;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.inject.Provider;
 import com.google.jstestdriver.browser.BrowserFileSet;
-import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.model.JstdTestCase;
-import com.google.jstestdriver.model.NullPathPrefix;
 import com.google.jstestdriver.util.NullStopWatch;
 
 /**
@@ -115,15 +112,9 @@ public class JsTestDriverClientTest extends TestCase {
 
     final NullStopWatch stopWatch = new NullStopWatch();
     CommandTaskFactory commandTaskFactory =
-        new CommandTaskFactory(
-            new DefaultFileFilter(),
-            null,
-            null,
-            stopWatch,
-            ImmutableSet.<FileInfoScheme>of(new HttpFileInfoScheme()),
-            new NullPathPrefix());
+        new CommandTaskFactory(null, stopWatch, false);
     JsTestDriverClient client = new JsTestDriverClientImpl(commandTaskFactory, "http://localhost",
-        server, false, null, new NullStopWatch());
+        server, false, null, new NullStopWatch(), "");
     FakeResponseStream stream = new FakeResponseStream();
 
     client.eval("1", stream, "cmd",
@@ -153,17 +144,14 @@ public class JsTestDriverClientTest extends TestCase {
         + "{\"id\":1, \"name\":\"name1\", \"version\":\"ver1\", \"os\":\"os1\"}]");
     final NullStopWatch stopWatch = new NullStopWatch();
     CommandTaskFactory commandTaskFactory =
-        new CommandTaskFactory(new DefaultFileFilter(), null, new Provider<HeartBeatManager>() {
+        new CommandTaskFactory(new Provider<HeartBeatManager>() {
           @Override
           public HeartBeatManager get() {
             return new HeartBeatManagerStub();
           }
-        },
-        stopWatch,
-        ImmutableSet.<FileInfoScheme>of(new HttpFileInfoScheme()),
-        new NullPathPrefix());
+        }, stopWatch, false);
     JsTestDriverClient client = new JsTestDriverClientImpl(commandTaskFactory, "http://localhost",
-        server, false, null, new NullStopWatch());
+        server, false, null, new NullStopWatch(), "");
     Collection<BrowserInfo> browsersCollection = client.listBrowsers();
     List<BrowserInfo> browsers = new ArrayList<BrowserInfo>(browsersCollection);
 
@@ -209,14 +197,14 @@ public class JsTestDriverClientTest extends TestCase {
         + "\"last\":true}");
     final NullStopWatch stopWatch = new NullStopWatch();
     CommandTaskFactory commandTaskFactory =
-        new CommandTaskFactory(new DefaultFileFilter(), new MockFileLoader(), new Provider<HeartBeatManager>() {
+        new CommandTaskFactory(new Provider<HeartBeatManager>() {
           @Override
           public HeartBeatManager get() {
             return new HeartBeatManagerStub();
           }
-        }, stopWatch, ImmutableSet.<FileInfoScheme>of(new HttpFileInfoScheme()), new NullPathPrefix());
+        }, stopWatch, false);
     JsTestDriverClient client = new JsTestDriverClientImpl(commandTaskFactory, "http://localhost",
-        server, false, null, new NullStopWatch());
+        server, false, null, new NullStopWatch(), "");
     FakeResponseStream stream = new FakeResponseStream();
 
     client.runAllTests("1", stream, false,
@@ -245,22 +233,15 @@ public class JsTestDriverClientTest extends TestCase {
         + "\"browser\":{\"name\":\"browser\"},\"error\":\"error2\",\"executionTime\":123},"
         + "\"last\":true}");
     final NullStopWatch stopWatch = new NullStopWatch();
-    DefaultFileFilter filter = new DefaultFileFilter();
-    ImmutableSet<FileInfoScheme> schemes = ImmutableSet.<FileInfoScheme>of(new HttpFileInfoScheme());
     CommandTaskFactory commandTaskFactory =
-        new CommandTaskFactory(filter,
-            new MockFileLoader(),
-            new Provider<HeartBeatManager>() {
+        new CommandTaskFactory(new Provider<HeartBeatManager>() {
           @Override
           public HeartBeatManager get() {
             return new HeartBeatManagerStub();
           }
-        },
-        stopWatch,
-        schemes,
-        new NullPathPrefix());
+        }, stopWatch, false);
     JsTestDriverClient client = new JsTestDriverClientImpl(commandTaskFactory, "http://localhost",
-        server, false, null, new NullStopWatch());
+        server, false, null, new NullStopWatch(), "");
     FakeResponseStream stream = new FakeResponseStream();
 
     ArrayList<String> tests = new ArrayList<String>();
@@ -272,4 +253,39 @@ public class JsTestDriverClientTest extends TestCase {
 
     assertEquals("PASSED", stream.getResponse().getResponse());
   }
+
+  public void testPrefetchesTheNextTestCaseAfterTheCommand() throws Exception {
+    JstdTestCase testCase = new JstdTestCase(Collections.<FileInfo>emptyList(),
+        Collections.<FileInfo>emptyList(), Collections.<FileInfo>emptyList(), "one");
+    JstdTestCase next = new JstdTestCase(Collections.<FileInfo>emptyList(),
+        Collections.<FileInfo>emptyList(), Collections.<FileInfo>emptyList(), "two");
+    MockServer server = new MockServer();
+
+    server.expect("http://localhost/heartbeat?id=1", "OK");
+    server.expect("http://localhost/cmd?POST?{data={\"command\":\"runTests\","
+        + "\"parameters\":[\"[\\\"all\\\"]\",\"false\",\"\"]}, id=1,"
+        + " prefetchTestCaseId=two, testCaseId=one}", "");
+    server.expect("http://localhost/cmd?id=1", "{\"response\":{\"response\":\"PASSED\","
+        + "\"browser\":{\"name\":\"browser\"},\"error\":\"error2\",\"executionTime\":123},"
+        + "\"last\":true}");
+    server.expect("http://localhost/heartbeat?id=1", "OK");
+    server.expect("http://localhost/cmd?POST?{data={\"command\":\"runTests\","
+        + "\"parameters\":[\"[\\\"all\\\"]\",\"false\",\"\"]}, id=1, testCaseId=two}", "");
+    server.expect("http://localhost/cmd?id=1", "{\"response\":{\"response\":\"PASSED\","
+        + "\"browser\":{\"name\":\"browser\"},\"error\":\"error2\",\"executionTime\":123},"
+        + "\"last\":true}");
+    CommandTaskFactory commandTaskFactory =
+        new CommandTaskFactory(new Provider<HeartBeatManager>() {
+          @Override
+          public HeartBeatManager get() {
+            return new HeartBeatManagerStub();
+          }
+        }, new NullStopWatch(), false);
+    JsTestDriverClient client = new JsTestDriverClientImpl(commandTaskFactory, "http://localhost",
+        server, false, null, new NullStopWatch(), "");
+
+    client.prefetch("1", next);
+    client.runAllTests("1", new FakeResponseStream(), false, testCase);
+    client.runAllTests("1", new FakeResponseStream(), false, next);
+  }
 }
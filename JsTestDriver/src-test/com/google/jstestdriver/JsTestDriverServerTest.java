@@ -15,7 +15,7 @@
  */
 package com.google.jstestdriver;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -23,6 +23,8 @@ import com.google.jstestdriver.browser.BrowserIdStrategy;
 import com.google.jstestdriver.config.ExecutionType;
 import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.hooks.ServerListener;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
 import com.google.jstestdriver.model.NullPathPrefix;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 import com.google.jstestdriver.util.NullStopWatch;
@@ -55,15 +57,18 @@ public class JsTestDriverServerTest extends TestCase {
 
   private JsTestDriverServerImpl server;
 
+  private JstdTestCaseStore store = new JstdTestCaseStore();
+
   private JsTestDriverServerImpl createServer(ServerListener listener) {
     server = new JsTestDriverServerImpl(4224, 4225,
-        new JstdTestCaseStore(),
+        store,
         browsers,
         SlaveBrowser.TIMEOUT,
         new NullPathPrefix(),
         Sets.newHashSet(listener),
         Collections.<FileInfoScheme>emptySet(),
-        ExecutionType.INTERACTIVE);
+        ExecutionType.INTERACTIVE,
+        false);
     return server;
   }
 
@@ -126,18 +131,13 @@ public class JsTestDriverServerTest extends TestCase {
   public void testListBrowsers() throws Exception {
     final NullStopWatch stopWatch = new NullStopWatch();
     JsTestDriverClient client = new JsTestDriverClientImpl(
-        new CommandTaskFactory(
-            new DefaultFileFilter(),
-            null,
-            null,
-            stopWatch,
-           ImmutableSet.<FileInfoScheme>of(new HttpFileInfoScheme()),
-           new NullPathPrefix()),
+        new CommandTaskFactory(null, stopWatch, false),
         "http://localhost:4224",
         new HttpServer(new NullStopWatch()),
         false,
         null,
-        new NullStopWatch());
+        new NullStopWatch(),
+        "");
 
     TestListener listener = new TestListener();
     createServer(listener);
@@ -163,6 +163,28 @@ public class JsTestDriverServerTest extends TestCase {
     assertTrue(listener.stopped);
   }
 
+  public void testCompressedDeltaUpload() throws Exception {
+    createServer(new TestListener());
+    server.start();
+    final FileInfo file = new FileInfo("foo.js", 1, -1, false, false, null, "foo.js");
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(), Lists.newArrayList(file),
+        Lists.<FileInfo>newArrayList(), "1"));
+    MockFileLoader fileLoader = new MockFileLoader();
+    fileLoader.addExpectation(file, "var foo;");
+    for (Server client : Lists.newArrayList(new HttpServer(new NullStopWatch()),
+        new PooledHttpServer(new NullStopWatch()))) {
+      new FileUploader(new NullStopWatch(), client, "http://localhost:4224", fileLoader,
+          new DefaultFileFilter(), Collections.<FileInfoScheme>emptySet(), new NullPathPrefix(),
+          false, 1, "").uploadToServer(Lists.newArrayList(new JstdTestCaseDelta(
+              Lists.<FileInfo>newArrayList(), Lists.newArrayList(file),
+              Lists.<FileInfo>newArrayList())));
+
+      assertEquals("var foo;", store.getCase("1").getTests().get(0).getData());
+      store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+          Lists.newArrayList(file), Lists.<FileInfo>newArrayList()));
+    }
+  }
+
   public void testGetShouldNotBeSentAsPost() throws Exception {
     createServer(new TestListener());
     server.start();
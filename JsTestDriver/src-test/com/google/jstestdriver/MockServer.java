@@ -15,6 +15,8 @@
  */
 package com.google.jstestdriver;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -23,6 +25,7 @@ import java.util.Queue;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
@@ -43,6 +46,12 @@ public class MockServer implements Server {
     return get(url);
   }
 
+  public void fetchStream(String url, LineHandler handler) {
+    for (String line : get(url).split("\n")) {
+      handler.handle(line);
+    }
+  }
+
   public String post(String url, Map<String, String> params) {
     return get(url + "?POST?" + params);
   }
@@ -51,6 +60,16 @@ public class MockServer implements Server {
     return get(url + "?POST?" + json);
   }
 
+  public String postCompressedJson(String url, JsonBody body) {
+    StringWriter json = new StringWriter();
+    try {
+      body.write(new JsonWriter(json));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return get(url + "?POST?" + json);
+  }
+
   private String get(String request) {
     Queue<String> response = expectations.get(request);
     if (response == null || response.size() == 0) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.jstestdriver.util.NullStopWatch;
+
+import junit.framework.TestCase;
+
+import org.mortbay.jetty.bio.SocketConnector;
+import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+public class PooledHttpServerTest extends TestCase {
+
+  private org.mortbay.jetty.Server jetty;
+  private String baseUrl;
+  private String url;
+
+  @Override
+  protected void setUp() throws Exception {
+    SocketConnector connector = new SocketConnector();
+    // any free port, read back once started.
+    connector.setPort(0);
+    jetty = new org.mortbay.jetty.Server();
+    jetty.addConnector(connector);
+    Context context = new Context(jetty, "/", Context.SESSIONS);
+    context.addServlet(new ServletHolder(new EchoServlet()), "/echo");
+    context.addServlet(new ServletHolder(new FailingServlet()), "/fail");
+    jetty.start();
+    baseUrl = "http://localhost:" + connector.getLocalPort();
+    url = baseUrl + "/echo";
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    jetty.stop();
+  }
+
+  public void testConvertMapToUrlEncodedString() throws Exception {
+    Map<String, String> map = new LinkedHashMap<String, String>(); // preserves order
+    PooledHttpServer server = new PooledHttpServer(new NullStopWatch());
+
+    map.put("data", "1+3");
+    map.put("id", "2");
+    assertEquals("data=1%2B3&id=2", server.convertParamsToString(map));
+  }
+
+  public void testReusesConnections() throws Exception {
+    PooledHttpServer server = new PooledHttpServer(new NullStopWatch());
+
+    assertEquals("GET:", server.fetch(url));
+    assertEquals("GET:", server.fetch(url));
+    assertEquals("GET:", server.fetch(url));
+
+    assertEquals(1, server.getConnectionsOpened());
+    assertEquals(2, server.getConnectionsReused());
+  }
+
+  public void testPostRoundTripsUnicode() throws Exception {
+    PooledHttpServer server = new PooledHttpServer(new NullStopWatch());
+    Map<String, String> params = new LinkedHashMap<String, String>();
+    params.put("data", "caf\u00e9 \u2603");
+
+    String response = server.post(url, params);
+
+    assertEquals("POST:caf\u00e9 \u2603", response);
+    assertTrue(server.getBytesSent() > 0);
+    assertEquals(response.getBytes(PooledHttpServer.CHARSET).length,
+        server.getBytesReceived());
+  }
+
+  public void testFailsOnAnErrorStatus() throws Exception {
+    PooledHttpServer server = new PooledHttpServer(new NullStopWatch());
+    String failUrl = baseUrl + "/fail";
+
+    try {
+      server.fetch(failUrl);
+      fail("Expected the fetch to fail on the error status.");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause().getMessage().contains("500"));
+    }
+    try {
+      server.post(failUrl, new LinkedHashMap<String, String>());
+      fail("Expected the post to fail on the error status.");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause().getMessage().contains("500"));
+    }
+    assertEquals("GET:", server.fetch(url));
+  }
+
+  private static final class FailingServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+      resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private static final class EchoServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+      resp.setContentType("text/plain; charset=UTF-8");
+      resp.getWriter().write("GET:");
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+      resp.setContentType("text/plain; charset=UTF-8");
+      resp.getWriter().write("POST:" + req.getParameter("data"));
+    }
+  }
+}
@@ -20,10 +20,17 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
+import com.google.common.collect.Lists;
 import com.google.jstestdriver.hooks.FileLoadPostProcessor;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+import com.google.jstestdriver.util.ContentDigest;
+import com.google.jstestdriver.util.NullStopWatch;
 
 public class ProcessingFileLoaderTest extends TestCase {
 
@@ -150,4 +157,39 @@ public class ProcessingFileLoaderTest extends TestCase {
     assertEquals(info.getTimestamp(), actual.get(0).getTimestamp());
     assertEquals(info.isServeOnly(), actual.get(0).isServeOnly());
   }
+
+  public void testSwitchingCoverageReplacesTheStoredContents() throws Exception {
+    FileInfo file = new FileInfo("foo.js", 1234, -1, false, false, null, "foo.js");
+    file.setDigest(ContentDigest.of("var foo;"));
+    FileReader reader = new MockFileReader().expected("foo.js", "var foo;");
+    Set<FileLoadPostProcessor> plain = Collections.emptySet();
+    Set<FileLoadPostProcessor> coverage = Collections.<FileLoadPostProcessor>singleton(
+        new FileLoadPostProcessor() {
+          public FileInfo process(FileInfo loaded) {
+            return loaded.load("LCOV(" + loaded.getData() + ");", loaded.getTimestamp());
+          }
+        });
+    JstdTestCaseStore store = new JstdTestCaseStore();
+
+    assertEquals("var foo;", run(store, file, plain, reader));
+    assertEquals("LCOV(var foo;);", run(store, file, coverage, reader));
+    assertEquals("LCOV(var foo;);", run(store, file, coverage, reader));
+    assertEquals("var foo;", run(store, file, plain, reader));
+  }
+
+  /**
+   * Uploads a test case of a file the way a client run does.
+   * @return The contents the server serves for the file afterwards.
+   */
+  private String run(JstdTestCaseStore store, FileInfo file,
+      Set<FileLoadPostProcessor> processors, FileReader reader) {
+    FileInfo identified =
+        file.identifiedBy(ProcessingFileLoader.processedDigest(file.getDigest(), processors));
+    JstdTestCaseDelta delta = store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.newArrayList(identified), Lists.<FileInfo>newArrayList(), "default"));
+    assertEquals("Expected the file to be uploaded", 1, delta.getTests().size());
+    store.applyDelta(delta.loadFiles(
+        new ProcessingFileLoader(reader, processors, new File("."), new NullStopWatch())));
+    return store.getFileContent(file.getDisplayPath());
+  }
 }
@@ -25,6 +25,7 @@ import junit.framework.TestCase;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.jstestdriver.browser.TestImpact;
 import com.google.jstestdriver.hooks.TestsPreProcessor;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.RunData;
@@ -45,7 +46,8 @@ public class RunTestsActionTest extends TestCase {
 
     final RunTestsAction action =
         new RunTestsAction(new FakeResponseStreamFactory(stream), tests, captureConsole,
-            Collections.<TestsPreProcessor> emptySet(), new NullStopWatch());
+            Collections.<TestsPreProcessor> emptySet(), new NullStopWatch(),
+            new TestImpact("", tests));
     final FakeJsTestDriverClient client = new FakeJsTestDriverClient(Collections.<BrowserInfo>emptyList());
     action.run(browserId, client, new RunData(
         Collections.<ResponseStream>emptyList(),
@@ -74,7 +76,7 @@ public class RunTestsActionTest extends TestCase {
 
     final RunTestsAction action =
         new RunTestsAction(new FakeResponseStreamFactory(stream), tests, captureConsole,
-            preProcessors, new NullStopWatch());
+            preProcessors, new NullStopWatch(), new TestImpact("", tests));
     final FakeJsTestDriverClient client = new FakeJsTestDriverClient(Collections.<BrowserInfo>emptyList());
     action.run(browserId, client, new RunData(Collections.<ResponseStream>emptyList(), Collections.<JstdTestCase>emptyList(), null), null);
 
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.jstestdriver.SessionQueue.Ticket;
+
+import junit.framework.TestCase;
+
+import org.mortbay.util.ajax.Continuation;
+
+public class SessionQueueTest extends TestCase {
+  private static final long TIMEOUT = 2000;
+
+  /** Suspends like Jetty's, by throwing, until it is resumed. */
+  private static class FakeContinuation implements Continuation {
+    boolean pending;
+    boolean resumed;
+    long timeout;
+
+    public boolean suspend(long timeout) {
+      if (pending) {
+        pending = false;
+        return resumed;
+      }
+      this.timeout = timeout;
+      pending = true;
+      throw new SuspendedException();
+    }
+
+    public void resume() {
+      resumed = true;
+    }
+
+    public void reset() {}
+
+    public boolean isNew() {
+      return !pending;
+    }
+
+    public boolean isPending() {
+      return pending;
+    }
+
+    public boolean isResumed() {
+      return resumed;
+    }
+
+    public Object getObject() {
+      return null;
+    }
+
+    public void setObject(Object object) {}
+  }
+
+  private static class SuspendedException extends RuntimeException {}
+
+  private Lock lock;
+  private MockTime time;
+  private SessionQueue queue;
+
+  @Override
+  protected void setUp() throws Exception {
+    lock = new Lock();
+    time = new MockTime(100000);
+    queue = new SessionQueue(lock, time, TIMEOUT);
+  }
+
+  public void testGrantsAFreeLockRightAway() throws Exception {
+    Ticket ticket = queue.enqueue(0);
+
+    String sessionId = queue.await(ticket, 0);
+
+    assertNotNull(sessionId);
+    assertEquals(sessionId, lock.getSessionId());
+    assertTrue(lock.isLocked());
+    assertNull(queue.getTicket(ticket.getNumber()));
+  }
+
+  public void testGrantsInOrderOfArrival() throws Exception {
+    String holder = queue.await(queue.enqueue(0), 0);
+    Ticket first = queue.enqueue(0);
+    Ticket second = queue.enqueue(0);
+
+    assertNull(queue.await(first, 0));
+    assertEquals(1, queue.getPosition(first));
+    assertEquals(2, queue.getPosition(second));
+
+    queue.release(holder);
+
+    assertNull(queue.await(second, 0));
+    String sessionId = queue.await(first, 0);
+    assertNotNull(sessionId);
+    assertEquals(1, queue.getPosition(second));
+
+    queue.release(sessionId);
+    assertNotNull(queue.await(second, 0));
+  }
+
+  public void testGrantsHigherPrioritiesFirst() throws Exception {
+    String holder = queue.await(queue.enqueue(0), 0);
+    Ticket low = queue.enqueue(0);
+    Ticket high = queue.enqueue(5);
+
+    assertEquals(1, queue.getPosition(high));
+    assertEquals(2, queue.getPosition(low));
+
+    queue.release(holder);
+
+    assertNull(queue.await(low, 0));
+    assertNotNull(queue.await(high, 0));
+  }
+
+  public void testGrantsTheLockOfAStalledHolder() throws Exception {
+    queue.await(queue.enqueue(0), 0);
+    Ticket ticket = queue.enqueue(0);
+
+    time.add(TIMEOUT);
+    assertNull(queue.await(ticket, 0));
+
+    time.add(1);
+    assertNotNull(queue.await(ticket, 0));
+  }
+
+  public void testFailsAGrantLostBeforeItWasPickedUp() throws Exception {
+    Ticket slow = queue.enqueue(0);
+
+    time.add(TIMEOUT + 1);
+    String sessionId = queue.await(queue.enqueue(0), 0);
+
+    assertEquals(sessionId, lock.getSessionId());
+    assertEquals(SessionQueue.FAILED, queue.await(slow, 0));
+    assertNull(queue.getTicket(slow.getNumber()));
+  }
+
+  public void testKeepsWaitingIfTheLockIsTakenWhileGranting() throws Exception {
+    final boolean[] taken = {true};
+    lock = new Lock() {
+      @Override
+      public synchronized boolean tryLock(String sessionId) {
+        return !taken[0] && super.tryLock(sessionId);
+      }
+    };
+    queue = new SessionQueue(lock, time, TIMEOUT);
+    Ticket ticket = queue.enqueue(0);
+
+    assertNull(queue.await(ticket, 0));
+    assertEquals(1, queue.getPosition(ticket));
+
+    taken[0] = false;
+    String sessionId = queue.await(ticket, 0);
+    assertNotNull(sessionId);
+    assertEquals(sessionId, lock.getSessionId());
+  }
+
+  public void testDropsAbandonedTickets() throws Exception {
+    String holder = queue.await(queue.enqueue(0), 0);
+    Ticket abandoned = queue.enqueue(0);
+    Ticket waiting = queue.enqueue(0);
+
+    for (long waited = 0; waited <= SessionQueue.ABANDON_TIMEOUT; waited += TIMEOUT / 2) {
+      time.add(TIMEOUT / 2);
+      lock.setLastHeartBeat(time.now().getMillis());
+      queue.await(waiting, 0);
+    }
+
+    assertNull(queue.getTicket(abandoned.getNumber()));
+    assertEquals(1, queue.getPosition(waiting));
+
+    queue.release(holder);
+    assertNotNull(queue.await(waiting, 0));
+  }
+
+  public void testCancelledTicketsAreNotGranted() throws Exception {
+    String holder = queue.await(queue.enqueue(0), 0);
+    Ticket cancelled = queue.enqueue(0);
+    Ticket waiting = queue.enqueue(0);
+
+    queue.cancel(cancelled);
+    assertEquals(1, queue.getWaiting());
+
+    queue.release(holder);
+    assertNotNull(queue.await(waiting, 0));
+  }
+
+  public void testWakesAWaitingClientOnRelease() throws Exception {
+    final String holder = queue.await(queue.enqueue(0), 0);
+    Ticket ticket = queue.enqueue(0);
+    Thread releaser = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          return;
+        }
+        queue.release(holder);
+      }
+    };
+    releaser.start();
+
+    assertNotNull(queue.await(ticket, 10000));
+    releaser.join();
+  }
+
+  public void testResumesASuspendedClientOnGrant() throws Exception {
+    String holder = queue.await(queue.enqueue(0), 0);
+    Ticket ticket = queue.enqueue(0);
+    FakeContinuation continuation = new FakeContinuation();
+    try {
+      queue.await(ticket, continuation, 10000);
+      fail("Expected the request to be suspended.");
+    } catch (SuspendedException e) {
+      // expected
+    }
+    assertEquals(10000, continuation.timeout);
+    assertFalse(continuation.resumed);
+
+    queue.release(holder);
+
+    assertTrue(continuation.resumed);
+    String sessionId = queue.await(ticket, continuation, 10000);
+    assertEquals(lock.getSessionId(), sessionId);
+  }
+
+  public void testAnswersASuspendedClientThatTimedOut() throws Exception {
+    queue.await(queue.enqueue(0), 0);
+    Ticket ticket = queue.enqueue(0);
+    FakeContinuation continuation = new FakeContinuation();
+    try {
+      queue.await(ticket, continuation, 10000);
+      fail("Expected the request to be suspended.");
+    } catch (SuspendedException e) {
+      // expected
+    }
+
+    assertNull(queue.await(ticket, continuation, 10000));
+    assertEquals(1, queue.getPosition(ticket));
+  }
+}
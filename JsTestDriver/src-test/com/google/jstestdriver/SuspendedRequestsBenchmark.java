@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.jstestdriver.SlaveBrowser.BrowserState;
+import com.google.jstestdriver.browser.BrowserIdStrategy;
+import com.google.jstestdriver.config.ExecutionType;
+import com.google.jstestdriver.hooks.FileInfoScheme;
+import com.google.jstestdriver.hooks.ServerListener;
+import com.google.jstestdriver.model.NullPathPrefix;
+import com.google.jstestdriver.runner.RunnerType;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+import com.google.jstestdriver.server.handlers.CaptureHandler;
+import com.google.jstestdriver.util.NullStopWatch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds more waiting browsers on a server with the nio connector than the
+ * server has threads, showing the waiting requests are suspended rather than
+ * parked in a thread each. Too heavy for the unit tests, run it with:
+ *
+ * java com.google.jstestdriver.SuspendedRequestsBenchmark [browsers]
+ */
+public class SuspendedRequestsBenchmark {
+
+  /** More than the 250 threads of Jetty's default pool. */
+  private static final int DEFAULT_BROWSERS = 300;
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BROWSERS;
+    CapturedBrowsers browsers = new CapturedBrowsers(new BrowserIdStrategy(new MockTime(1)));
+    JsTestDriverServerImpl server = new JsTestDriverServerImpl(0, 0,
+        new JstdTestCaseStore(),
+        browsers,
+        SlaveBrowser.TIMEOUT,
+        new NullPathPrefix(),
+        Sets.<ServerListener>newHashSet(),
+        Collections.<FileInfoScheme>emptySet(),
+        ExecutionType.INTERACTIVE,
+        true);
+    server.start();
+    ExecutorService executor = Executors.newFixedThreadPool(count);
+    try {
+      run(browsers, "http://localhost:" + server.getLocalPort(), executor, count);
+    } finally {
+      executor.shutdownNow();
+      server.stop();
+    }
+  }
+
+  private static void run(CapturedBrowsers browsers, final String baseUrl,
+      ExecutorService executor, int count) throws Exception {
+    List<SlaveBrowser> slaves = Lists.newArrayList();
+    List<Future<String>> polls = Lists.newArrayList();
+    long start = System.currentTimeMillis();
+    for (int i = 1; i <= count; i++) {
+      final String id = String.valueOf(i);
+      BrowserInfo info = new BrowserInfo();
+      info.setId((long) i);
+      SlaveBrowser slave = new SlaveBrowser(new TimeImpl(), id, info, SlaveBrowser.TIMEOUT,
+          new NullPathPrefix(), CaptureHandler.QUIRKS, RunnerType.CLIENT, BrowserState.CAPTURED);
+      slave.setDequeueTimeout(60, TimeUnit.SECONDS);
+      browsers.addSlave(slave);
+      slaves.add(slave);
+      polls.add(executor.submit(new Callable<String>() {
+        public String call() throws Exception {
+          return new HttpServer(new NullStopWatch()).post(baseUrl + "/query/" + id,
+              Collections.singletonMap("done", "true"));
+        }
+      }));
+    }
+    waitForPolls(slaves);
+    System.out.printf("%s browsers polling after %s ms%n", count,
+        System.currentTimeMillis() - start);
+
+    int waiting = countThreadsIn("dequeueCommand");
+    if (waiting != 0) {
+      throw new AssertionError(waiting + " server threads are waiting for commands.");
+    }
+    if (!"hello".equals(new HttpServer(new NullStopWatch()).fetch(baseUrl + "/hello"))) {
+      throw new AssertionError("The server didn't answer while the browsers waited.");
+    }
+
+    start = System.currentTimeMillis();
+    for (SlaveBrowser slave : slaves) {
+      slave.createCommand("command" + slave.getId());
+    }
+    for (int i = 0; i < count; i++) {
+      String command = polls.get(i).get(30, TimeUnit.SECONDS);
+      if (!("command" + slaves.get(i).getId()).equals(command)) {
+        throw new AssertionError("Browser " + slaves.get(i).getId() + " got " + command);
+      }
+    }
+    System.out.printf("%s commands delivered in %s ms%n", count,
+        System.currentTimeMillis() - start);
+  }
+
+  /** Waits until every browser polled, and the polls had time to suspend. */
+  private static void waitForPolls(List<SlaveBrowser> slaves) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    for (SlaveBrowser slave : slaves) {
+      while (!slave.receivedHeartbeat()) {
+        if (System.currentTimeMillis() >= deadline) {
+          throw new AssertionError("Browser " + slave.getId() + " never polled");
+        }
+        Thread.sleep(10);
+      }
+    }
+    Thread.sleep(500);
+  }
+
+  private static int countThreadsIn(String method) {
+    int count = 0;
+    for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+      for (StackTraceElement element : thread.getValue()) {
+        if (SlaveBrowser.class.getName().equals(element.getClassName())
+            && method.equals(element.getMethodName())) {
+          count++;
+          break;
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -19,6 +19,7 @@ import java.util.Collection;
 import junit.framework.TestCase;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.model.NullPathPrefix;
 
@@ -50,4 +51,25 @@ public class TestResultGeneratorTest extends TestCase {
     assertEquals(expected.getTestName(), actual.getTestName());
     assertEquals(expected.getTestCaseName(), actual.getTestCaseName());
   }
+
+  public void testGetTestResultsFromStructuredPayload() throws Exception {
+    TestResult expected =
+        new TestResult(new BrowserInfo(), "failed", "Message", "log", "testCase", "TestName", 0f);
+    Collection<TestResult> results = new ArrayList<TestResult>();
+    results.add(expected);
+    TestResultGenerator generator =
+        new TestResultGenerator(new FailureParser(new NullPathPrefix()));
+    Response response = new Response();
+    response.setType(ResponseType.TEST_RESULT.name());
+    response.setData(new JsonParser().parse(new Gson().toJson(results)));
+    response.setBrowser(new BrowserInfo());
+
+    Collection<TestResult> testResults = generator.getTestResults(response);
+
+    assertEquals(1, testResults.size());
+    TestResult actual = testResults.iterator().next();
+    assertEquals(expected.getResult(), actual.getResult());
+    assertEquals(expected.getTestName(), actual.getTestName());
+    assertSame("Parsed payload should be cached.", testResults, response.parseResponse());
+  }
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.jstestdriver.BrowserAction;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.FileUploader;
+import com.google.jstestdriver.JsTestDriverClient;
+import com.google.jstestdriver.Response;
+import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.ResponseStreamFactory;
+import com.google.jstestdriver.RunTestsAction;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.TestResult;
+import com.google.jstestdriver.hooks.TestsPreProcessor;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.RunData;
+import com.google.jstestdriver.util.NullStopWatch;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class BrowserActionExecutorActionTest extends TestCase {
+
+  private static final List<String> ALL = Lists.newArrayList("all");
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("impact", ".json");
+    file.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testStartedBrowsersRunTestCasesThatPassedElsewhere() throws Exception {
+    BrowserInfo chrome = browser(5L, "Chrome");
+    JstdTestCase testCase = new JstdTestCase(
+        Lists.newArrayList(new FileInfo("/src/a.js", 1, 1, false, false, "", "src/a.js")),
+        Lists.newArrayList(new FileInfo("/test/a.js", 1, 1, false, false, "", "test/a.js")),
+        Collections.<FileInfo>emptyList(), "a");
+    TestImpact passed = new TestImpact(file.getPath(), ALL);
+    ResponseStream tracked = passed.track(testCase, new NullStream());
+    List<TestResult> results =
+        Lists.newArrayList(new TestResult(chrome, "passed", "", "", "aTest", "testA", 1));
+    tracked.stream(new Response(Response.ResponseType.TEST_RESULT.name(),
+        new Gson().toJson(results), chrome, "", 0));
+    passed.complete(tracked);
+    passed.save();
+
+    TestImpact testImpact = new TestImpact(file.getPath(), ALL);
+    StartedBrowserClient client = new StartedBrowserClient(chrome);
+    List<BrowserAction> actions = Lists.<BrowserAction>newArrayList(
+        new RunTestsAction(new NullStreamFactory(), ALL, false,
+            Collections.<TestsPreProcessor>emptySet(), new NullStopWatch(), testImpact));
+    BrowserActionExecutorAction action = new BrowserActionExecutorAction(client,
+        actions,
+        new ThreadRunnerExecutorFactory(ThreadRunnerExecutorFactory.PLATFORM),
+        Collections.<BrowserRunner>singleton(new StartedBrowserRunner()),
+        "http://localhost",
+        60,
+        new NullStopWatch(),
+        new NullSessionManager(),
+        false,
+        null,
+        false,
+        testImpact,
+        new NullStreamFactory());
+
+    action.run(new RunData(Collections.<ResponseStream>emptyList(),
+        Lists.<JstdTestCase>newArrayList(testCase), null));
+
+    assertEquals(Lists.newArrayList("a"), client.ran);
+  }
+
+  private BrowserInfo browser(Long id, String name) {
+    BrowserInfo browser = new BrowserInfo();
+    browser.setId(id);
+    browser.setName(name);
+    browser.setVersion("1");
+    browser.setServerReceivedHeartbeat(true);
+    browser.setReady(true);
+    return browser;
+  }
+
+  /** Has no browsers captured until the browser runner started one. */
+  private static final class StartedBrowserClient implements JsTestDriverClient {
+    private final BrowserInfo started;
+    private final List<String> ran = Lists.newArrayList();
+    private boolean listed;
+
+    StartedBrowserClient(BrowserInfo started) {
+      this.started = started;
+    }
+
+    public synchronized Collection<BrowserInfo> listBrowsers() {
+      if (!listed) {
+        listed = true;
+        return Collections.emptyList();
+      }
+      return Lists.newArrayList(started);
+    }
+
+    public String getNextBrowserId() {
+      return String.valueOf(started.getId());
+    }
+
+    public synchronized void runAllTests(String id, ResponseStream responseStream,
+        boolean captureConsole, JstdTestCase testCase) {
+      ran.add(testCase.getId());
+    }
+
+    public void eval(String id, ResponseStream responseStream, String cmd,
+        JstdTestCase testCase) {
+    }
+
+    public void reset(String id, ResponseStream responseStream, JstdTestCase testCase) {
+    }
+
+    public void runTests(String id, ResponseStream responseStream, List<String> tests,
+        boolean captureConsole, JstdTestCase testCase) {
+    }
+
+    public void dryRun(String id, ResponseStream responseStream, JstdTestCase testCase) {
+    }
+
+    public void dryRunFor(String id, ResponseStream responseStream, List<String> expressions,
+        JstdTestCase testCase) {
+    }
+
+    public void prefetch(String browserId, JstdTestCase testCase) {
+    }
+
+    public void uploadFiles(String browserId, JstdTestCase testCase) {
+    }
+  }
+
+  private static final class StartedBrowserRunner implements BrowserRunner {
+    public void startBrowser(String serverAddress) {
+    }
+
+    public void stopBrowser() {
+    }
+
+    public int getTimeout() {
+      return 10;
+    }
+
+    public int getNumStartupTries() {
+      return 1;
+    }
+
+    public long getHeartbeatTimeout() {
+      return SlaveBrowser.TIMEOUT;
+    }
+
+    public int getUploadSize() {
+      return FileUploader.CHUNK_SIZE;
+    }
+  }
+
+  private static final class NullSessionManager implements BrowserSessionManager {
+    public String startSession(String browserId) {
+      return "session";
+    }
+
+    public void stopSession(String sessionId, String browserId) {
+    }
+  }
+
+  private static final class NullStreamFactory implements ResponseStreamFactory {
+    public ResponseStream getRunTestsActionResponseStream(String browserId) {
+      return new NullStream();
+    }
+
+    public ResponseStream getResetActionResponseStream() {
+      return new NullStream();
+    }
+
+    public ResponseStream getEvalActionResponseStream() {
+      return new NullStream();
+    }
+
+    public ResponseStream getDryRunActionResponseStream() {
+      return new NullStream();
+    }
+  }
+
+  private static final class NullStream implements ResponseStream {
+    public void stream(Response response) {
+    }
+
+    public void finish() {
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.BrowserAction;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.FakeJsTestDriverClient;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.JsTestDriverClient;
+import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.RunData;
+import com.google.jstestdriver.util.NullStopWatch;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class BrowserActionRunnerTest extends TestCase {
+
+  public void testFailedBrowserLeavesThePrefetchedTestCaseInThePool() throws Exception {
+    List<List<JstdTestCase>> shares = Lists.newArrayList();
+    shares.add(testCases("a", "b"));
+    shares.add(testCases());
+    TestCasePool pool = new TestCasePool(shares);
+    BrowserAction failing = new BrowserAction() {
+      public ResponseStream run(String browserId, JsTestDriverClient client, RunData runData,
+          JstdTestCase testCase) {
+        throw new IllegalStateException("browser died");
+      }
+    };
+    BrowserActionRunner runner = new BrowserActionRunner("1",
+        new FakeJsTestDriverClient(Lists.<BrowserInfo>newArrayList()),
+        Lists.newArrayList(failing), new NullStopWatch(), pool, 0, true,
+        new NullSessionManager());
+
+    try {
+      runner.call();
+      fail("expected the browser to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    assertEquals("b", pool.next(1).getId());
+    assertNull(pool.next(1));
+  }
+
+  private List<JstdTestCase> testCases(String... ids) {
+    List<JstdTestCase> testCases = Lists.newArrayList();
+    for (String id : ids) {
+      testCases.add(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(), Lists.<FileInfo>newArrayList(), id));
+    }
+    return testCases;
+  }
+
+  private static final class NullSessionManager implements BrowserSessionManager {
+    public String startSession(String browserId) {
+      return "session";
+    }
+
+    public void stopSession(String sessionId, String browserId) {
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.jstestdriver.browser;
+
+import junit.framework.TestCase;
+
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.CapturedBrowsers;
+import com.google.jstestdriver.MockTime;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.SlaveBrowser.BrowserState;
+import com.google.jstestdriver.runner.RunnerType;
+import com.google.jstestdriver.server.handlers.CaptureHandler;
+
+import java.util.concurrent.TimeUnit;
+
+public class BrowserLivenessWheelTest extends TestCase {
+
+  private MockTime time;
+  private CapturedBrowsers browsers;
+  private BrowserLivenessWheel wheel;
+
+  @Override
+  protected void setUp() throws Exception {
+    time = new MockTime(1);
+    browsers = new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0)));
+    wheel = new BrowserLivenessWheel(browsers, time, 5, 8);
+    browsers.addObserver(wheel);
+  }
+
+  public void testReapDeadBrowser() throws Exception {
+    final SlaveBrowser browserOne = newBrowser("1");
+    browsers.addSlave(browserOne);
+    final SlaveBrowser browserTwo = newBrowser("2");
+    browsers.addSlave(browserTwo);
+    time.add(8000);
+    browserOne.heartBeat();
+    assertFalse(browserTwo.isAlive());
+    wheel.run();
+    assertEquals(1, browsers.getBrowsers().size());
+    assertSame(browserOne, browsers.getBrowser("1"));
+  }
+
+  public void testDontReapDeadBrowserWithCommandRunning() throws Exception {
+    final SlaveBrowser browserOne = newBrowser("1");
+    browsers.addSlave(browserOne);
+    final SlaveBrowser browserTwo = newBrowser("2");
+    browsers.addSlave(browserTwo);
+    time.add(40);
+    browserOne.heartBeat();
+    browserTwo.createCommand("foo");
+    browserTwo.dequeueCommand();
+    wheel.run();
+    assertEquals(2, browsers.getBrowsers().size());
+    assertFalse(browserTwo.isAlive());
+
+    browserTwo.clearCommandRunning();
+    time.add(25);
+    browserOne.heartBeat();
+    wheel.run();
+    assertEquals(1, browsers.getBrowsers().size());
+  }
+
+  public void testKeepsBrowsersThatHeartBeat() throws Exception {
+    final SlaveBrowser browser = newBrowser("1");
+    browsers.addSlave(browser);
+    for (int i = 0; i < 100; i++) {
+      time.add(3);
+      browser.heartBeat();
+      wheel.run();
+    }
+    assertEquals(1, browsers.getBrowsers().size());
+
+    time.add(20);
+    wheel.run();
+    assertEquals(0, browsers.getBrowsers().size());
+  }
+
+  public void testDeclaresDeadWithinATick() throws Exception {
+    final SlaveBrowser browser = newBrowser("1");
+    browsers.addSlave(browser);
+    browser.heartBeat();
+    time.add(19);
+    wheel.run();
+    assertEquals(1, browsers.getBrowsers().size());
+
+    time.add(5);
+    wheel.run();
+    assertEquals(0, browsers.getBrowsers().size());
+  }
+
+  public void testWakesWaitingResponsePollOnDeath() throws Exception {
+    final SlaveBrowser browser = newBrowser("1");
+    browsers.addSlave(browser);
+    browser.createCommand("foo");
+    browser.dequeueCommand();
+    time.add(40);
+    wheel.run();
+
+    long start = System.nanoTime();
+    browser.getResponse();
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    assertFalse(browser.isAlive());
+  }
+
+  private SlaveBrowser newBrowser(String id) {
+    return new SlaveBrowser(time, id, new BrowserInfo(), 20, null, CaptureHandler.QUIRKS,
+        RunnerType.CLIENT, BrowserState.CAPTURED);
+  }
+}
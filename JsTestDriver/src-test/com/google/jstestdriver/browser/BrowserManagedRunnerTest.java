@@ -26,6 +26,7 @@ import com.google.jstestdriver.FakeJsTestDriverClient;
 import com.google.jstestdriver.FileUploader;
 import com.google.jstestdriver.ResponseStream;
 import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.util.NullStopWatch;
 
 /**
@@ -53,7 +54,7 @@ public class BrowserManagedRunnerTest extends TestCase {
 
   private static final class FakeBrowserActionRunner extends BrowserActionRunner {
     public FakeBrowserActionRunner() {
-      super(null, null, null, new NullStopWatch(), null, null);
+      super(null, null, null, new NullStopWatch(), Lists.<JstdTestCase>newArrayList(), null);
     }
     
     @Override
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+
+public class TestCaseHistoryTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("history", ".json");
+    file.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testSavesAndLoadsDurations() throws Exception {
+    TestCaseHistory history = new TestCaseHistory(file);
+    history.record("a", 100);
+    history.record("b", 20);
+    history.save();
+
+    TestCaseHistory loaded = new TestCaseHistory(file);
+    assertEquals(Long.valueOf(100), loaded.getDuration("a"));
+    assertEquals(Long.valueOf(20), loaded.getDuration("b"));
+    assertNull(loaded.getDuration("c"));
+  }
+
+  public void testAveragesRuns() throws Exception {
+    TestCaseHistory history = new TestCaseHistory(file);
+    history.record("a", 100);
+    history.record("a", 50);
+    assertEquals(Long.valueOf(75), history.getDuration("a"));
+  }
+
+  public void testPredictsTheMeanForNewTestCases() throws Exception {
+    TestCaseHistory history = new TestCaseHistory(file);
+    assertEquals(TestCaseHistory.UNKNOWN_DURATION, history.predict(testCase("new")));
+
+    history.record("a", 100);
+    history.record("b", 20);
+    assertEquals(100, history.predict(testCase("a")));
+    assertEquals(60, history.predict(testCase("new")));
+  }
+
+  public void testIgnoresAnUnreadableHistory() throws Exception {
+    FileWriter writer = new FileWriter(file);
+    writer.write("{not json");
+    writer.close();
+
+    TestCaseHistory history = new TestCaseHistory(file);
+    assertNull(history.getDuration("a"));
+  }
+
+  private JstdTestCase testCase(String id) {
+    return new JstdTestCase(Lists.<FileInfo>newArrayList(), Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(), id);
+  }
+}
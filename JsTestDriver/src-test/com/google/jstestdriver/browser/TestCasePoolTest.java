@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.List;
+
+public class TestCasePoolTest extends TestCase {
+
+  public void testDealsRoundRobin() throws Exception {
+    List<JstdTestCase> testCases = testCases("a", "b", "c", "d", "e");
+    TestCasePool pool = TestCasePool.dealt(testCases, 2);
+
+    assertEquals("a", pool.next(0).getId());
+    assertEquals("b", pool.next(1).getId());
+    assertEquals("c", pool.next(0).getId());
+    assertEquals("d", pool.next(1).getId());
+    assertEquals("e", pool.next(0).getId());
+    assertNull(pool.next(0));
+    assertNull(pool.next(1));
+  }
+
+  public void testStealsFromTheEndOfTheLargestShare() throws Exception {
+    List<List<JstdTestCase>> shares = Lists.newArrayList();
+    shares.add(testCases("a"));
+    shares.add(testCases("b", "c"));
+    shares.add(testCases("d", "e", "f"));
+    TestCasePool pool = new TestCasePool(shares);
+
+    assertEquals("a", pool.next(0).getId());
+    assertEquals("f", pool.next(0).getId());
+    assertEquals("d", pool.next(2).getId());
+    assertEquals("c", pool.next(0).getId());
+    assertEquals("b", pool.next(1).getId());
+    assertEquals("e", pool.next(1).getId());
+    assertNull(pool.next(2));
+  }
+
+  public void testPeeksWithoutTaking() throws Exception {
+    List<List<JstdTestCase>> shares = Lists.newArrayList();
+    shares.add(testCases("a"));
+    shares.add(testCases("b", "c"));
+    TestCasePool pool = new TestCasePool(shares);
+
+    assertEquals("a", pool.peek(0).getId());
+    assertEquals("a", pool.next(0).getId());
+    assertEquals("c", pool.peek(0).getId());
+    assertEquals("b", pool.next(1).getId());
+    assertEquals("c", pool.next(1).getId());
+    assertNull(pool.peek(0));
+  }
+
+  public void testEachBrowserRunsEverythingWithoutSharing() throws Exception {
+    List<JstdTestCase> testCases = testCases("a", "b");
+    TestCasePool one = TestCasePool.dealt(testCases, 1);
+    TestCasePool two = TestCasePool.dealt(testCases, 1);
+
+    assertEquals("a", one.next(0).getId());
+    assertEquals("b", one.next(0).getId());
+    assertNull(one.next(0));
+    assertEquals("a", two.next(0).getId());
+  }
+
+  public void testDealsLongestFirstToTheLeastLoaded() throws Exception {
+    TestCaseHistory history = new TestCaseHistory(new File("not-there.json"));
+    history.record("a", 10);
+    history.record("b", 40);
+    history.record("c", 30);
+    history.record("d", 20);
+    history.record("e", 5);
+
+    TestCasePool pool =
+        TestCasePool.longestFirst(testCases("a", "b", "c", "d", "e"), 2, history);
+
+    assertEquals("b", pool.next(0).getId());
+    assertEquals("c", pool.next(1).getId());
+    assertEquals("d", pool.next(1).getId());
+    assertEquals("a", pool.next(0).getId());
+    assertEquals("e", pool.next(0).getId());
+    assertNull(pool.next(1));
+    assertEquals(55, pool.getPredictedMakespan());
+  }
+
+  public void testRecordsFinishedTestCases() throws Exception {
+    TestCaseHistory history = new TestCaseHistory(new File("not-there.json"));
+    TestCasePool pool = TestCasePool.dealt(testCases("a"), 1, history);
+
+    JstdTestCase testCase = pool.next(0);
+    pool.finished(testCase, 25);
+
+    assertEquals(Long.valueOf(25), history.getDuration("a"));
+    assertEquals(-1, pool.getPredictedMakespan());
+  }
+
+  private List<JstdTestCase> testCases(String... ids) {
+    List<JstdTestCase> testCases = Lists.newArrayList();
+    for (String id : ids) {
+      testCases.add(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(), Lists.<FileInfo>newArrayList(), id));
+    }
+    return testCases;
+  }
+}
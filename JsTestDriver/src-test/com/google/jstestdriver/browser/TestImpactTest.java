@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.Response;
+import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.TestResult;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+public class TestImpactTest extends TestCase {
+
+  private static final List<String> ALL = Lists.newArrayList("all");
+
+  private File file;
+  private BrowserInfo chrome;
+
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("impact", ".json");
+    file.delete();
+    chrome = browser(1L, "Chrome");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testTestCasesThatNeverPassedAreAffected() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    assertTrue(impact.isEnabled());
+    assertTrue(impact.isAffected(testCase("a", 1), browsers(chrome)));
+  }
+
+  public void testPassedTestCasesAreUnaffectedUntilAFileChanges() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    run(impact, testCase("a", 1), chrome, "passed");
+    impact.save();
+
+    TestImpact loaded = new TestImpact(file.getPath(), ALL);
+    assertFalse(loaded.isAffected(testCase("a", 1), browsers(chrome)));
+    assertTrue(loaded.isAffected(testCase("a", 2), browsers(chrome)));
+    assertTrue(loaded.isAffected(testCase("b", 1), browsers(chrome)));
+  }
+
+  public void testReportsTheTestsThatLastPassed() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    run(impact, testCase("a", 1), chrome, "passed");
+    impact.save();
+
+    List<TestResult> cached =
+        new TestImpact(file.getPath(), ALL).getCachedPasses(testCase("a", 1), chrome);
+    assertEquals(1, cached.size());
+    assertEquals(TestResult.Result.passed, cached.get(0).getResult());
+    assertEquals(TestImpact.CACHED, cached.get(0).getMessage());
+    assertEquals("aTest", cached.get(0).getTestCaseName());
+    assertEquals("testA", cached.get(0).getTestName());
+    assertEquals(chrome, cached.get(0).getBrowserInfo());
+  }
+
+  public void testFailedTestCasesAreForgotten() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    run(impact, testCase("a", 1), chrome, "passed");
+    impact.save();
+
+    impact = new TestImpact(file.getPath(), ALL);
+    run(impact, testCase("a", 1), chrome, "failed");
+    impact.save();
+
+    assertTrue(new TestImpact(file.getPath(), ALL).isAffected(testCase("a", 1),
+        browsers(chrome)));
+  }
+
+  public void testIncompleteRunsAreForgotten() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    impact.track(testCase("a", 1), new NullStream()).stream(results(chrome, "passed"));
+    impact.save();
+
+    assertTrue(new TestImpact(file.getPath(), ALL).isAffected(testCase("a", 1),
+        browsers(chrome)));
+  }
+
+  public void testNewBrowsersAreAffected() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), ALL);
+    run(impact, testCase("a", 1), chrome, "passed");
+    impact.save();
+
+    assertTrue(new TestImpact(file.getPath(), ALL).isAffected(testCase("a", 1),
+        browsers(chrome, browser(2L, "Firefox"))));
+  }
+
+  public void testOnlyRunsOfAllTestsAreAnalysed() throws Exception {
+    TestImpact impact = new TestImpact(file.getPath(), Lists.newArrayList("aTest.testA"));
+    assertFalse(impact.isEnabled());
+    run(impact, testCase("a", 1), chrome, "passed");
+    impact.save();
+
+    assertFalse(file.exists());
+    assertTrue(impact.isAffected(testCase("a", 1), browsers(chrome)));
+  }
+
+  private void run(TestImpact impact, JstdTestCase testCase, BrowserInfo browser,
+      String result) {
+    ResponseStream tracked = impact.track(testCase, new NullStream());
+    tracked.stream(results(browser, result));
+    impact.complete(tracked);
+  }
+
+  private Response results(BrowserInfo browser, String result) {
+    List<TestResult> results = Lists.newArrayList(
+        new TestResult(browser, result, "", "", "aTest", "testA", 1));
+    return new Response(Response.ResponseType.TEST_RESULT.name(), new Gson().toJson(results),
+        browser, "", 0);
+  }
+
+  private JstdTestCase testCase(String id, long sourceTimestamp) {
+    return new JstdTestCase(
+        Lists.newArrayList(new FileInfo("/src/a.js", sourceTimestamp, 1, false, false, "",
+            "src/a.js")),
+        Lists.newArrayList(new FileInfo("/test/" + id + ".js", 1, 1, false, false, "",
+            "test/" + id + ".js")),
+        Collections.<FileInfo>emptyList(), id);
+  }
+
+  private BrowserInfo browser(Long id, String name) {
+    BrowserInfo browser = new BrowserInfo();
+    browser.setId(id);
+    browser.setName(name);
+    browser.setVersion("1");
+    return browser;
+  }
+
+  private List<BrowserInfo> browsers(BrowserInfo... browsers) {
+    return Lists.newArrayList(browsers);
+  }
+
+  private static class NullStream implements ResponseStream {
+    public void stream(Response response) {
+    }
+
+    public void finish() {
+    }
+  }
+}
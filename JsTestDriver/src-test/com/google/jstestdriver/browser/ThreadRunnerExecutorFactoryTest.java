@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ThreadRunnerExecutorFactoryTest extends TestCase {
+
+  public void testRunsEveryRunnerAtOnce() throws Exception {
+    assertRunsAtOnce(new ThreadRunnerExecutorFactory(ThreadRunnerExecutorFactory.PLATFORM), 12);
+  }
+
+  public void testVirtualThreadsFallBackToPlatformThreads() throws Exception {
+    assertRunsAtOnce(new ThreadRunnerExecutorFactory(ThreadRunnerExecutorFactory.VIRTUAL), 12);
+  }
+
+  public void testUnknownThreads() throws Exception {
+    try {
+      new ThreadRunnerExecutorFactory("green").create(1);
+      fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private void assertRunsAtOnce(RunnerExecutorFactory factory, int runners) throws Exception {
+    ExecutorService executor = factory.create(runners);
+    final CountDownLatch started = new CountDownLatch(runners);
+    try {
+      for (int i = 0; i < runners; i++) {
+        executor.execute(new Runnable() {
+          public void run() {
+            started.countDown();
+            try {
+              // each runner holds its thread until all have started.
+              started.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+      }
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
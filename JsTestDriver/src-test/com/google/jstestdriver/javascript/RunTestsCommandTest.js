@@ -59,5 +59,6 @@ RunTestsCommandTest.prototype.testCallPluginOnTestResultAdded = function() {
   executor.addTestResult(result);
   executor.sendTestResults();
   assertNotNull(testResponse);
-  assertEquals(JSON.stringify([expected]), testResponse.response);
+  assertEquals(jstestdriver.Response.STRUCTURED_PAYLOAD, testResponse.version);
+  assertEquals(JSON.stringify([expected]), JSON.stringify(testResponse.data));
 };
\ No newline at end of file
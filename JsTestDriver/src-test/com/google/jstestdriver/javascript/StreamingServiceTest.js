@@ -113,3 +113,117 @@ StreamingServiceTest.prototype.testClose = function() {
   var closePost = this.posts.pop();
   assertNotNull('final response should be sent immediately', closePost);
 };
+
+
+StreamingServiceTest.prototype.testBatchedResponsesAreSentTogether = function() {
+  var posts = [];
+  var testCase = this;
+  var streamingService = new jstestdriver.StreamingService("/Q/1",
+      function(){ return testCase.now; },
+      function (url, data, callback, type){
+        posts.push({
+          url : url,
+          data : data,
+          callback : callback,
+          type : type
+        });
+      },
+      null,
+      2,
+      1000);
+  function callback() {}
+  var responseOne = new jstestdriver.Response('test', '1', {}, null);
+  var responseTwo = new jstestdriver.Response('test', '2', {}, null);
+  var finalResponse = new jstestdriver.Response('test', '3', {}, null);
+
+  streamingService.stream(responseOne, callback);
+  assertEquals("Should wait for the batch to fill", 0, posts.length);
+  streamingService.stream(responseTwo, callback);
+
+  var batchPost = posts.pop();
+  assertFalse(batchPost.data.done);
+  assertEquals(2, batchPost.data.batch.responses.length);
+  assertEquals(responseOne, batchPost.data.batch.responses[0].response);
+  assertEquals(responseTwo, batchPost.data.batch.responses[1].response);
+  assertNotEquals(batchPost.data.batch.responses[0].responseId,
+                  batchPost.data.batch.responses[1].responseId);
+
+  streamingService.close(finalResponse, callback);
+  var query = posts.pop();
+  assertEquals("Should query for acknowledgements", null, query.data.response);
+  assertFalse(query.data.done);
+
+  streamingService.streamAcknowledged([batchPost.data.batch.responses[0].responseId,
+                                       batchPost.data.batch.responses[1].responseId]);
+  var finalPost = posts.pop();
+  assertTrue(finalPost.data.done);
+  assertEquals(finalResponse, finalPost.data.response);
+};
+
+
+StreamingServiceTest.prototype.testCloseFlushesPartialBatch = function() {
+  var posts = [];
+  var testCase = this;
+  var streamingService = new jstestdriver.StreamingService("/Q/1",
+      function(){ return testCase.now; },
+      function (url, data, callback, type){
+        posts.push({data : data});
+      },
+      null,
+      5,
+      1000);
+  function callback() {}
+  var response = new jstestdriver.Response('test', '1', {}, null);
+  var finalResponse = new jstestdriver.Response('test', '2', {}, null);
+
+  streamingService.stream(response, callback);
+  streamingService.close(finalResponse, callback);
+
+  var batchPost = posts.pop();
+  assertEquals(1, batchPost.data.batch.responses.length);
+  assertEquals(0, posts.length);
+};
+
+
+StreamingServiceTest.prototype.testPartialBatchIsFlushedByATimer = function() {
+  var posts = [];
+  var timeouts = [];
+  var cleared = [];
+  var testCase = this;
+  var streamingService = new jstestdriver.StreamingService("/Q/1",
+      function(){ return testCase.now; },
+      function (url, data, callback, type){
+        posts.push({data : data, callback : callback});
+      },
+      null,
+      5,
+      1000,
+      function(fn, delay) {
+        timeouts.push({fn : fn, delay : delay});
+        return timeouts.length;
+      },
+      function(id) {
+        cleared.push(id);
+      });
+  function callback() {}
+  var responseOne = new jstestdriver.Response('test', '1', {}, null);
+  var responseTwo = new jstestdriver.Response('test', '2', {}, null);
+
+  streamingService.stream(responseOne, callback);
+  streamingService.stream(responseTwo, callback);
+  assertEquals("Should schedule a single flush per batch", 1, timeouts.length);
+  assertEquals(1000, timeouts[0].delay);
+  assertEquals(0, posts.length);
+
+  timeouts[0].fn();
+
+  var batchPost = posts.pop();
+  assertEquals(2, batchPost.data.batch.responses.length);
+  assertEquals(callback, batchPost.callback);
+  assertEquals("A fired timer isn't cleared", 0, cleared.length);
+
+  streamingService.stream(responseOne, callback);
+  streamingService.flush(callback);
+  assertEquals(2, timeouts.length);
+  assertEquals("Flushing cancels the scheduled flush", [2], cleared);
+};
@@ -57,4 +57,24 @@ public class JstdTestCaseTest extends TestCase {
         new JstdTestCase(Lists.<FileInfo>newArrayList(dep), Lists.<FileInfo>newArrayList(test,
             testNew), Lists.newArrayList(plugin), null), testCase.applyDelta(delta));
   }
+
+  public void testApplyDeltaSharesUntouchedLists() throws Exception {
+    FileInfo dep = new FileInfo("dep.js", -1, -1, false, false, "", "dep.js");
+    FileInfo testOld = new FileInfo("test.js", -1, -1, false, false, "", "test.js");
+    FileInfo testNew = new FileInfo("test.js", 1, -1, false, false, "", "test.js");
+    JstdTestCase testCase =
+        new JstdTestCase(Lists.<FileInfo>newArrayList(dep), Lists.<FileInfo>newArrayList(testOld),
+            Lists.<FileInfo>newArrayList(), null);
+
+    JstdTestCase applied = testCase.applyDelta(new JstdTestCaseDelta(
+        Lists.<FileInfo>newArrayList(dep), Lists.<FileInfo>newArrayList(testNew),
+        Lists.<FileInfo>newArrayList()));
+
+    assertNotSame(testCase.getDependencies(), applied.getDependencies());
+    assertNotSame(testCase.getTests(), applied.getTests());
+    assertSame(testCase.getPlugins(), applied.getPlugins());
+    assertSame("A delta for other files leaves the lists alone.", applied.getTests(),
+        applied.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+            Lists.<FileInfo>newArrayList(dep), Lists.<FileInfo>newArrayList())).getTests());
+  }
 }
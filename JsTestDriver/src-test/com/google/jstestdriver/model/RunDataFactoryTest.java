@@ -26,6 +26,7 @@ import junit.framework.TestCase;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.hooks.FileLoadPostProcessor;
 import com.google.jstestdriver.hooks.ResourcePreProcessor;
 import com.google.jstestdriver.hooks.JstdTestCaseProcessor;
 import com.google.jstestdriver.hooks.ResourceDependencyResolver;
@@ -63,7 +64,8 @@ public class RunDataFactoryTest extends TestCase {
       Sets.newHashSet(preProcessor),
       Collections.<FileInfo>emptyList(), new JstdTestCaseFactory(
           Collections.<JstdTestCaseProcessor> emptySet(),
-          Collections.<ResourceDependencyResolver>emptySet(), new NullStopWatch()), new NullStopWatch());
+          Collections.<ResourceDependencyResolver>emptySet(), new NullStopWatch()), new NullStopWatch(),
+      Collections.<FileLoadPostProcessor>emptySet());
     
     final List<FileInfo> actual = Lists.newArrayList(factory.get().getFileSet());
 
@@ -7,6 +7,7 @@ import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.inject.Provider;
 import com.google.inject.util.Providers;
 
 import junit.framework.TestCase;
@@ -59,10 +60,11 @@ public class RequestDispatcherTest extends TestCase {
     dispatcher = new RequestDispatcher(
         request,
         response,
-        ImmutableList.of(one, two),
-        ImmutableMap.of(
-            one, Providers.of(handlerOne),
-            two, Providers.of(handlerTwo)),
+        new RoutingTable<Provider<RequestHandler>>(
+            ImmutableList.of(one, two),
+            ImmutableMap.of(
+                one, Providers.of(handlerOne),
+                two, Providers.of(handlerTwo))),
         gatewayConfiguration,
         sender);
   }
@@ -94,8 +96,8 @@ public class RequestDispatcherTest extends TestCase {
   public void testDispatch_POST_methodNotAllowed() throws Exception {
     expect(request.getMethod()).andReturn("POST");
     expect(request.getRequestURI()).andReturn("/one/two").anyTimes();
-    expect(gatewayConfiguration.getMatchers())
-        .andReturn(ImmutableList.<RequestMatcher>of());
+    expect(gatewayConfiguration.getRoutes())
+        .andReturn(RoutingTable.of(ImmutableList.<RequestMatcher>of()));
     /*expect*/ sender.methodNotAllowed();
 
     control.replay();
@@ -108,8 +110,8 @@ public class RequestDispatcherTest extends TestCase {
   public void testDispatch_GET_methodNotAllowed() throws Exception {
     expect(request.getMethod()).andReturn("GET");
     expect(request.getRequestURI()).andReturn("/a/b").anyTimes();
-    expect(gatewayConfiguration.getMatchers())
-        .andReturn(ImmutableList.<RequestMatcher>of());
+    expect(gatewayConfiguration.getRoutes())
+        .andReturn(RoutingTable.of(ImmutableList.<RequestMatcher>of()));
     /*expect*/ sender.methodNotAllowed();
 
     control.replay();
@@ -133,8 +135,8 @@ public class RequestDispatcherTest extends TestCase {
   public void testDispatch_GET_notFound() throws Exception {
     expect(request.getMethod()).andReturn("GET");
     expect(request.getRequestURI()).andReturn("/nothing").anyTimes();
-    expect(gatewayConfiguration.getMatchers())
-        .andReturn(ImmutableList.<RequestMatcher>of());
+    expect(gatewayConfiguration.getRoutes())
+        .andReturn(RoutingTable.of(ImmutableList.<RequestMatcher>of()));
     /*expect*/ response.sendError(eq(HttpServletResponse.SC_NOT_FOUND), (String) anyObject());
 
     control.replay();
@@ -0,0 +1,104 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+package com.google.jstestdriver.requesthandlers;
+
+import static com.google.jstestdriver.requesthandlers.HttpMethod.GET;
+import static com.google.jstestdriver.requesthandlers.HttpMethod.POST;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Compares finding the handler for the server's hot paths through a
+ * {@link RoutingTable} with scanning the matchers in order, as the
+ * {@link RequestDispatcher} used to. Run with:
+ *
+ * java com.google.jstestdriver.requesthandlers.RoutingTableBenchmark [iterations]
+ */
+public class RoutingTableBenchmark {
+
+  /** The patterns of the JstdHandlersModule, in order. */
+  private static final List<RequestMatcher> MATCHERS;
+  static {
+    List<RequestMatcher> matchers = Lists.newArrayList(
+        new RequestMatcher(GET, "/"),
+        new RequestMatcher(POST, "/cache"),
+        new RequestMatcher(GET, "/capture"),
+        new RequestMatcher(GET, "/capture/*"),
+        new RequestMatcher(GET, "/cmd"),
+        new RequestMatcher(POST, "/cmd"),
+        new RequestMatcher(GET, "/favicon.ico"),
+        new RequestMatcher(GET, "/fileSet"),
+        new RequestMatcher(POST, "/fileSet"));
+    for (HttpMethod method : HttpMethod.values()) {
+      matchers.add(new RequestMatcher(method, "/forward/*"));
+    }
+    matchers.addAll(ImmutableList.of(
+        new RequestMatcher(GET, "/heartbeat"),
+        new RequestMatcher(POST, "/heartbeat"),
+        new RequestMatcher(GET, "/jstd/proxy"),
+        new RequestMatcher(POST, "/jstd/proxy"),
+        new RequestMatcher(GET, "/jstd/gateway"),
+        new RequestMatcher(POST, "/jstd/gateway"),
+        new RequestMatcher(GET, "/hello"),
+        new RequestMatcher(POST, "/log"),
+        new RequestMatcher(POST, "/query/*"),
+        new RequestMatcher(GET, "/runner/*"),
+        new RequestMatcher(GET, "/slave/*"),
+        new RequestMatcher(GET, "/test/*"),
+        new RequestMatcher(GET, "/quit"),
+        new RequestMatcher(GET, "/quit/*"),
+        new RequestMatcher(GET, "/static/*"),
+        new RequestMatcher(GET, "/bcr"),
+        new RequestMatcher(GET, "/bcr/*")));
+    MATCHERS = ImmutableList.copyOf(matchers);
+  }
+
+  private static final String[] URIS = {"/query/12", "/cmd", "/test/src/foo/bar.js"};
+  private static final HttpMethod[] METHODS = {POST, GET, GET};
+
+  public static void main(String[] args) {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+    RoutingTable<RequestMatcher> routes = RoutingTable.of(MATCHERS);
+    // warm up both, then measure.
+    run(routes, iterations / 10);
+    scan(iterations / 10);
+    long start = System.nanoTime();
+    int found = run(routes, iterations);
+    long table = System.nanoTime() - start;
+    start = System.nanoTime();
+    found -= scan(iterations);
+    long linear = System.nanoTime() - start;
+    if (found != 0) {
+      throw new AssertionError("The table and the scan disagree.");
+    }
+    System.out.printf("routing table: %.1f ns per lookup%n", (double) table / iterations);
+    System.out.printf("linear scan:   %.1f ns per lookup%n", (double) linear / iterations);
+  }
+
+  private static int run(RoutingTable<RequestMatcher> routes, int iterations) {
+    int found = 0;
+    for (int i = 0; i < iterations; i++) {
+      if (routes.find(URIS[i % URIS.length], METHODS[i % URIS.length]) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  private static int scan(int iterations) {
+    int found = 0;
+    for (int i = 0; i < iterations; i++) {
+      String uri = URIS[i % URIS.length];
+      HttpMethod method = METHODS[i % URIS.length];
+      for (RequestMatcher matcher : MATCHERS) {
+        if (matcher.uriMatches(uri) && matcher.methodMatches(method)) {
+          found++;
+          break;
+        }
+      }
+    }
+    return found;
+  }
+}
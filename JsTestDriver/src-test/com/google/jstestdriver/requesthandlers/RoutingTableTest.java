@@ -0,0 +1,76 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+package com.google.jstestdriver.requesthandlers;
+
+import static com.google.jstestdriver.requesthandlers.HttpMethod.ANY;
+import static com.google.jstestdriver.requesthandlers.HttpMethod.GET;
+import static com.google.jstestdriver.requesthandlers.HttpMethod.POST;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+public class RoutingTableTest extends TestCase {
+
+  private final RequestMatcher home = new RequestMatcher(GET, "/");
+  private final RequestMatcher query = new RequestMatcher(POST, "/query/*");
+  private final RequestMatcher cmdGet = new RequestMatcher(GET, "/cmd");
+  private final RequestMatcher cmdPost = new RequestMatcher(POST, "/cmd");
+  private final RequestMatcher test = new RequestMatcher(GET, "/test/*");
+  private final RequestMatcher mp3 = new RequestMatcher(GET, "*.mp3");
+  private final RequestMatcher any = new RequestMatcher(ANY, "/*");
+
+  private final List<RequestMatcher> matchers =
+      ImmutableList.of(home, query, cmdGet, cmdPost, test, mp3, any);
+  private final RoutingTable<RequestMatcher> routes = RoutingTable.of(matchers);
+
+  public void testFindsLiterals() {
+    assertSame(home, routes.find("/", GET));
+    assertSame(cmdGet, routes.find("/cmd", GET));
+    assertSame(cmdPost, routes.find("/cmd", POST));
+  }
+
+  public void testFindsStartsWithPatterns() {
+    assertSame(query, routes.find("/query/1", POST));
+    assertSame(test, routes.find("/test/foo/bar.js", GET));
+  }
+
+  public void testFindsEndsWithPatterns() {
+    assertSame(mp3, routes.find("/music/song.mp3", GET));
+  }
+
+  public void testFindsTheFirstMatcherInOrder() {
+    assertSame(test, routes.find("/test/song.mp3", GET));
+    assertSame(any, routes.find("/query/1", GET));
+    assertSame(any, routes.find("/elsewhere", POST));
+  }
+
+  public void testMatchesPathWithoutMethod() {
+    RoutingTable<RequestMatcher> cmdOnly = RoutingTable.of(ImmutableList.of(cmdGet));
+
+    assertNull(cmdOnly.find("/cmd", POST));
+    assertTrue(cmdOnly.matchesPath("/cmd"));
+    assertFalse(cmdOnly.matchesPath("/cmd/"));
+    assertFalse(cmdOnly.matchesPath(null));
+  }
+
+  public void testAgreesWithTheMatchers() {
+    String[] uris = {"", "/", "/cmd", "/cmdx", "/query", "/query/", "/query/12",
+        "/test/a.mp3", "/a.mp3", ".mp3", "mp3", "/static/Namespace.js", "/test"};
+    for (String uri : uris) {
+      for (HttpMethod method : new HttpMethod[] {GET, POST}) {
+        assertSame(uri + " " + method, scan(uri, method), routes.find(uri, method));
+      }
+    }
+  }
+
+  private RequestMatcher scan(String uri, HttpMethod method) {
+    for (RequestMatcher matcher : matchers) {
+      if (matcher.uriMatches(uri) && matcher.methodMatches(method)) {
+        return matcher;
+      }
+    }
+    return null;
+  }
+}
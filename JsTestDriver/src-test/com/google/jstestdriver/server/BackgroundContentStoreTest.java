@@ -0,0 +1,102 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class BackgroundContentStoreTest extends TestCase {
+
+  /** Runs the saves when told to. */
+  private static class QueuedExecutor implements Executor {
+    final List<Runnable> queued = Lists.newArrayList();
+
+    public void execute(Runnable command) {
+      queued.add(command);
+    }
+
+    void runAll() {
+      for (Runnable runnable : queued) {
+        runnable.run();
+      }
+      queued.clear();
+    }
+  }
+
+  private static class MapContentStore implements ContentStore {
+    final Map<String, String> contents = Maps.newHashMap();
+    int saves = 0;
+
+    public String load(String digest) {
+      return contents.get(digest);
+    }
+
+    public void save(String digest, String data) {
+      saves++;
+      contents.put(digest, data);
+    }
+  }
+
+  public void testSavesOnTheWriter() throws Exception {
+    MapContentStore disk = new MapContentStore();
+    QueuedExecutor writer = new QueuedExecutor();
+    BackgroundContentStore store = new BackgroundContentStore(disk, writer, 1024);
+
+    store.save("abc", "var a;");
+
+    assertEquals(0, disk.saves);
+    assertEquals(1, store.getPending());
+    writer.runAll();
+    assertEquals("var a;", disk.contents.get("abc"));
+    assertEquals(0, store.getPending());
+  }
+
+  public void testLoadsPendingContentsFromMemory() throws Exception {
+    MapContentStore disk = new MapContentStore();
+    disk.contents.put("old", "var old;");
+    BackgroundContentStore store = new BackgroundContentStore(disk, new QueuedExecutor(), 1024);
+
+    store.save("abc", "var a;");
+
+    assertEquals("var a;", store.load("abc"));
+    assertEquals("var old;", store.load("old"));
+    assertNull(store.load("missing"));
+  }
+
+  public void testSavesPendingContentsOnce() throws Exception {
+    MapContentStore disk = new MapContentStore();
+    QueuedExecutor writer = new QueuedExecutor();
+    BackgroundContentStore store = new BackgroundContentStore(disk, writer, 1024);
+
+    store.save("abc", "var a;");
+    store.save("abc", "var a;");
+    writer.runAll();
+
+    assertEquals(1, disk.saves);
+  }
+
+  public void testSavesItselfOnceThePendingBytesAreTooMany() throws Exception {
+    MapContentStore disk = new MapContentStore();
+    QueuedExecutor writer = new QueuedExecutor();
+    BackgroundContentStore store = new BackgroundContentStore(disk, writer, 20);
+
+    store.save("abc", "var a;");
+    store.save("def", "var d;");
+
+    assertEquals(1, disk.saves);
+    assertEquals("var d;", disk.contents.get("def"));
+    assertEquals(1, store.getPending());
+    assertEquals(12, store.getPendingBytes());
+    writer.runAll();
+    assertEquals(0, store.getPendingBytes());
+
+    store.save("def2", "var d;");
+    assertEquals(1, store.getPending());
+  }
+}
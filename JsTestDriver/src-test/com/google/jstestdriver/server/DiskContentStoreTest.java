@@ -0,0 +1,89 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.jstestdriver.util.ContentDigest;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class DiskContentStoreTest extends TestCase {
+
+  private File directory;
+
+  @Override
+  protected void setUp() throws Exception {
+    directory = File.createTempFile("test", "JsTestDriver", new File(System
+        .getProperty("java.io.tmpdir")));
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    delete(directory);
+  }
+
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  public void testContentsSurviveReopening() throws Exception {
+    String data = "var a = '\u00e9';";
+    String digest = ContentDigest.of(data);
+    new DiskContentStore(directory, 1024).save(digest, data);
+
+    DiskContentStore reopened = new DiskContentStore(directory, 1024);
+    assertEquals(data, reopened.load(digest));
+    assertEquals(data.getBytes("UTF-8").length, reopened.getSize());
+    assertNull(reopened.load(ContentDigest.of("other")));
+  }
+
+  public void testIgnoresInvalidDigests() throws Exception {
+    DiskContentStore store = new DiskContentStore(directory, 1024);
+    store.save("../../escape", "data");
+    store.save(null, "data");
+
+    assertNull(store.load("../../escape"));
+    assertEquals(0, store.getSize());
+  }
+
+  public void testRemovesPartialWrites() throws Exception {
+    String digest = ContentDigest.of("data");
+    File subdirectory = new File(directory, digest.substring(0, 2));
+    subdirectory.mkdir();
+    FileOutputStream out = new FileOutputStream(new File(subdirectory, digest + "-1.tmp"));
+    out.write("da".getBytes("UTF-8"));
+    out.close();
+
+    DiskContentStore store = new DiskContentStore(directory, 1024);
+
+    assertEquals(0, store.getSize());
+    assertEquals(0, subdirectory.listFiles().length);
+    assertNull(store.load(digest));
+  }
+
+  public void testCollectsLeastRecentlyUsed() throws Exception {
+    DiskContentStore store = new DiskContentStore(directory, 25);
+    String[] digests = new String[3];
+    for (int i = 0; i < digests.length; i++) {
+      digests[i] = ContentDigest.of("file" + i);
+      store.save(digests[i], "0123456789");
+      new File(new File(directory, digests[i].substring(0, 2)), digests[i])
+          .setLastModified(System.currentTimeMillis() - (10 - i) * 60000L);
+    }
+    // the third save went over 25 bytes.
+    assertNull(store.load(digests[0]));
+    assertEquals("0123456789", store.load(digests[1]));
+    assertEquals("0123456789", store.load(digests[2]));
+    assertEquals(20, store.getSize());
+  }
+}
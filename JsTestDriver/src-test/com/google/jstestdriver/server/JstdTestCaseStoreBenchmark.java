@@ -0,0 +1,97 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+package com.google.jstestdriver.server;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many test resource reads the {@link JstdTestCaseStore} serves
+ * while clients keep uploading deltas, compared to the same readers alone.
+ * Run with:
+ *
+ * java com.google.jstestdriver.server.JstdTestCaseStoreBenchmark [readers] [writers] [millis]
+ */
+public class JstdTestCaseStoreBenchmark {
+
+  private static final int FILES = 500;
+
+  public static void main(String[] args) throws Exception {
+    int readers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+    JstdTestCaseStore store = createStore();
+    // warm up, then measure.
+    run(store, readers, writers, millis / 4);
+    long alone = run(store, readers, 0, millis);
+    long contended = run(store, readers, writers, millis);
+    System.out.printf("%d readers alone:          %d reads/s%n", readers, alone * 1000 / millis);
+    System.out.printf("%d readers with %d writers: %d reads/s%n", readers, writers,
+        contended * 1000 / millis);
+  }
+
+  private static JstdTestCaseStore createStore() {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    List<FileInfo> tests = Lists.newArrayList();
+    for (int i = 0; i < FILES; i++) {
+      tests.add(file(i, 1));
+    }
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(), tests,
+        Lists.<FileInfo>newArrayList(), "benchmark"));
+    return store;
+  }
+
+  private static FileInfo file(int i, long timestamp) {
+    String path = "src/file" + i + ".js";
+    return new FileInfo(path, timestamp, -1, false, false, "var file" + i + " = " + timestamp + ";",
+        path);
+  }
+
+  /** @return The number of reads completed. */
+  private static long run(final JstdTestCaseStore store, int readers, int writers, long millis)
+      throws InterruptedException {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicLong reads = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(readers + writers);
+    for (int r = 0; r < readers; r++) {
+      final int offset = r;
+      new Thread() {
+        @Override
+        public void run() {
+          long count = 0;
+          for (int i = offset; running.get(); i++) {
+            store.getEncodedResource("src/file" + (i % FILES) + ".js");
+            store.getCase("benchmark");
+            count++;
+          }
+          reads.addAndGet(count);
+          done.countDown();
+        }
+      }.start();
+    }
+    for (int w = 0; w < writers; w++) {
+      final int offset = w;
+      new Thread() {
+        @Override
+        public void run() {
+          for (long timestamp = 2; running.get(); timestamp++) {
+            store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+                Lists.newArrayList(file((int) ((timestamp * 7 + offset) % FILES), timestamp)),
+                Lists.<FileInfo>newArrayList()));
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    Thread.sleep(millis);
+    running.set(false);
+    done.await();
+    return reads.get();
+  }
+}
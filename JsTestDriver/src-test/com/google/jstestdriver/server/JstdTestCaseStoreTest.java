@@ -4,11 +4,17 @@ package com.google.jstestdriver.server;
 
 import com.google.common.collect.Lists;
 import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.FilesCache;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.util.ContentDigest;
 
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * @author corysmith@google.com (Cory Smith)
  *
@@ -79,4 +85,290 @@ public class JstdTestCaseStoreTest extends TestCase {
     assertEquals("The data will be updated for test case two", contents,
         store.getCase(testCaseIdTwo).getTests().get(0).getData());
   }
+
+  public void testTouchedFileWithSameDigestIsNotReloaded() throws Exception {
+    String contents = "foo";
+    FileInfo one = new FileInfo("foo.js", 1, -1, false, false, null, "foo.js");
+    one.setDigest("abc");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+    store.applyDelta(new JstdTestCaseDelta(
+        Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load(contents, 1)),
+        Lists.<FileInfo>newArrayList()));
+
+    FileInfo touched = new FileInfo("foo.js", 2, -1, false, false, null, "foo.js");
+    touched.setDigest("abc");
+    JstdTestCaseDelta delta = store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(touched), Lists.<FileInfo>newArrayList(), "2"));
+
+    assertTrue("Unchanged contents should not be uploaded again.", delta.getTests().isEmpty());
+    assertEquals(contents, store.getCase("2").getTests().get(0).getData());
+  }
+
+  public void testEncodedResourceIsReplacedWithFile() throws Exception {
+    FileInfo one = new FileInfo("foo.js", 1, -1, false, false, "one", "foo.js");
+    FileInfo two = new FileInfo("foo.js", 2, -1, false, false, "two", "foo.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+    EncodedResource first = store.getEncodedResource("foo.js");
+    assertSame(first, store.getEncodedResource("foo.js"));
+    assertEquals("one", first.decode());
+
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(two), Lists.<FileInfo>newArrayList()));
+    EncodedResource second = store.getEncodedResource("foo.js");
+    assertEquals("two", second.decode());
+    assertFalse(first.getEtag().equals(second.getEtag()));
+    assertTrue(second.matches(second.getEtag()));
+    assertFalse(second.matches(first.getEtag()));
+  }
+
+  public void testSnapshotsAreVersionedAndImmutable() throws Exception {
+    FileInfo one = new FileInfo("foo.js", 1, -1, false, false, null, "foo.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+    JstdTestCaseStore.Snapshot before = store.snapshot();
+
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load("foo", 1)), Lists.<FileInfo>newArrayList()));
+    JstdTestCaseStore.Snapshot after = store.snapshot();
+
+    assertTrue(after.getVersion() > before.getVersion());
+    assertFalse(before.getCase("1").getTests().get(0).isLoaded());
+    assertEquals("foo", after.getCase("1").getTests().get(0).getData());
+  }
+
+  public void testConcurrentCasesAndDeltasAreNotLost() throws Exception {
+    final JstdTestCaseStore store = new JstdTestCaseStore();
+    final int clients = 8;
+    final int files = 50;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[clients];
+    for (int c = 0; c < clients; c++) {
+      final String id = String.valueOf(c);
+      threads[c] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int f = 0; f < files; f++) {
+              String path = "client" + id + "/file" + f + ".js";
+              FileInfo file = new FileInfo(path, 1, -1, false, false, null, path);
+              store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+                  Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(),
+                  id + "-" + f));
+              store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+                  Lists.<FileInfo>newArrayList(file.load(path, 1)),
+                  Lists.<FileInfo>newArrayList()));
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      };
+      threads[c].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(clients * files, store.getCases().size());
+    for (JstdTestCase testCase : store.getCases()) {
+      FileInfo file = testCase.getTests().get(0);
+      assertEquals(file.getFilePath(), file.getData());
+      assertEquals(file.getFilePath(), store.getFileContent(file.getDisplayPath()));
+    }
+  }
+
+  public void testEvictedFilesAreRequestedAgain() throws Exception {
+    FileInfo one = new FileInfo("one.js", 1, -1, false, false, null, "one.js");
+    FileInfo two = new FileInfo("two.js", 1, -1, false, false, null, "two.js");
+    String contents = "0123456789";
+    JstdTestCaseStore store = new JstdTestCaseStore(0, new NullContentStore());
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one, two), Lists.<FileInfo>newArrayList(), "1"));
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load(contents, 1)), Lists.<FileInfo>newArrayList()));
+    assertEquals(contents, store.getFileContent("one.js"));
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(two.load("9876543210", 1)), Lists.<FileInfo>newArrayList()));
+
+    assertEquals(1, store.getResourceCache().getEvictions());
+    try {
+      store.getEncodedResource("one.js");
+      fail("Evicted file was served.");
+    } catch (FilesCache.MissingFileException e) {
+      // expected
+    }
+    try {
+      store.getFileContent("one.js");
+      fail("Evicted file was read as empty.");
+    } catch (FilesCache.MissingFileException e) {
+      // expected
+    }
+    JstdTestCaseDelta delta = store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one, two), Lists.<FileInfo>newArrayList(), "2"));
+    assertEquals(Lists.newArrayList(one), delta.getTests());
+
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load(contents, 1)), Lists.<FileInfo>newArrayList()));
+    assertEquals(contents, store.getEncodedResource("one.js").decode());
+    assertTrue(store.getCase("2").getTests().get(0).isLoaded());
+  }
+
+  public void testStoredContentsAreNotUploadedAfterRestart() throws Exception {
+    File directory = File.createTempFile("test", "JsTestDriver", new File(System
+        .getProperty("java.io.tmpdir")));
+    directory.delete();
+    String contents = "var foo;";
+    FileInfo one = new FileInfo("foo.js", 1, -1, false, false, null, "foo.js");
+    one.setDigest(ContentDigest.of(contents));
+    try {
+      JstdTestCaseStore store = new JstdTestCaseStore(1, new DiskContentStore(directory, 1024));
+      store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+      store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one.load(contents, 1)), Lists.<FileInfo>newArrayList()));
+
+      JstdTestCaseStore restarted =
+          new JstdTestCaseStore(1, new DiskContentStore(directory, 1024));
+      JstdTestCaseDelta delta = restarted.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+
+      assertTrue(delta.getTests().isEmpty());
+      assertEquals(contents, restarted.getEncodedResource("foo.js").decode());
+    } finally {
+      for (File subdirectory : directory.listFiles()) {
+        for (File file : subdirectory.listFiles()) {
+          file.delete();
+        }
+        subdirectory.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  public void testWrongDigestsDontReplaceStoredContents() throws Exception {
+    File directory = File.createTempFile("test", "JsTestDriver", new File(System
+        .getProperty("java.io.tmpdir")));
+    directory.delete();
+    String contents = "var foo;";
+    FileInfo one = new FileInfo("foo.js", 1, -1, false, false, null, "foo.js");
+    one.setDigest(ContentDigest.of(contents));
+    try {
+      JstdTestCaseStore store = new JstdTestCaseStore(1, new DiskContentStore(directory, 1024));
+      store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+      store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one.load("var bar;", 1)), Lists.<FileInfo>newArrayList()));
+
+      JstdTestCaseStore restarted =
+          new JstdTestCaseStore(1, new DiskContentStore(directory, 1024));
+      JstdTestCaseDelta delta = restarted.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+          Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+
+      assertEquals(Lists.newArrayList(one), delta.getTests());
+    } finally {
+      for (File subdirectory : directory.listFiles()) {
+        for (File file : subdirectory.listFiles()) {
+          file.delete();
+        }
+        subdirectory.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  public void testApplyDeltaOnlyRewritesAffectedCases() throws Exception {
+    FileInfo shared = new FileInfo("shared.js", 1, -1, false, false, null, "shared.js");
+    FileInfo one = new FileInfo("one.js", 1, -1, false, false, null, "one.js");
+    FileInfo two = new FileInfo("two.js", 1, -1, false, false, null, "two.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(shared),
+        Lists.<FileInfo>newArrayList(one), Lists.<FileInfo>newArrayList(), "1"));
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(shared),
+        Lists.<FileInfo>newArrayList(two), Lists.<FileInfo>newArrayList(), "2"));
+    JstdTestCase caseTwo = store.getCase("2");
+
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load("one", 1)), Lists.<FileInfo>newArrayList()));
+    assertSame(caseTwo, store.getCase("2"));
+    assertEquals("one", store.getCase("1").getTests().get(0).getData());
+
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(shared.load("shared", 1)),
+        Lists.<FileInfo>newArrayList(), Lists.<FileInfo>newArrayList()));
+    assertEquals("shared", store.getCase("1").getDependencies().get(0).getData());
+    assertEquals("shared", store.getCase("2").getDependencies().get(0).getData());
+
+    // replacing a case moves it in the index.
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(two), Lists.<FileInfo>newArrayList(), "1"));
+    caseTwo = store.getCase("2");
+    JstdTestCase caseOne = store.getCase("1");
+    store.applyDelta(new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(one.load("one again", 2)), Lists.<FileInfo>newArrayList()));
+    assertSame(caseOne, store.getCase("1"));
+    assertSame(caseTwo, store.getCase("2"));
+  }
+
+  public void testSessionsAreIsolated() throws Exception {
+    FileInfo file = new FileInfo("a.js", 1, -1, false, false, null, "a.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase("one", new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+    store.addCase("two", new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+
+    store.applyDelta("one", new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file.load("var one;", 1)), Lists.<FileInfo>newArrayList()));
+    store.applyDelta("two", new JstdTestCaseDelta(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file.load("var two;", 1)), Lists.<FileInfo>newArrayList()));
+
+    assertEquals("var one;", store.getEncodedResource("one", "a.js").decode());
+    assertEquals("var two;", store.getEncodedResource("two", "a.js").decode());
+    assertEquals("var one;", store.getCase("one", "default").getTests().get(0).getData());
+    assertNull(store.getCase("default"));
+    assertTrue(store.getCases().isEmpty());
+    try {
+      store.getEncodedResource("a.js");
+      fail("expected the default session not to have the file");
+    } catch (FilesCache.MissingFileException e) {
+      // expected
+    }
+  }
+
+  public void testSessionsShareIdenticalContents() throws Exception {
+    FileInfo file = new FileInfo("a.js", 1, -1, false, false, "var a;", "a.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase("one", new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+    store.addCase("two", new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+
+    assertSame(store.getEncodedResource("one", "a.js"), store.getEncodedResource("two", "a.js"));
+    assertEquals(store.getEncodedResource("one", "a.js").getSize(),
+        store.getResourceCache().getSize());
+  }
+
+  public void testUnusedSessionsExpire() throws Exception {
+    FileInfo file = new FileInfo("a.js", 1, -1, false, false, "var a;", "a.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+    store.addCase("job", new JstdTestCase(Lists.<FileInfo>newArrayList(),
+        Lists.<FileInfo>newArrayList(file), Lists.<FileInfo>newArrayList(), "default"));
+    assertEquals(2, store.getSessionCount());
+
+    store.expireSessions(System.currentTimeMillis() + JstdTestCaseStore.SESSION_TIMEOUT + 1);
+
+    assertEquals(1, store.getSessionCount());
+    assertNull(store.getCase("job", "default"));
+    assertNotNull(store.getCase("default"));
+  }
 }
@@ -0,0 +1,67 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import junit.framework.TestCase;
+
+public class ResourceCacheTest extends TestCase {
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    EncodedResource a = EncodedResource.encode("0123456789");
+    ResourceCache cache = new ResourceCache(a.getSize() * 3);
+    cache.put(a);
+    EncodedResource b = cache.put(EncodedResource.encode("1234567890"));
+    EncodedResource c = cache.put(EncodedResource.encode("2345678901"));
+    assertSame(a, cache.get(a.getDigest()));
+
+    EncodedResource d = cache.put(EncodedResource.encode("3456789012"));
+
+    // evicts to a little under the capacity.
+    assertTrue(cache.contains(a.getDigest()));
+    assertFalse(cache.contains(b.getDigest()));
+    assertFalse(cache.contains(c.getDigest()));
+    assertTrue(cache.contains(d.getDigest()));
+    assertEquals(2, cache.getEvictions());
+    assertEquals(a.getSize() * 2, cache.getSize());
+  }
+
+  public void testSharesIdenticalContents() throws Exception {
+    ResourceCache cache = new ResourceCache(1024);
+    EncodedResource first = cache.put(EncodedResource.encode("var a;"));
+    EncodedResource second = cache.put(EncodedResource.encode("var a;"));
+
+    assertSame(first, second);
+    assertEquals(first.getSize(), cache.getSize());
+    assertNull(cache.get(EncodedResource.encode("var b;").getDigest()));
+    assertSame(first, cache.get(first.getDigest()));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  public void testKeepsResourceLargerThanCapacity() throws Exception {
+    ResourceCache cache = new ResourceCache(4);
+    EncodedResource small = cache.put(EncodedResource.encode("abc"));
+    EncodedResource large = cache.put(EncodedResource.encode("0123456789"));
+
+    assertFalse(cache.contains(small.getDigest()));
+    assertTrue(cache.contains(large.getDigest()));
+  }
+
+  public void testKeepsPinnedResourcesUntilThePinExpires() throws Exception {
+    EncodedResource pinned = EncodedResource.encode("0123456789");
+    EncodedResource expired = EncodedResource.encode("1234567890");
+    ResourceCache cache = new ResourceCache(pinned.getSize() * 2);
+    cache.put(pinned);
+    cache.put(expired);
+    long now = System.currentTimeMillis();
+    assertTrue(cache.pin(pinned.getDigest(), now + 60000));
+    cache.pin(expired.getDigest(), now - 1);
+
+    EncodedResource added = cache.put(EncodedResource.encode("2345678901"));
+
+    assertTrue(cache.contains(pinned.getDigest()));
+    assertFalse(cache.contains(expired.getDigest()));
+    assertTrue(cache.contains(added.getDigest()));
+    assertFalse(cache.pin(expired.getDigest(), now + 60000));
+  }
+}
@@ -30,6 +30,7 @@ import junit.framework.TestCase;
 
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 import com.google.jstestdriver.BrowserInfo;
 import com.google.jstestdriver.CapturedBrowsers;
 import com.google.jstestdriver.Command;
@@ -46,7 +47,9 @@ import com.google.jstestdriver.TimeImpl;
 import com.google.jstestdriver.JsonCommand.CommandType;
 import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.browser.BrowserIdStrategy;
+import com.google.jstestdriver.protocol.BrowserResponseBatch;
 import com.google.jstestdriver.protocol.BrowserStreamAcknowledged;
+import com.google.jstestdriver.protocol.ProtocolGson;
 import com.google.jstestdriver.runner.RunnerType;
 
 /**
@@ -257,4 +260,71 @@ public class BrowserQueryResponseHandlerTest extends TestCase {
 
     assertEquals(0, fileInfos.size());
   }
+
+  public void testBatchedResponsesAreQueuedAndAcknowledged() throws Exception {
+    CapturedBrowsers browsers = new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0)));
+    String id = "1";
+    SlaveBrowser slave =
+        new SlaveBrowser(new TimeImpl(), id, new BrowserInfo(), 20, null, CaptureHandler.QUIRKS,
+            RunnerType.CLIENT, BrowserState.CAPTURED);
+
+    browsers.addSlave(slave);
+    BrowserQueryResponseHandler handler =
+        new BrowserQueryResponseHandler(null, null, browsers, streamedResponses);
+    slave.createCommand("awaitingResponse");
+    slave.dequeueCommand();
+
+    BrowserInfo browserInfo = new BrowserInfo();
+    browserInfo.setId(1L);
+    Response first = new Response(ResponseType.TEST_RESULT.name(), "[]", browserInfo, "", 1);
+    Response second = new Response(ResponseType.TEST_RESULT.name(), "[]", browserInfo, "", 2);
+    BrowserResponseBatch batch = new BrowserResponseBatch(Lists.newArrayList(
+        new BrowserResponseBatch.Entry(first, "10.0"),
+        new BrowserResponseBatch.Entry(second, "10.1")), 40);
+
+    handler.service(id, "null", "false", null, gson.toJson(batch), writer);
+
+    assertEquals(gson.toJson(new BrowserStreamAcknowledged(Lists.newArrayList("10.0", "10.1"))),
+        out.toString());
+    assertEquals(first, slave.getResponse().getResponse());
+    assertEquals(second, slave.getResponse().getResponse());
+    assertTrue("Command should still be running.", slave.isCommandRunning());
+    assertEquals(1, slave.getResponseBatchCount());
+    assertEquals(2.0, slave.getAverageResponseBatchSize());
+    assertEquals(40.0, slave.getAverageResponseBatchLatency());
+    assertEquals(40, slave.getMaxResponseBatchLatency());
+  }
+
+  public void testStructuredFileLoadResultIsParsedOnceAndForwarded() throws Exception {
+    CapturedBrowsers browsers = new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0)));
+    String id = "1";
+    SlaveBrowser slave =
+        new SlaveBrowser(new TimeImpl(), id, new BrowserInfo(), 20, null, CaptureHandler.QUIRKS,
+            RunnerType.CLIENT, BrowserState.CAPTURED);
+
+    browsers.addSlave(slave);
+    BrowserQueryResponseHandler handler =
+        new BrowserQueryResponseHandler(null, null, browsers, streamedResponses);
+    List<FileResult> fileResults = new LinkedList<FileResult>();
+    fileResults.add(new FileResult(new FileSource("/test/filename1.js", "filename1.js", 123, -1), true, ""));
+    slave.createCommand("awaitingResponse");
+    slave.dequeueCommand();
+
+    Response response = new Response();
+    response.setType(ResponseType.FILE_LOAD_RESULT.name());
+    response.setData(new JsonParser().parse(gson.toJson(new LoadedFiles(fileResults))));
+    Gson protocolGson = ProtocolGson.create();
+    String wire = protocolGson.toJson(response);
+    assertFalse("Payload should not be escaped.", wire.contains("\\\""));
+
+    handler.service(id, wire, "", null, writer);
+
+    assertEquals(1, slave.getFileSet().size());
+    Response forwarded = slave.getResponse().getResponse();
+    assertTrue(forwarded.isStructured());
+    LoadedFiles loaded =
+        protocolGson.fromJson(protocolGson.toJson(forwarded), Response.class).parseResponse();
+    assertEquals("filename1.js",
+        loaded.getLoadedFiles().iterator().next().getFileSource().getBasePath());
+  }
 }
@@ -80,6 +80,8 @@ public class CommandGetHandlerTest extends TestCase {
     HttpServletRequest request = control.createMock(HttpServletRequest.class);
     expect(request.getParameter("listBrowsers")).andReturn(null);
     expect(request.getParameter("nextBrowserId")).andReturn(null);
+    expect(request.getAttribute("org.mortbay.jetty.ajax.Continuation")).andReturn(null);
+    expect(request.getParameter("stream")).andReturn(null);
     expect(request.getParameter("id")).andReturn(browserInfo.getId().toString());
     control.replay();
 
@@ -99,4 +101,47 @@ public class CommandGetHandlerTest extends TestCase {
     assertEquals(ResponseType.BROWSER_PANIC, gson.fromJson(out.toString(), StreamMessage.class)
         .getResponse().getResponseType());
   }
+
+  public void testStreamResponses() throws Exception {
+    CapturedBrowsers capturedBrowsers = new CapturedBrowsers(new BrowserIdStrategy(new MockTime(0)));
+    BrowserInfo browserInfo = new BrowserInfo();
+    browserInfo.setId(1L);
+
+    CharArrayWriter out = new CharArrayWriter();
+    PrintWriter writer = new PrintWriter(out);
+
+    IMocksControl control = EasyMock.createControl();
+
+    HttpServletResponse response = control.createMock(HttpServletResponse.class);
+    expect(response.getWriter()).andReturn(writer).anyTimes();
+    HttpServletRequest request = control.createMock(HttpServletRequest.class);
+    expect(request.getParameter("listBrowsers")).andReturn(null);
+    expect(request.getParameter("nextBrowserId")).andReturn(null);
+    expect(request.getAttribute("org.mortbay.jetty.ajax.Continuation")).andReturn(null);
+    expect(request.getParameter("stream")).andReturn("true");
+    expect(request.getParameter("id")).andReturn(browserInfo.getId().toString());
+    control.replay();
+
+    SlaveBrowser slave =
+        new SlaveBrowser(new TimeImpl(), "1", browserInfo, 20000, null, CaptureHandler.QUIRKS,
+            RunnerType.CLIENT, BrowserState.CAPTURED);
+    slave.heartBeat();
+    slave.addResponse(new Response(ResponseType.LOG.name(), "log", browserInfo, "", -1), false);
+    slave.addResponse(
+        new Response(ResponseType.TEST_RESULT.name(), "[]", browserInfo, "", -1), true);
+    capturedBrowsers.addSlave(slave);
+    Gson gson = new Gson();
+    CommandGetHandler handler = new CommandGetHandler(request, response, gson, capturedBrowsers);
+    handler.handleIt();
+
+    String[] lines = out.toString().split("\n");
+    assertEquals(2, lines.length);
+    StreamMessage first = gson.fromJson(lines[0], StreamMessage.class);
+    assertEquals(ResponseType.LOG, first.getResponse().getResponseType());
+    assertFalse(first.isLast());
+    StreamMessage second = gson.fromJson(lines[1], StreamMessage.class);
+    assertEquals(ResponseType.TEST_RESULT, second.getResponse().getResponseType());
+    assertTrue(second.isLast());
+    control.verify();
+  }
 }
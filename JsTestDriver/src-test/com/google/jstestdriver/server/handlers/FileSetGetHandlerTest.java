@@ -74,6 +74,50 @@ public class FileSetGetHandlerTest extends TestCase {
   }
 
 
+  public void testQueuedStartIsGrantedOnStop() throws Exception {
+    final String browserId = "foo";
+    final MockTime time = new MockTime(System.currentTimeMillis());
+    SlaveBrowser browser =
+        new SlaveBrowser(time, browserId, new BrowserInfo(), 10000, new NullPathPrefix(), "quirks",
+            RunnerType.CLIENT, BrowserState.READY);
+    final CapturedBrowsers capturedBrowsers = new CapturedBrowsers(new BrowserIdStrategy(time));
+    capturedBrowsers.addSlave(browser);
+
+    String sessionIdOne = doRequest(browserId, null, "start", capturedBrowsers, time);
+    final String[] queued = new String[1];
+    Thread waiting = new Thread() {
+      @Override
+      public void run() {
+        FakeHttpServletRequest request = new FakeHttpServletRequest();
+        request.setParameter("id", browserId);
+        request.setParameter("session", "start");
+        request.setParameter("queue", "true");
+        StringWriter stringWriter = new StringWriter();
+        try {
+          new FileSetGetHandler(request, new PrintWriter(stringWriter), capturedBrowsers, time)
+              .handleIt();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        queued[0] = stringWriter.toString();
+      }
+    };
+    waiting.start();
+    while (browser.getSessionQueue().getWaiting() == 0) {
+      Thread.sleep(10);
+    }
+    String failed = doRequest(browserId, null, "start", capturedBrowsers, time);
+    assertEquals("Expected unqueued starts to fail while others wait.", "FAILED", failed);
+
+    doRequest(browserId, sessionIdOne, "stop", capturedBrowsers, time);
+    waiting.join();
+
+    assertFalse("Expected sessionId, got " + queued[0], queued[0].startsWith("QUEUED")
+        || "FAILED".equals(queued[0]));
+    // throws unless the queued session holds the browser.
+    doRequest(browserId, queued[0], "stop", capturedBrowsers, time);
+  }
+
   private String doRequest(String id, String sessionId, String session,
       CapturedBrowsers capturedBrowsers, Time time) throws IOException {
     FakeHttpServletRequest request = new FakeHttpServletRequest();
@@ -31,6 +31,7 @@ import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.SlaveBrowser.BrowserState;
 import com.google.jstestdriver.browser.BrowserIdStrategy;
 import com.google.jstestdriver.runner.RunnerType;
+import com.google.jstestdriver.server.JstdTestCaseStore;
 
 /**
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
@@ -53,7 +54,8 @@ public class HomeHandlerTest extends TestCase {
     ByteArrayOutputStream stream = new ByteArrayOutputStream();
     PrintWriter writer = new PrintWriter(stream);
     HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
-    HomeHandler handler = new HomeHandler(capturedBrowsers, response, writer);
+    HomeHandler handler =
+        new HomeHandler(capturedBrowsers, new JstdTestCaseStore(), response, writer);
 
     /* expect */response.setContentType("text/html");
 
@@ -66,7 +68,9 @@ public class HomeHandlerTest extends TestCase {
         "<br/><p><strong>Captured Browsers: (1)</strong></p>" +
         "<div>Id: 1<br/>Name: browser<br/>Version: 1.0" +
         "<br/>Operating System: OS<br/>Currently waiting...<br/>" +
-        "<ul style='display:none'></ul></div></body></html>",
+        "Upload budget: 1024kB per chunk<br/>" +
+        "<ul style='display:none'></ul></div>" +
+        "<p>File cache: 0kB of 131072kB, hits: 0, misses: 0, evictions: 0</p></body></html>",
         stream.toString());
 
     EasyMock.verify(response);
@@ -19,6 +19,7 @@ import com.google.common.collect.Lists;
 import com.google.jstestdriver.FileInfo;
 import com.google.jstestdriver.config.ExecutionType;
 import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.server.EncodedResource;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 
 import junit.framework.TestCase;
@@ -27,10 +28,11 @@ import org.easymock.EasyMock;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatterBuilder;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.util.Collections;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -40,7 +42,6 @@ import javax.servlet.http.HttpServletResponse;
 public class TestResourceHandlerTest extends TestCase {
 
   private ByteArrayOutputStream out = new ByteArrayOutputStream();
-  private PrintWriter writer = new PrintWriter(out);
 
   public void testEmptyReturnWhenFileNotPresent() throws Exception {
     HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
@@ -50,31 +51,93 @@ public class TestResourceHandlerTest extends TestCase {
     TestResourceHandler handler =
         new TestResourceHandler(null, response, new JstdTestCaseStore());
 
-    handler.service("nothing", writer);
+    handler.service("nothing", null, null, out);
+    EasyMock.verify(response);
   }
 
   public void testServeFile() throws Exception {
-    HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
+    HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
     response.setContentType(StaticResourceHandler.MIME_TYPE_MAP.get("js"));
     EasyMock.expectLastCall().anyTimes();
     EasyMock.replay(response);
 
+    TestResourceHandler handler =
+        new TestResourceHandler(null, response, createStore("data", "more data"));
+
+    handler.service("dummy.js", null, null, out);
+    assertEquals("data", out.toString("UTF-8"));
+    out.reset();
+    handler.service("dummytoo.js", null, null, out);
+    assertEquals("more data", out.toString("UTF-8"));
+  }
+
+  public void testNotModifiedWhenEtagMatches() throws Exception {
+    JstdTestCaseStore store = createStore("data", "more data");
+    String etag = store.getEncodedResource("dummy.js").getEtag();
+    HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
+    response.setContentType(StaticResourceHandler.MIME_TYPE_MAP.get("js"));
+    response.setHeader("ETag", etag);
+    response.setHeader("Vary", "Accept-Encoding");
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    EasyMock.replay(response);
+
+    new TestResourceHandler(null, response, store)
+        .service("dummy.js", "\"other\", " + etag, "gzip", out);
+    EasyMock.verify(response);
+    assertEquals(0, out.size());
+  }
+
+  public void testServeGzippedVariant() throws Exception {
+    StringBuilder bundle = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      bundle.append("var a").append(i).append(" = '\u00e9';\n");
+    }
+    JstdTestCaseStore store = createStore(bundle.toString(), "more data");
+    EncodedResource resource = store.getEncodedResource("dummy.js");
+    assertTrue(resource.hasGzipped());
+    HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
+    response.setContentType(StaticResourceHandler.MIME_TYPE_MAP.get("js"));
+    response.setHeader("ETag", resource.getEtag());
+    response.setHeader("Vary", "Accept-Encoding");
+    response.setHeader("Content-Encoding", "gzip");
+    response.setContentLength(resource.getLength(true));
+    EasyMock.replay(response);
+
+    new TestResourceHandler(null, response, store).service("dummy.js", null, "deflate, gzip", out);
+    EasyMock.verify(response);
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+    ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      unzipped.write(buffer, 0, read);
+    }
+    assertEquals(bundle.toString(), unzipped.toString("UTF-8"));
+    assertSame("The encoding is reused", resource, store.getEncodedResource("dummy.js"));
+  }
+
+  public void testIdentityWhenGzipIsRefused() throws Exception {
+    StringBuilder bundle = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      bundle.append("var a = 1;\n");
+    }
+    JstdTestCaseStore store = createStore(bundle.toString(), "more data");
+    HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.replay(response);
+
+    new TestResourceHandler(null, response, store).service("dummy.js", null, "gzip;q=0", out);
+    assertEquals(bundle.toString(), out.toString("UTF-8"));
+  }
 
+  private JstdTestCaseStore createStore(String data, String moreData) {
     JstdTestCaseStore store = new JstdTestCaseStore();
     store.addCase(new JstdTestCase(
         Lists.newArrayList(
-            new FileInfo("dummy.js", -1, -1, false, false, "data", "dummy.js"),
-            new FileInfo("dummytoo.js", 20, -1, false, false, "more data", "dummytoo.js")),
+            new FileInfo("dummy.js", -1, -1, false, false, data, "dummy.js"),
+            new FileInfo("dummytoo.js", 20, -1, false, false, moreData, "dummytoo.js")),
         Collections.<FileInfo>emptyList(),
         Collections.<FileInfo>emptyList(),
             "id"));
-    TestResourceHandler handler =
-        new TestResourceHandler(null, response, store);
-
-    handler.service("dummy.js", writer);
-    assertEquals("data", out.toString());
-    out.reset();
-    handler.service("dummytoo.js", writer);
-    assertEquals("more data", out.toString());
+    return store;
   }
 }
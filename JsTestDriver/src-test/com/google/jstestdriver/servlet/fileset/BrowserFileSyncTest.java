@@ -0,0 +1,224 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.servlet.fileset;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.Command;
+import com.google.jstestdriver.DefaultFileFilter;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.FileSource;
+import com.google.jstestdriver.JsonCommand;
+import com.google.jstestdriver.JsonCommand.CommandType;
+import com.google.jstestdriver.LoadedFiles;
+import com.google.jstestdriver.MockTime;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.SlaveBrowser.BrowserState;
+import com.google.jstestdriver.browser.BrowserFileSet;
+import com.google.jstestdriver.hooks.FileInfoScheme;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.model.NullPathPrefix;
+import com.google.jstestdriver.model.Sessions;
+import com.google.jstestdriver.runner.RunnerType;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+import com.google.jstestdriver.server.NullContentStore;
+import com.google.jstestdriver.server.handlers.CaptureHandler;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BrowserFileSyncTest extends TestCase {
+  private final Gson gson = new Gson();
+
+  private final FileInfo loaded = new FileInfo("loaded.js", 1, -1, false, false, "a", "loaded.js");
+  private final FileInfo served = new FileInfo("served.js", 1, -1, false, true, "b", "served.js");
+  private final FileInfo test = new FileInfo("test.js", 1, -1, false, false, "c", "test.js");
+
+  public void testLoadsTheTestCaseBeforeTheCommand() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded, served), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+
+    createSync(store).sync(browser, Sessions.DEFAULT_SESSION, "case");
+    browser.createCommand("{mooh}");
+
+    Command load = browser.dequeueCommand();
+    assertFalse(load.endsStream());
+    assertEquals(Lists.newArrayList("/test/loaded.js", "/test/test.js"), loadedPaths(load));
+    assertFalse(browser.isRunningStreamEndingCommand());
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+    assertTrue(browser.isRunningStreamEndingCommand());
+  }
+
+  public void testLoadsNothingIfTheBrowserIsCurrent() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+    browser.addFiles(Lists.newArrayList(loaded, test), new LoadedFiles());
+
+    createSync(store).sync(browser, Sessions.DEFAULT_SESSION, "case");
+    browser.createCommand("{mooh}");
+
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+  }
+
+  public void testResetsBeforeLoadingIfTheBrowserHasExtraFiles() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+    browser.addFiles(Lists.newArrayList(
+        new FileInfo("extra.js", 1, -1, false, false, null, "extra.js")), new LoadedFiles());
+
+    createSync(store).sync(browser, Sessions.DEFAULT_SESSION, "case");
+    browser.createCommand("{mooh}");
+
+    Command reset = browser.dequeueCommand();
+    JsonCommand resetCommand = gson.fromJson(reset.getCommand(), JsonCommand.class);
+    assertEquals(CommandType.RESET.getCommand(), resetCommand.getCommand());
+    assertEquals(Lists.newArrayList("preload", "case"), resetCommand.getParameters());
+    assertFalse(reset.endsStream());
+
+    // the reset preloaded only the first file.
+    browser.resetFileSet();
+    browser.addFiles(Lists.newArrayList(loaded), new LoadedFiles());
+
+    assertEquals(Lists.newArrayList("/test/test.js"), loadedPaths(browser.dequeueCommand()));
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+  }
+
+  public void testLoadsTheFilesOfTheSession() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    store.addCase("job 1", new JstdTestCase(Lists.newArrayList(loaded),
+        Collections.<FileInfo>emptyList(), Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+    browser.addFiles(Lists.newArrayList(
+        new FileInfo("extra.js", 1, -1, false, false, null, "extra.js")), new LoadedFiles());
+
+    createSync(store).sync(browser, "job 1", "case");
+
+    // the runner page only preloads the default session.
+    JsonCommand reset = gson.fromJson(browser.dequeueCommand().getCommand(), JsonCommand.class);
+    assertEquals(Lists.newArrayList("load"), reset.getParameters());
+    browser.resetFileSet();
+    assertEquals(Lists.newArrayList("/test/loaded.js?session=job+1"),
+        loadedPaths(browser.dequeueCommand()));
+  }
+
+  public void testKeepsTheFilesOfASyncedTestCaseUntilTheyAreFetched() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore(0, new NullContentStore());
+    FileInfo synced = new FileInfo("synced.js", 1, -1, false, false, null, "synced.js");
+    store.addCase(new JstdTestCase(Collections.<FileInfo>emptyList(),
+        Lists.newArrayList(synced), Collections.<FileInfo>emptyList(), "case"));
+    store.applyDelta(new JstdTestCaseDelta(Collections.<FileInfo>emptyList(),
+        Lists.newArrayList(synced.load("var synced;", 1)), Collections.<FileInfo>emptyList()));
+    SlaveBrowser browser = createBrowser();
+
+    createSync(store).sync(browser, Sessions.DEFAULT_SESSION, "case");
+    assertEquals(Lists.newArrayList("/test/synced.js"), loadedPaths(browser.dequeueCommand()));
+    // another session fills the cache before the browser fetches the file.
+    store.addCase("other", new JstdTestCase(Collections.<FileInfo>emptyList(),
+        Lists.newArrayList(new FileInfo("other.js", 1, -1, false, false, "var other;", "other.js")),
+        Collections.<FileInfo>emptyList(), "case"));
+
+    assertEquals("var synced;", store.getEncodedResource("synced.js").decode());
+  }
+
+  public void testChunksLoadsByTheBrowserUploadSize() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+    browser.getBrowserInfo().setUploadSize(1);
+
+    createSync(store).sync(browser, Sessions.DEFAULT_SESSION, "case");
+    browser.createCommand("{mooh}");
+
+    assertEquals(Lists.newArrayList("/test/loaded.js"), loadedPaths(browser.dequeueCommand()));
+    assertEquals(Lists.newArrayList("/test/test.js"), loadedPaths(browser.dequeueCommand()));
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+  }
+
+  public void testFailsToSyncAnUnknownTestCaseWhenPosted() throws Exception {
+    SlaveBrowser browser = createBrowser();
+
+    try {
+      createSync(new JstdTestCaseStore()).sync(browser, Sessions.DEFAULT_SESSION,
+          "case");
+      fail("Expected the unknown test case to fail the sync.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    browser.createCommand("{mooh}");
+
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+  }
+
+  public void testDropsASyncThatFailsOnDequeue() throws Exception {
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(loaded), Lists.newArrayList(test),
+        Collections.<FileInfo>emptyList(), "case"));
+    SlaveBrowser browser = createBrowser();
+    BrowserFileSync sync = new BrowserFileSync(store, new BrowserFileCheck(gson) {
+      @Override
+      public BrowserFileSet check(SlaveBrowser browser, JstdTestCase testCase) {
+        throw new IllegalStateException("failed check");
+      }
+    }, new DefaultFileFilter(), new NullPathPrefix(), Sets.<FileInfoScheme>newHashSet(), gson);
+
+    sync.sync(browser, Sessions.DEFAULT_SESSION, "case");
+    browser.createCommand("{mooh}");
+
+    assertEquals("{mooh}", browser.dequeueCommand().getCommand());
+  }
+
+  private List<String> loadedPaths(Command command) {
+    JsonCommand load = gson.fromJson(command.getCommand(), JsonCommand.class);
+    assertEquals(CommandType.LOADTEST.getCommand(), load.getCommand());
+    List<FileSource> sources = gson.fromJson(load.getParameters().get(0),
+        new TypeToken<List<FileSource>>() {}.getType());
+    List<String> paths = Lists.newArrayList();
+    for (FileSource source : sources) {
+      paths.add(source.getFileSrc());
+    }
+    return paths;
+  }
+
+  private SlaveBrowser createBrowser() {
+    BrowserInfo info = new BrowserInfo();
+    info.setName("Firefox");
+    SlaveBrowser browser = new SlaveBrowser(new MockTime(0), "1", info, SlaveBrowser.TIMEOUT,
+        new NullPathPrefix(), CaptureHandler.QUIRKS, RunnerType.CLIENT, BrowserState.READY);
+    browser.setDequeueTimeout(0, TimeUnit.MILLISECONDS);
+    return browser;
+  }
+
+  private BrowserFileSync createSync(JstdTestCaseStore store) {
+    return new BrowserFileSync(store, new BrowserFileCheck(gson), new DefaultFileFilter(),
+        new NullPathPrefix(), Sets.<FileInfoScheme>newHashSet(), gson);
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.servlet.fileset;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.model.Sessions;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+public class DeltaUploadTest extends TestCase {
+  private final Gson gson = new Gson();
+
+  public void testStreamedDeltasAreAppliedToTheStore() throws Exception {
+    FileInfo dep = new FileInfo("dep.js", 1, -1, false, false, null, "dep.js");
+    FileInfo test = new FileInfo("test.js", 1, -1, false, false, null, "test.js");
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.newArrayList(dep), Lists.newArrayList(test),
+        Lists.<FileInfo>newArrayList(), "1"));
+
+    String data = gson.toJson(Lists.newArrayList(new JstdTestCaseDelta(
+        Lists.newArrayList(dep.load("var dep;", 1)),
+        Lists.newArrayList(test.load("var test;", 1)),
+        Lists.<FileInfo>newArrayList())));
+    new DeltaUpload(store, gson).handle(null, Sessions.DEFAULT_SESSION,
+        new StringReader(data));
+
+    JstdTestCase testCase = store.getCase("1");
+    assertEquals("var dep;", testCase.getDependencies().get(0).getData());
+    assertEquals("var test;", testCase.getTests().get(0).getData());
+  }
+
+  public void testLargeDeltasAreAppliedInBatches() throws Exception {
+    List<FileInfo> files = Lists.newArrayList();
+    List<FileInfo> loaded = Lists.newArrayList();
+    char[] chars = new char[(int) (DeltaUpload.APPLY_BYTES / 2) + 1];
+    Arrays.fill(chars, 'x');
+    String contents = new String(chars);
+    for (int i = 0; i < 5; i++) {
+      FileInfo file = new FileInfo(i + ".js", 1, -1, false, false, null, i + ".js");
+      files.add(file);
+      loaded.add(file.load(contents, 1));
+    }
+    JstdTestCaseStore store = new JstdTestCaseStore();
+    store.addCase(new JstdTestCase(Lists.<FileInfo>newArrayList(), files,
+        Lists.<FileInfo>newArrayList(), "1"));
+
+    String data = gson.toJson(Lists.newArrayList(new JstdTestCaseDelta(
+        Lists.<FileInfo>newArrayList(), loaded, Lists.<FileInfo>newArrayList())));
+    new DeltaUpload(store, gson).handle(null, Sessions.DEFAULT_SESSION,
+        new StringReader(data));
+
+    for (FileInfo file : store.getCase("1").getTests()) {
+      assertEquals(file.getFilePath(), contents, file.getData());
+    }
+  }
+}
@@ -19,6 +19,7 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.google.jstestdriver.browser.TestImpact;
 import com.google.jstestdriver.hooks.TestsPreProcessor;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 import com.google.jstestdriver.util.StopWatch;
@@ -46,6 +47,7 @@ public class ActionFactory {
   private final FileLoader fileLoader;
   private final JsTestDriverServer.Factory factory;
   private final StopWatch stopWatch;
+  private final TestImpact testImpact;
 
   @Inject
   public ActionFactory(Provider<JsTestDriverClient> clientProvider,
@@ -53,13 +55,15 @@ public class ActionFactory {
                        @Named("preloadFiles") boolean preloadFiles,
                        FileLoader fileLoader,
                        JsTestDriverServer.Factory factory,
-                       StopWatch stopWatch) {
+                       StopWatch stopWatch,
+                       TestImpact testImpact) {
     this.clientProvider = clientProvider;
     this.testPreProcessors = testPreProcessors;
     this.preloadFiles = preloadFiles;
     this.fileLoader = fileLoader;
     this.factory = factory;
     this.stopWatch = stopWatch;
+    this.testImpact = testImpact;
   }
 
   public ServerStartupAction getServerStartupAction(Integer port,
@@ -102,7 +106,8 @@ public class ActionFactory {
 
   public RunTestsAction createRunTestsAction(ResponseStreamFactory responseStreamFactory,
       List<String> tests, boolean captureConsole) {
-    return new RunTestsAction(responseStreamFactory, tests, captureConsole, testPreProcessors, stopWatch);
+    return new RunTestsAction(responseStreamFactory, tests, captureConsole, testPreProcessors, stopWatch,
+        testImpact);
   }
 
   public EvalAction createEvalAction(ResponseStreamFactory responseStreamFactory, String cmd) {
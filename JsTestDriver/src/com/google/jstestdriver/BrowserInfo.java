@@ -25,6 +25,7 @@ public class BrowserInfo {
   private String version;
   private String os;
   private Integer uploadSize = FileUploader.CHUNK_SIZE;
+  private Long uploadBytes = FileLoadBudget.DEFAULT_BYTES;
   private boolean serverReceivedHeartbeat;
   private boolean ready = false;
 
@@ -110,6 +111,15 @@ public class BrowserInfo {
     this.uploadSize = uploadSize;
   }
 
+  /** The number of bytes of files to send the browser in a single chunk. */
+  public long getUploadBytes() {
+    return uploadBytes == null ? FileLoadBudget.DEFAULT_BYTES : uploadBytes;
+  }
+
+  public void setUploadBytes(Long uploadBytes) {
+    this.uploadBytes = uploadBytes;
+  }
+
   public void setReady(boolean ready) {
     this.ready = true;
   }
@@ -1,6 +1,5 @@
 package com.google.jstestdriver;
 
-import com.google.gson.Gson;
 import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.browser.BrowserPanicException;
 
@@ -15,13 +14,10 @@ class BrowserPanicResponseStream implements ResponseStream {
 
   private static final Logger logger = LoggerFactory.getLogger(BrowserPanicResponseStream.class);
 
-  private final Gson gson = new Gson();
-
   @Override
   public void stream(Response response) {
     if (response.getResponseType() == ResponseType.BROWSER_PANIC) {
-      BrowserPanic panic = gson.fromJson(response.getResponse(),
-                                         response.getResponseType().type);
+      BrowserPanic panic = response.parseResponse();
       BrowserPanicException exception =
           new BrowserPanicException(panic.getBrowserInfo(),
                                     "");
@@ -22,15 +22,32 @@ package com.google.jstestdriver;
 public class Command {
 
   private final String command;
+  private final boolean endsStream;
 
   public Command(String command) {
+    this(command, true);
+  }
+
+  /**
+   * @param command The serialized command.
+   * @param endsStream false if the responses to this command are followed by
+   *        those of a later command on the same client stream, as when files
+   *        are loaded ahead of running tests.
+   */
+  public Command(String command, boolean endsStream) {
     this.command = command;
+    this.endsStream = endsStream;
   }
 
   public String getCommand() {
     return command;
   }
 
+  /** Indicates if the last response to this command ends the client stream. */
+  public boolean endsStream() {
+    return endsStream;
+  }
+
   @Override
   public String toString() {
     return String.format("command= %s", command);
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.gson.Gson;
+import com.google.jstestdriver.protocol.ProtocolGson;
+
+/**
+ * Reads the {@link StreamMessage}s a browser produces for a command. By
+ * default each message is polled with a separate request to /cmd?id=. When
+ * streaming, a single long lived response carries every message of the
+ * command as a newline delimited json object.
+ */
+public class CommandResponseReader {
+
+  /** Receives the messages for a command. */
+  public interface Receiver {
+    /**
+     * @return true when no more messages are needed.
+     */
+    boolean receive(StreamMessage message);
+  }
+
+  private final Gson gson = ProtocolGson.create();
+  private final Server server;
+  private final String baseUrl;
+  private final boolean streaming;
+
+  public CommandResponseReader(Server server, String baseUrl, boolean streaming) {
+    this.server = server;
+    this.baseUrl = baseUrl;
+    this.streaming = streaming;
+  }
+
+  /** Reads messages from the browser until the receiver is done. */
+  public void read(String browserId, Receiver receiver) {
+    if (streaming) {
+      stream(browserId, receiver);
+    } else {
+      poll(browserId, receiver);
+    }
+  }
+
+  private void poll(String browserId, Receiver receiver) {
+    boolean done;
+    do {
+      done = receiver.receive(parse(server.fetch(baseUrl + "/cmd?id=" + browserId)));
+    } while (!done);
+  }
+
+  private void stream(String browserId, final Receiver receiver) {
+    final boolean[] done = {false};
+    // the server closes the stream after each last message, so keep asking
+    // until the receiver is satisfied.
+    while (!done[0]) {
+      server.fetchStream(baseUrl + "/cmd?id=" + browserId + "&stream=true", new LineHandler() {
+        public void handle(String line) {
+          if (!done[0] && line.trim().length() > 0) {
+            done[0] = receiver.receive(parse(line));
+          }
+        }
+      });
+    }
+  }
+
+  private StreamMessage parse(String response) {
+    try {
+      return gson.fromJson(response, StreamMessage.class);
+    } catch (Exception e) {
+      throw new RuntimeException("Error deserializing: " + response, e);
+    }
+  }
+}
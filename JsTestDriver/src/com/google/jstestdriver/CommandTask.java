@@ -17,17 +17,16 @@ package com.google.jstestdriver;
 
 import static java.lang.String.format;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.browser.BrowserPanicException;
 import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.servlet.fileset.BrowserFileSync;
 import com.google.jstestdriver.util.StopWatch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -40,8 +39,6 @@ public class CommandTask {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandTask.class);
 
-  private final Gson gson = new Gson();
-
   private final ResponseStream stream;
   private final String baseUrl;
   private final Server server;
@@ -50,8 +47,7 @@ public class CommandTask {
 
   private final StopWatch stopWatch;
 
-  private final FileUploader fileUploader;
-
+  private final CommandResponseReader responseReader;
 
   public CommandTask(
       ResponseStream stream,
@@ -60,14 +56,14 @@ public class CommandTask {
       Map<String, String> params,
       boolean upload,
       StopWatch stopWatch,
-      FileUploader uploader) {
+      CommandResponseReader responseReader) {
     this.stream = stream;
     this.baseUrl = baseUrl;
     this.server = server;
     this.params = params;
     this.upload = upload;
     this.stopWatch = stopWatch;
-    this.fileUploader = uploader;
+    this.responseReader = responseReader;
   }
   
   /**
@@ -82,17 +78,6 @@ public class CommandTask {
     }
   }
   
-  private BrowserInfo getBrowser(String id) {
-    Collection<BrowserInfo> browsers = gson.fromJson(server.fetch(baseUrl + "/cmd?listBrowsers"),
-        new TypeToken<Collection<BrowserInfo>>() {}.getType());
-    for (BrowserInfo browser : browsers) {
-      if (id.equals(String.valueOf(browser.getId()))) {
-        return browser;
-      }
-    }
-    return null;
-  }
-
   public void run(JstdTestCase testCase) {
     stopWatch.start("run %s", testCase.getId());
     String browserId = params.get("id");
@@ -100,43 +85,34 @@ public class CommandTask {
       stopWatch.start("checkBrowser %s", browserId);
       checkBrowser();
       stopWatch.stop("checkBrowser %s", browserId);
-      logger.debug("Starting upload for {}", browserId);
-      // TODO(corysmith): Move the loading of files to a browser into the server.
-      if (upload) {
-        fileUploader.uploadToTheBrowser(
-            browserId,
-            stream,
-            fileUploader.determineBrowserFileSet(
-                browserId,
-                testCase,
-                stream),
-        getBrowser(browserId).getUploadSize());
+      Map<String, String> commandParams = new LinkedHashMap<String, String>(params);
+      // the server loads the test case into the browser ahead of the command,
+      // streaming the load results before the command results.
+      if (upload && testCase.getId() != null) {
+        commandParams.put(BrowserFileSync.TEST_CASE_ID, testCase.getId());
       }
-      logger.debug("Finished upload for {}", browserId);
-      stopWatch.start("post %s", params);
-      server.post(baseUrl + "/cmd", params);
-      stopWatch.stop("post %s", params);
+      stopWatch.start("post %s", commandParams);
+      server.post(baseUrl + "/cmd", commandParams);
+      stopWatch.stop("post %s", commandParams);
     } finally {
       
     }
     try {
       logger.debug("Starting {} for {}", params.get("data"), browserId);
       stopWatch.start("execution %s", params.get("data"));
-      StreamMessage streamMessage = null;
-      do {
-        String response = server.fetch(baseUrl + "/cmd?id=" + browserId);
-        try {
-          streamMessage = gson.fromJson(response, StreamMessage.class);
-        } catch (Exception e) {
-          throw new RuntimeException("Error deserializing: " + response, e);
-        }
-        Response resObj = streamMessage.getResponse();
-        if (ResponseType.BROWSER_PANIC.equals(resObj.getResponseType())) {
-          throw new BrowserPanicException(resObj.getBrowser(), resObj.getResponse());
+      final StreamMessage[] lastMessage = new StreamMessage[1];
+      responseReader.read(browserId, new CommandResponseReader.Receiver() {
+        public boolean receive(StreamMessage streamMessage) {
+          Response resObj = streamMessage.getResponse();
+          if (ResponseType.BROWSER_PANIC.equals(resObj.getResponseType())) {
+            throw new BrowserPanicException(resObj.getBrowser(), resObj.getResponse());
+          }
+          stream.stream(resObj);
+          lastMessage[0] = streamMessage;
+          return streamMessage.isLast();
         }
-        stream.stream(resObj);
-      } while (!streamMessage.isLast());
-      logger.debug("finished {} for {} with {}", new Object[] {params.get("data"), browserId, streamMessage.getResponse().getResponseType()});
+      });
+      logger.debug("finished {} for {} with {}", new Object[] {params.get("data"), browserId, lastMessage[0].getResponse().getResponseType()});
     } finally {
       stopWatch.stop("execution %s", params.get("data"));
       logger.debug("finished {} for {}", params.get("data"), browserId);
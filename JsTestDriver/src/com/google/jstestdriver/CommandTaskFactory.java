@@ -18,42 +18,29 @@ package com.google.jstestdriver;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
-import com.google.jstestdriver.hooks.FileInfoScheme;
-import com.google.jstestdriver.model.HandlerPathPrefix;
 import com.google.jstestdriver.util.StopWatch;
 
 import java.util.Map;
-import java.util.Set;
 
 /**
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
  */
 public class CommandTaskFactory {
 
-  private final JsTestDriverFileFilter filter;
-  private final FileLoader fileLoader;
   private final StopWatch stopWatch;
-  private final Set<FileInfoScheme> schemes;
-  private final HandlerPathPrefix pathPrefix;
+  private final boolean streamResults;
 
   @Inject
-  public CommandTaskFactory(JsTestDriverFileFilter filter,
-                            FileLoader fileLoader,
-                            Provider<HeartBeatManager> heartBeatProvider,
+  public CommandTaskFactory(Provider<HeartBeatManager> heartBeatProvider,
                             StopWatch stopWatch,
-                            Set<FileInfoScheme> schemes,
-                            @Named("serverHandlerPrefix") HandlerPathPrefix pathPrefix
-                            ) {
-    this.filter = filter;
-    this.fileLoader = fileLoader;
+                            @Named("streamResults") boolean streamResults) {
     this.stopWatch = stopWatch;
-    this.schemes = schemes;
-    this.pathPrefix = pathPrefix;
+    this.streamResults = streamResults;
   }
 
   public CommandTask getCommandTask(ResponseStream stream, String baseUrl, Server server,
       Map<String, String> params, boolean upload) {
     return new CommandTask(stream, baseUrl, server, params, upload, stopWatch,
-        new FileUploader(stopWatch, server, baseUrl, fileLoader, filter, schemes, pathPrefix));
+        new CommandResponseReader(server, baseUrl, streamResults));
   }
 }
@@ -46,6 +46,9 @@ public class FileInfo implements Cloneable {
 
   private String displayPath;
 
+  /** Identifies the contents of the file, regardless of the timestamp. */
+  private String digest;
+
   public FileInfo() {
   }
 
@@ -86,6 +89,10 @@ public class FileInfo implements Cloneable {
     return length;
   }
 
+  public void setLength(long length) {
+    this.length = length;
+  }
+
   public boolean isServeOnly() {
     return serveOnly;
   }
@@ -103,6 +110,15 @@ public class FileInfo implements Cloneable {
     this.timestamp = timestamp;
   }
 
+  /** Gets the content digest of the file, or null if it is unknown. */
+  public String getDigest() {
+    return digest;
+  }
+
+  public void setDigest(String digest) {
+    this.digest = digest;
+  }
+
   public boolean isPatch() {
     return isPatch;
   }
@@ -153,24 +169,35 @@ public class FileInfo implements Cloneable {
   }
 
   public FileInfo load(String data, long timestamp) {
-    return new FileInfo(filePath, timestamp, length, isPatch, serveOnly, data, displayPath);
+    return withDigest(
+        new FileInfo(filePath, timestamp, length, isPatch, serveOnly, data, displayPath));
   }
 
   /** Translates the FileInfo into a lightweight FileSrc object. */
   public FileSource toFileSource(HandlerPathPrefix prefix, Set<FileInfoScheme> schemes) {
+    return toFileSource(prefix, schemes, "");
+  }
+
+  /**
+   * Translates the FileInfo into a lightweight FileSrc object, served with a
+   * query, such as the one naming the session of the file.
+   */
+  public FileSource toFileSource(HandlerPathPrefix prefix, Set<FileInfoScheme> schemes,
+      String query) {
     for (FileInfoScheme scheme : schemes) {
       if (scheme.matches(filePath)) {
-        return new FileSource(displayPath, filePath, this.getTimestamp(), length);
+        return new FileSource(displayPath, filePath, this.getTimestamp(), length, digest);
       }
     }
-    return new FileSource(prefix.prefixPath("/test/" + this.getDisplayPath()), filePath, this.getTimestamp(), length);
+    String path = "/test/" + this.getDisplayPath() + query;
+    return new FileSource(prefix.prefixPath(path), filePath, this.getTimestamp(), length, digest);
   }
 
   @Override
   public String toString() {
     if (logger.isDebugEnabled() || logger.isTraceEnabled()) {
       return "\n\tFileInfo [filePath=" + filePath + ", length=" + length + ", patches=" + patches
-          + ", serveOnly=" + serveOnly + ", timestamp=" + timestamp + "]";
+          + ", serveOnly=" + serveOnly + ", timestamp=" + timestamp + ", digest=" + digest + "]";
     }
     return "\n\tFileInfo[" + this.getDisplayPath() + "]";
   }
@@ -218,11 +245,29 @@ public class FileInfo implements Cloneable {
   @SuppressWarnings("unused")
   @Override
   protected Object clone() throws CloneNotSupportedException {
-    return new FileInfo(filePath, timestamp, length, isPatch, serveOnly, data, displayPath);
+    return withDigest(
+        new FileInfo(filePath, timestamp, length, isPatch, serveOnly, data, displayPath));
+  }
+
+  /** A copy of the file, with its patches, identified by another digest. */
+  public FileInfo identifiedBy(String digest) {
+    FileInfo copy =
+        new FileInfo(filePath, timestamp, length, isPatch, serveOnly, data, displayPath);
+    if (patches != null) {
+      copy.patches = new LinkedList<FileInfo>(patches);
+    }
+    copy.digest = digest;
+    return copy;
+  }
+
+  private FileInfo withDigest(FileInfo copy) {
+    copy.digest = digest;
+    return copy;
   }
 
   /**
-   * Tests to see if a file is a proper replacement: different timestamp, length.
+   * Tests to see if a file is a proper replacement: different contents, or
+   * different timestamp when the contents of either file are unknown.
    * Also returns false if the paths don't match.
    */
   public boolean shouldReplaceWith(FileInfo file) {
@@ -230,6 +275,14 @@ public class FileInfo implements Cloneable {
       logger.trace("paths not equal {} {}", getDisplayPath(), file.getDisplayPath());
       return false;
     }
+    if (digest != null && file.getDigest() != null) {
+      if (!digest.equals(file.getDigest())) {
+        logger.trace("replace {} because {} != {}", new Object[]{getDisplayPath(), digest, file.getDigest()});
+        return true;
+      }
+      // the bytes are the same, whatever the timestamp says.
+      return false;
+    }
     if (getTimestamp() != file.getTimestamp()) {
       logger.trace("replace {} because {} != {}", new Object[]{getDisplayPath(), getTimestamp(), file.getTimestamp()});
       return true;
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+/**
+ * Tunes the number of bytes a browser is sent per file load chunk, from the
+ * observed time it takes the browser to load files. A slow browser ends up
+ * with small chunks that finish well within the browser timeout, a fast one
+ * with large chunks that need fewer round trips.
+ */
+public class FileLoadBudget {
+
+  /** The budget used before any loads have been observed. */
+  public static final long DEFAULT_BYTES = 1024 * 1024;
+  public static final long MIN_BYTES = 64 * 1024;
+  public static final long MAX_BYTES = 16 * 1024 * 1024;
+
+  /** The time a single chunk should take to load. */
+  static final long TARGET_CHUNK_MILLIS = 2000;
+
+  /** Weight of the newest observation in the moving average. */
+  private static final double SMOOTHING = 0.5;
+
+  /** Bytes loaded per millisecond, or -1 until a load is observed. */
+  private double bytesPerMilli = -1;
+  private long bytes = DEFAULT_BYTES;
+
+  /**
+   * Records a chunk of files loaded by the browser.
+   * @param loadedBytes The total length of the loaded files.
+   * @param elapsedMillis The time the browser spent loading the files.
+   */
+  public synchronized void record(long loadedBytes, long elapsedMillis) {
+    if (loadedBytes <= 0) {
+      return;
+    }
+    double rate = (double) loadedBytes / Math.max(1, elapsedMillis);
+    bytesPerMilli = bytesPerMilli < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerMilli;
+    bytes = Math.min(MAX_BYTES, Math.max(MIN_BYTES, (long) (bytesPerMilli * TARGET_CHUNK_MILLIS)));
+  }
+
+  /** The number of bytes to send the browser in a single chunk. */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+}
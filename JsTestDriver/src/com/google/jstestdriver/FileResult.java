@@ -46,6 +46,11 @@ public class FileResult {
     return message;
   }
 
+  /** The milliseconds the browser took to load the file. */
+  public long getElapsed() {
+    return elapsed;
+  }
+
   @Override
   public String toString() {
     return "FileResult [file=" + file + ", success=" + success + ", message=" + message
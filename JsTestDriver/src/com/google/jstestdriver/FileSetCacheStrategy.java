@@ -50,15 +50,16 @@ public class FileSetCacheStrategy {
       for (FileInfo browserFileInfo : currentFileSet) {
         for (FileInfo clientFileInfo : newFileSet) {
           if (clientFileInfo.equals(browserFileInfo)){
-            if (clientFileInfo.getTimestamp() != browserFileInfo.getTimestamp() ||
-                clientFileInfo.getLength() != browserFileInfo.getLength()) {
+            if (isExpired(clientFileInfo, browserFileInfo)) {
               expiredFileSet.add(clientFileInfo);
-              logger.debug("files {} not equal ({},{}) ({},{}) update", new Object[] {
+              logger.debug("files {} not equal ({},{},{}) ({},{},{}) update", new Object[] {
                  clientFileInfo.getFilePath(),
                  clientFileInfo.getLength(),
                  clientFileInfo.getTimestamp(),
+                 clientFileInfo.getDigest(),
                  browserFileInfo.getLength(),
-                 browserFileInfo.getTimestamp()
+                 browserFileInfo.getTimestamp(),
+                 browserFileInfo.getDigest()
               });
             } else {
               logger.debug("files equal {}, {} no update", clientFileInfo, browserFileInfo);
@@ -70,4 +71,16 @@ public class FileSetCacheStrategy {
     }
     return expiredFileSet;
   }
+
+  /**
+   * Compares contents when both digests are known, falling back to the
+   * timestamp and length.
+   */
+  private boolean isExpired(FileInfo clientFileInfo, FileInfo browserFileInfo) {
+    if (clientFileInfo.getDigest() != null && browserFileInfo.getDigest() != null) {
+      return !clientFileInfo.getDigest().equals(browserFileInfo.getDigest());
+    }
+    return clientFileInfo.getTimestamp() != browserFileInfo.getTimestamp() ||
+        clientFileInfo.getLength() != browserFileInfo.getLength();
+  }
 }
\ No newline at end of file
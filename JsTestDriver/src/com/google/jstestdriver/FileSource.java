@@ -24,15 +24,22 @@ public class FileSource {
   private String basePath;
   private long timestamp;
   private long length;
+  private String digest;
 
   public FileSource() {
   }
 
   public FileSource(String fileSrc, String basePath, long timestamp, long length) {
+    this(fileSrc, basePath, timestamp, length, null);
+  }
+
+  public FileSource(String fileSrc, String basePath, long timestamp, long length,
+      String digest) {
     this.fileSrc = fileSrc;
     this.basePath = basePath;
     this.timestamp = timestamp;
     this.length = length;
+    this.digest = digest;
   }
 
   public String getFileSrc() {
@@ -46,6 +53,11 @@ public class FileSource {
   public String getBasePath() {
     return basePath;
   }
+
+  /** The content digest of the source, or null if it is unknown. */
+  public String getDigest() {
+    return digest;
+  }
   
   /**
    * @return the length
@@ -82,7 +94,9 @@ public class FileSource {
   }
   
   public FileInfo toFileInfo(String contents) {
-    return new FileInfo(this.getBasePath(), this.getTimestamp(),
+    FileInfo info = new FileInfo(this.getBasePath(), this.getTimestamp(),
       this.getLength(), false, false, contents, this.getFileSrc());
+    info.setDigest(digest);
+    return info;
   }
 }
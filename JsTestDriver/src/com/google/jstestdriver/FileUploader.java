@@ -21,6 +21,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.JsonCommand.CommandType;
@@ -30,7 +31,9 @@ import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.model.HandlerPathPrefix;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.model.Sessions;
 import com.google.jstestdriver.servlet.fileset.BrowserFileCheck;
+import com.google.jstestdriver.servlet.fileset.BrowserFileSync;
 import com.google.jstestdriver.servlet.fileset.DeltaUpload;
 import com.google.jstestdriver.servlet.fileset.TestCaseUpload;
 import com.google.jstestdriver.util.StopWatch;
@@ -38,6 +41,7 @@ import com.google.jstestdriver.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -67,12 +71,23 @@ public class FileUploader {
 
   private final HandlerPathPrefix prefix;
 
+  private final CommandResponseReader responseReader;
+
+  /** The number of LOADTEST chunks that may be queued in the browser at once. */
+  private final int pipelineDepth;
+
+  /** The session of the test cases and files on the server. */
+  private final String session;
+
   @Inject
   public FileUploader(StopWatch stopWatch, Server server,
       @Named("server") String baseUrl, FileLoader fileLoader,
       JsTestDriverFileFilter filter,
       Set<FileInfoScheme> schemes,
-      @Named("serverHandlerPrefix") HandlerPathPrefix prefix) {
+      @Named("serverHandlerPrefix") HandlerPathPrefix prefix,
+      @Named("streamResults") boolean streamResults,
+      @Named("uploadPipelineDepth") int pipelineDepth,
+      @Named("session") String session) {
     this.stopWatch = stopWatch;
     this.server = server;
     this.baseUrl = baseUrl;
@@ -80,6 +95,9 @@ public class FileUploader {
     this.filter = filter;
     this.schemes = schemes;
     this.prefix = prefix;
+    this.responseReader = new CommandResponseReader(server, baseUrl, streamResults);
+    this.pipelineDepth = Math.max(1, pipelineDepth);
+    this.session = session;
   }
 
   /** Uploads the changed files to the server and the browser. */
@@ -93,26 +111,47 @@ public class FileUploader {
     stopWatch.start("upload to server %s", browserId);
     uploadToServer(deltas);
     stopWatch.stop("upload to server %s", browserId);
+    long chunkBytes = getUploadBytes(browserId);
     for (JstdTestCase testCase : testCases) {
       stopWatch.start("determineBrowserFileSet(%s)", browserId);
       final List<FileInfo> browserFilesToUpdate = determineBrowserFileSet(browserId, testCase, stream);
       stopWatch.stop("determineBrowserFileSet(%s)", browserId);
 
       stopWatch.start("uploadToTheBrowser(%s)", browserId);
-      uploadToTheBrowser(browserId, stream, browserFilesToUpdate, CHUNK_SIZE);
+      uploadToTheBrowser(browserId, stream, browserFilesToUpdate, CHUNK_SIZE, chunkBytes);
       stopWatch.stop("uploadToTheBrowser(%s)", browserId);
     }
   }
+
+  /**
+   * The bytes of files the server measured the browser to load in a chunk, or
+   * the default budget if the browser isn't listed.
+   */
+  private long getUploadBytes(String browserId) {
+    Collection<BrowserInfo> browsers = gson.fromJson(server.fetch(baseUrl + "/cmd?listBrowsers"),
+        new TypeToken<Collection<BrowserInfo>>() {}.getType());
+    if (browsers != null) {
+      for (BrowserInfo browser : browsers) {
+        if (browserId.equals(String.valueOf(browser.getId())) && browser.getUploadBytes() > 0) {
+          return browser.getUploadBytes();
+        }
+      }
+    }
+    return FileLoadBudget.DEFAULT_BYTES;
+  }
   
 
   /**
    * Uploads the {@link JstdTestCase}s to the server, and retrieves a list
-   * of {@link JstdTestCaseDelta}s of the files that are different.
+   * of {@link JstdTestCaseDelta}s of the files that are different. Files are
+   * compared by content digest when known, so touched but unchanged files are
+   * not part of the deltas.
    */
   public Collection<JstdTestCaseDelta> determineServerFileSet(Collection<JstdTestCase> testCases) {
     Map<String, String> fileSetParams = new LinkedHashMap<String, String>();
     fileSetParams.put("data", gson.toJson(testCases));
     fileSetParams.put("action", TestCaseUpload.ACTION);
+    Sessions.putSession(fileSetParams, session);
     String postResult = server.post(baseUrl + "/fileSet", fileSetParams);
     return gson.fromJson(postResult, new TypeToken<Collection<JstdTestCaseDelta>>() {}.getType());
   }
@@ -161,10 +200,25 @@ public class FileUploader {
   }
 
 
-  /** Uploads files to the browser. */
-  public void uploadToTheBrowser(String browserId, ResponseStream stream,
+  /**
+   * Uploads files to the browser. Up to pipelineDepth chunks are queued in the
+   * browser before waiting on the results of the oldest, so the browser can
+   * load one chunk while the next is transferred. The browser runs queued
+   * commands in order, so results are streamed in chunk order.
+   */
+  public void uploadToTheBrowser(final String browserId, final ResponseStream stream,
       List<FileInfo> loadedFiles, int chunkSize) {
-    List<FileSource> filesSrc = Lists.newLinkedList(filterFilesToLoad(loadedFiles));
+    uploadToTheBrowser(browserId, stream, loadedFiles, chunkSize, Long.MAX_VALUE);
+  }
+
+  /**
+   * Uploads files to the browser in chunks of at most chunkSize files, and at
+   * most chunkBytes bytes of files of known length. A chunk always holds at
+   * least one file, however large.
+   */
+  public void uploadToTheBrowser(final String browserId, final ResponseStream stream,
+      List<FileInfo> loadedFiles, int chunkSize, long chunkBytes) {
+    List<FileSource> filesSrc = Lists.newArrayList(filterFilesToLoad(loadedFiles));
     int numberOfFilesToLoad = filesSrc.size();
     logger.info("Files toupload {}",
         Lists.transform(Lists.newArrayList(loadedFiles), new Function<FileInfo, String>() {
@@ -173,9 +227,14 @@ public class FileUploader {
             return "\n" + in.getDisplayPath();
           }
         }));
-    for (int i = 0; i < numberOfFilesToLoad; i += chunkSize) {
+    int queuedChunks = 0;
+    for (int i = 0, chunkEndIndex; i < numberOfFilesToLoad; i = chunkEndIndex) {
+      if (queuedChunks == pipelineDepth) {
+        readLoadResults(browserId, stream);
+        queuedChunks--;
+      }
 
-      int chunkEndIndex = Math.min(i + chunkSize, numberOfFilesToLoad);
+      chunkEndIndex = findChunkEnd(filesSrc, i, chunkSize, chunkBytes);
       List<String> loadParameters = new LinkedList<String>();
       List<FileSource> filesToLoad = filesSrc.subList(i, chunkEndIndex);
       loadParameters.add(gson.toJson(filesToLoad));
@@ -195,39 +254,87 @@ public class FileUploader {
             }));
       }
       server.post(baseUrl + "/cmd", loadFileParams);
-      while (true) {
-        String jsonResponse = server.fetch(baseUrl + "/cmd?id=" + browserId);
-        StreamMessage message = gson.fromJson(jsonResponse, StreamMessage.class);
+      queuedChunks++;
+    }
+    for (; queuedChunks > 0; queuedChunks--) {
+      readLoadResults(browserId, stream);
+    }
+  }
+
+  /**
+   * Finds the end of the chunk that starts at start, holding at most chunkSize
+   * files and chunkBytes bytes of files of known length.
+   */
+  public static int findChunkEnd(List<FileSource> filesSrc, int start, int chunkSize,
+      long chunkBytes) {
+    int end = start + 1;
+    long bytes = Math.max(0, filesSrc.get(start).getLength());
+    while (end < filesSrc.size() && end - start < chunkSize) {
+      bytes += Math.max(0, filesSrc.get(end).getLength());
+      if (bytes > chunkBytes) {
+        break;
+      }
+      end++;
+    }
+    return end;
+  }
+
+  /** Streams the results of the oldest queued LOADTEST chunk. */
+  private void readLoadResults(final String browserId, final ResponseStream stream) {
+    responseReader.read(browserId, new CommandResponseReader.Receiver() {
+      public boolean receive(StreamMessage message) {
         Response response = message.getResponse();
         logger.trace("LOADTEST response for {}", response);
         stream.stream(response);
         if (message.isLast()) {
           logger.debug("Finished LOADTEST on {} with {}", browserId, response.getResponseType());
-          break;
         }
+        return message.isLast();
       }
-    }
-    
+    });
   }
 
+  /**
+   * Uploads the contents of the deltas to the server. The files are loaded
+   * and written to a compressed stream one at a time, so only a single file
+   * is held in memory.
+   */
   public void uploadToServer(final Collection<JstdTestCaseDelta> deltas) {
     if (deltas.isEmpty()) {
       return;
     }
-    List<JstdTestCaseDelta> loadedDeltas = Lists.newArrayListWithCapacity(deltas.size());
-    for (JstdTestCaseDelta delta : deltas) {
-      loadedDeltas.add(delta.loadFiles(fileLoader));
+    String url = Sessions.appendSession(baseUrl + "/fileSet?action=" + DeltaUpload.ACTION,
+        session);
+    server.postCompressedJson(url, new JsonBody() {
+      public void write(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (JstdTestCaseDelta delta : deltas) {
+          writer.beginObject();
+          writeLoadedFiles(DeltaUpload.DEPENDENCIES, delta.getDependencies(), writer);
+          writeLoadedFiles(DeltaUpload.TESTS, delta.getTests(), writer);
+          writeLoadedFiles(DeltaUpload.PLUGINS, delta.getPlugins(), writer);
+          writer.endObject();
+        }
+        writer.endArray();
+      }
+    });
+  }
+
+  private void writeLoadedFiles(String name, List<FileInfo> files, JsonWriter writer)
+      throws IOException {
+    writer.name(name).beginArray();
+    for (FileInfo file : files) {
+      for (FileInfo loaded : fileLoader.loadFiles(Collections.singletonList(file), false)) {
+        gson.toJson(loaded, FileInfo.class, writer);
+      }
     }
-    Map<String, String> uploadFileParams = new LinkedHashMap<String, String>();
-    uploadFileParams.put("action", DeltaUpload.ACTION);
-    uploadFileParams.put("data", gson.toJson(loadedDeltas));
-    server.post(baseUrl + "/fileSet", uploadFileParams);
+    writer.endArray();
   }
 
-  private void reset(String browserId, ResponseStream stream, JstdTestCase testCase) {
+  private void reset(String browserId, final ResponseStream stream, JstdTestCase testCase) {
     stopWatch.start("reset %s", browserId);
     JsonCommand cmd = new JsonCommand(CommandType.RESET,
-        Lists.newArrayList("preload", testCase.getId()));
+        BrowserFileSync.resetParameters(session, testCase.getId()));
     Map<String, String> resetParams = new LinkedHashMap<String, String>();
 
     logger.debug("reset browser {}  testcase {}", browserId, testCase.getId());
@@ -236,14 +343,13 @@ public class FileUploader {
     server.post(baseUrl + "/cmd", resetParams);
 
     logger.trace("starting reset for {}", browserId);
-    Response response;
-    StreamMessage message;
-    do {
-      String jsonResponse = server.fetch(baseUrl + "/cmd?id=" + browserId);
-      message = gson.fromJson(jsonResponse, StreamMessage.class);
-      response = message.getResponse();
-      stream.stream(response);
-    } while(!(ResponseType.RESET_RESULT.equals(response.getResponseType()) && message.isLast()));
+    responseReader.read(browserId, new CommandResponseReader.Receiver() {
+      public boolean receive(StreamMessage message) {
+        Response response = message.getResponse();
+        stream.stream(response);
+        return ResponseType.RESET_RESULT.equals(response.getResponseType()) && message.isLast();
+      }
+    });
     logger.trace("finished reset for {}", browserId);
     stopWatch.stop("reset %s", browserId);
   }
@@ -262,10 +368,11 @@ public class FileUploader {
 
   private List<FileSource> filterFilesToLoad(Collection<FileInfo> fileInfos) {
     List<FileSource> filteredFileSources = new LinkedList<FileSource>();
+    String query = Sessions.appendSession("", session);
 
     for (FileInfo fileInfo : fileInfos) {
       if (!fileInfo.isServeOnly()) {
-        filteredFileSources.add(fileInfo.toFileSource(prefix, schemes));
+        filteredFileSources.add(fileInfo.toFileSource(prefix, schemes, query));
       }
     }
     return filteredFileSources;
@@ -16,27 +16,28 @@
 package com.google.jstestdriver;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * The files known to the server, keyed by display path. Backed by a
+ * concurrent map so readers never wait on writers; writers use
+ * {@link #addFileIfAbsent} and {@link #replaceFile} to update a path without
+ * a lock.
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
  */
 public class FilesCache {
 
+  private final ConcurrentMap<String, FileInfo> files;
 
-  // TODO(corysmith): replace this with a synchronized collection
-  // When the map semantics are clean.
-  private final Map<String, FileInfo> files;
-
-  /**
-   * @param files Files is expected to be an ordered map. Seriously.
-   */
   public FilesCache(Map<String, FileInfo> files) {
-    this.files = files;
+    this.files = new ConcurrentHashMap<String, FileInfo>(files);
   }
 
-  public synchronized String getFileContent(String fileName) {
+  public String getFileContent(String fileName) {
     FileInfo info = files.get(fileName);
     if (info == null) {
       throw new MissingFileException();
@@ -44,27 +45,43 @@ public class FilesCache {
     return info.getData();
   }
 
-  public synchronized void clear() {
+  public void clear() {
     files.clear();
   }
 
-  public synchronized void addFile(FileInfo fileInfo) {
+  public void addFile(FileInfo fileInfo) {
     files.put(fileInfo.getDisplayPath(), fileInfo);
   }
 
+  /**
+   * Adds the file unless one is already cached at its path.
+   * @return The cached file, or null if the file was added.
+   */
+  public FileInfo addFileIfAbsent(FileInfo fileInfo) {
+    return files.putIfAbsent(fileInfo.getDisplayPath(), fileInfo);
+  }
+
+  /**
+   * Replaces a cached file, if it is still the one cached at its path.
+   * @return true if the file was replaced.
+   */
+  public boolean replaceFile(FileInfo oldFile, FileInfo fileInfo) {
+    return files.replace(fileInfo.getDisplayPath(), oldFile, fileInfo);
+  }
+
   public int getFilesNumber() {
     return files.size();
   }
 
-  public synchronized Set<String> getAllFileNames() {
-    return files.keySet();
+  public Set<String> getAllFileNames() {
+    return Collections.unmodifiableSet(files.keySet());
   }
-  
+
   /**
-   * Returns all files in order.
+   * Returns all files, in no particular order.
    */
-  public synchronized Collection<FileInfo> getAllFileInfos() {
-    return files.values();
+  public Collection<FileInfo> getAllFileInfos() {
+    return Collections.unmodifiableCollection(files.values());
   }
 
   @Override
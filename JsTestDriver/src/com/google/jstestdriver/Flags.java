@@ -84,5 +84,61 @@ public interface Flags {
   @GuiceBinding(name="executionType")
   public ExecutionType getExecutionType();
 
+  /** Reuse pooled keep-alive connections when talking to the server. */
+  @GuiceBinding(name="keepAlive")
+  public boolean getKeepAlive();
+
+  /** Stream command results over a single response instead of polling. */
+  @GuiceBinding(name="streamResults")
+  public boolean getStreamResults();
+
+  /** The number of file load chunks queued ahead in a browser while uploading. */
+  @GuiceBinding(name="uploadPipelineDepth")
+  public int getUploadPipelineDepth();
+
+  /** Serve http with a non blocking connector that suspends long polls. */
+  @GuiceBinding(name="nioConnector")
+  public boolean getNioConnector();
+
+  /** The megabytes of file contents the server keeps before evicting. */
+  @GuiceBinding(name="resourceCacheSize")
+  public int getResourceCacheSize();
+
+  /** The directory the server keeps file contents in across restarts. */
+  @GuiceBinding(name="fileStore")
+  public String getFileStore();
+
+  /** The megabytes of file contents kept in the file store. */
+  @GuiceBinding(name="fileStoreSize")
+  public int getFileStoreSize();
+
+  /** The session the client keeps its test cases and files in on the server. */
+  @GuiceBinding(name="session")
+  public String getSession();
+
+  /** The priority of this client among the clients queued for a browser. */
+  @GuiceBinding(name="sessionPriority")
+  public int getSessionPriority();
+
+  /** Whether browsers of the same type share the test cases rather than each running all. */
+  @GuiceBinding(name="shard")
+  public boolean getShard();
+
+  /** The file recording how long each test case took, to deal the longest first. */
+  @GuiceBinding(name="testCaseHistory")
+  public String getTestCaseHistory();
+
+  /** Whether the next test case is loaded into the browser while the current one runs. */
+  @GuiceBinding(name="prefetchTestCases")
+  public boolean getPrefetchTestCases();
+
+  /** The threads that run the browsers: "platform" or "virtual". */
+  @GuiceBinding(name="runnerThreads")
+  public String getRunnerThreads();
+
+  /** The file mapping the source files to the test cases that passed with them. */
+  @GuiceBinding(name="testImpact")
+  public String getTestImpact();
+
   public boolean getDisplayHelp();
 }
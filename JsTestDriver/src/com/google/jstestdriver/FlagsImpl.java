@@ -18,6 +18,7 @@ package com.google.jstestdriver;
 import com.google.common.collect.Sets;
 import com.google.jstestdriver.browser.BrowserRunner;
 import com.google.jstestdriver.browser.CommandLineBrowserRunner;
+import com.google.jstestdriver.browser.ThreadRunnerExecutorFactory;
 import com.google.jstestdriver.config.ConfigurationSource;
 import com.google.jstestdriver.config.DefaultConfigurationSource;
 import com.google.jstestdriver.config.ExecutionType;
@@ -67,6 +68,20 @@ public class FlagsImpl implements Flags {
   private RunnerMode runnerMode = RunnerMode.QUIET;
   private HashSet<String> requiredBrowsers;
   private HandlerPathPrefix serverHandlerPrefix = new NullPathPrefix();
+  private boolean keepAlive = false;
+  private boolean streamResults = false;
+  private int uploadPipelineDepth = 1;
+  private boolean nioConnector = false;
+  private int resourceCacheSize = 128;
+  private String fileStore = "";
+  private int fileStoreSize = 1024;
+  private String session = "";
+  private int sessionPriority = 0;
+  private boolean shard = false;
+  private String testCaseHistory = "";
+  private boolean prefetchTestCases = false;
+  private String runnerThreads = ThreadRunnerExecutorFactory.PLATFORM;
+  private String testImpact = "";
 
   @Option(name="--port", usage="The port on which to start the JsTestDriver server")
   public void setPort(Integer port) {
@@ -261,6 +276,175 @@ public class FlagsImpl implements Flags {
   public HandlerPathPrefix getServerHandlerPrefix() {
     return serverHandlerPrefix;
   }
+
+  @Option(name="--keepAlive",
+      usage="Reuses pooled keep-alive connections for requests to the server.")
+  public void setKeepAlive(boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  @Override
+  public boolean getKeepAlive() {
+    return keepAlive;
+  }
+
+  @Option(name="--streamResults",
+      usage="Streams the results of a command back in a single response, instead of polling.")
+  public void setStreamResults(boolean streamResults) {
+    this.streamResults = streamResults;
+  }
+
+  @Override
+  public boolean getStreamResults() {
+    return streamResults;
+  }
+
+  @Option(name="--uploadPipelineDepth",
+      usage="The number of file load chunks to queue in a browser while uploading. The default"
+          + " of 1 waits for each chunk to load before sending the next.")
+  public void setUploadPipelineDepth(int uploadPipelineDepth) {
+    this.uploadPipelineDepth = uploadPipelineDepth;
+  }
+
+  @Override
+  public int getUploadPipelineDepth() {
+    return uploadPipelineDepth;
+  }
+
+  @Option(name="--nioConnector",
+      usage="Serves http with a non blocking connector, suspending waiting browser and client"
+          + " requests instead of holding a server thread for each.")
+  public void setNioConnector(boolean nioConnector) {
+    this.nioConnector = nioConnector;
+  }
+
+  @Override
+  public boolean getNioConnector() {
+    return nioConnector;
+  }
+
+  @Option(name="--resourceCacheSize",
+      usage="The megabytes of uploaded file contents the server keeps outside of the heap,"
+          + " evicting the least recently used. Evicted files are uploaded again when needed."
+          + " The jvm's -XX:MaxDirectMemorySize must be larger.")
+  public void setResourceCacheSize(int resourceCacheSize) {
+    this.resourceCacheSize = resourceCacheSize;
+  }
+
+  @Override
+  public int getResourceCacheSize() {
+    return resourceCacheSize;
+  }
+
+  @Option(name="--fileStore",
+      usage="A directory in which the server keeps uploaded file contents by digest, so clients"
+          + " don't upload them again after the server restarts.")
+  public void setFileStore(String fileStore) {
+    this.fileStore = fileStore;
+  }
+
+  @Override
+  public String getFileStore() {
+    return fileStore;
+  }
+
+  @Option(name="--fileStoreSize",
+      usage="The megabytes of file contents kept in the --fileStore directory, deleting the"
+          + " least recently used.")
+  public void setFileStoreSize(int fileStoreSize) {
+    this.fileStoreSize = fileStoreSize;
+  }
+
+  @Override
+  public int getFileStoreSize() {
+    return fileStoreSize;
+  }
+
+  @Option(name="--session",
+      usage="A name for the test cases and files of this client on the server, so clients"
+          + " sharing a server don't replace each other's. Reuse the name across runs to"
+          + " upload only changed files.")
+  public void setSession(String session) {
+    this.session = session;
+  }
+
+  @Override
+  public String getSession() {
+    return session;
+  }
+
+  @Option(name="--sessionPriority",
+      usage="The priority of this client while it waits for a browser in use by other clients."
+          + " Clients with a higher priority are given the browser first.")
+  public void setSessionPriority(int sessionPriority) {
+    this.sessionPriority = sessionPriority;
+  }
+
+  @Override
+  public int getSessionPriority() {
+    return sessionPriority;
+  }
+
+  @Option(name="--shard",
+      usage="Spreads the test cases over the captured browsers of the same name and version,"
+          + " instead of running every test case on each of them.")
+  public void setShard(boolean shard) {
+    this.shard = shard;
+  }
+
+  @Override
+  public boolean getShard() {
+    return shard;
+  }
+
+  @Option(name="--testCaseHistory",
+      usage="A file in which to record how long each test case took. With --shard, the"
+          + " test cases predicted to take longest are started first.")
+  public void setTestCaseHistory(String testCaseHistory) {
+    this.testCaseHistory = testCaseHistory;
+  }
+
+  @Override
+  public String getTestCaseHistory() {
+    return testCaseHistory;
+  }
+
+  @Option(name="--prefetchTestCases",
+      usage="Loads the files of the next test case into the browser as soon as the current"
+          + " one finishes, rather than after its results have been read.")
+  public void setPrefetchTestCases(boolean prefetchTestCases) {
+    this.prefetchTestCases = prefetchTestCases;
+  }
+
+  @Override
+  public boolean getPrefetchTestCases() {
+    return prefetchTestCases;
+  }
+
+  @Option(name="--runnerThreads",
+      usage="The threads that run the browsers, one per browser: 'platform' or 'virtual'."
+          + " Virtual threads need java 21, otherwise platform threads are used.")
+  public void setRunnerThreads(String runnerThreads) {
+    this.runnerThreads = runnerThreads;
+  }
+
+  @Override
+  public String getRunnerThreads() {
+    return runnerThreads;
+  }
+
+  @Option(name="--testImpact",
+      usage="A file mapping the source files to the test cases that passed with them. When"
+          + " running all tests, only the test cases affected by changed files are run; the"
+          + " others are reported as cached passes.")
+  public void setTestImpact(String testImpact) {
+    this.testImpact = testImpact;
+  }
+
+  @Override
+  public String getTestImpact() {
+    return testImpact;
+  }
   
   
 
@@ -272,7 +456,16 @@ public class FlagsImpl implements Flags {
         + ",\n displayHelp=" + displayHelp + ",\n verbose=" + verbose + ",\n captureConsole="
         + captureConsole + ",\n preloadFiles=" + preloadFiles + ",\n dryRunFor=" + dryRunFor
         + ",\n arguments=" + arguments + ",\n runnerMode=" + runnerMode + ",\n requiredBrowsers="
-        + requiredBrowsers + ",\n serverHandlerPrefix=" + serverHandlerPrefix +  "]";
+        + requiredBrowsers + ",\n serverHandlerPrefix=" + serverHandlerPrefix
+        + ",\n keepAlive=" + keepAlive + ",\n streamResults=" + streamResults
+        + ",\n uploadPipelineDepth=" + uploadPipelineDepth
+        + ",\n nioConnector=" + nioConnector
+        + ",\n resourceCacheSize=" + resourceCacheSize + ",\n fileStore=" + fileStore
+        + ",\n fileStoreSize=" + fileStoreSize + ",\n session=" + session
+        + ",\n sessionPriority=" + sessionPriority + ",\n shard=" + shard
+        + ",\n testCaseHistory=" + testCaseHistory
+        + ",\n prefetchTestCases=" + prefetchTestCases
+        + ",\n runnerThreads=" + runnerThreads + ",\n testImpact=" + testImpact + "]";
   }
 
   @Override
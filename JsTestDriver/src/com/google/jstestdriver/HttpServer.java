@@ -16,14 +16,17 @@
 package com.google.jstestdriver;
 
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
 import com.google.jstestdriver.util.StopWatch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
@@ -32,12 +35,15 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
  */
 public class HttpServer implements Server {
   private static final Logger logger = LoggerFactory.getLogger(HttpServer.class);
+  static final String COMPRESSED_JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+  private static final int CHUNK_LENGTH = 8192;
   private final StopWatch stopWatch;
   
   @Inject
@@ -69,6 +75,38 @@ public class HttpServer implements Server {
     }
   }
 
+  @Override
+  public void fetchStream(String url, LineHandler handler) {
+    stopWatch.start("fetchStream %s", url);
+    HttpURLConnection connection = null;
+    logger.trace("Streaming {}", url);
+
+    try {
+      connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.connect();
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          logger.trace("Stream line {}", line);
+          handler.handle(line);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (MalformedURLException e) {
+      throw new RuntimeException(e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+      stopWatch.stop("fetchStream %s", url);
+    }
+  }
+
   public void ping(String url) {
     HttpURLConnection connection = null;
     logger.trace("Pinging {}", url);
@@ -168,6 +206,39 @@ public class HttpServer implements Server {
     }
   }
 
+  @Override
+  public String postCompressedJson(String url, JsonBody body) {
+    stopWatch.start("postCompressedJson %s", url);
+    HttpURLConnection connection = null;
+    try {
+      logger.trace("Post compressed json url:{}", url);
+      connection = (HttpURLConnection) new URL(url).openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setDoInput(true);
+      connection.setChunkedStreamingMode(CHUNK_LENGTH);
+      connection.setRequestProperty("Content-Type", COMPRESSED_JSON_CONTENT_TYPE);
+      connection.setRequestProperty("Content-Encoding", "gzip");
+      JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+          new GZIPOutputStream(connection.getOutputStream(), CHUNK_LENGTH), "UTF-8"));
+      try {
+        body.write(writer);
+      } finally {
+        writer.close();
+      }
+      String response = toString(connection.getInputStream());
+      logger.trace("Post response:\n{}\n", response);
+      return response;
+    } catch (IOException e) {
+      throw new RuntimeException("Connection error on: " + connection, e);
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+      stopWatch.stop("postCompressedJson %s", url);
+    }
+  }
+
   public String convertParamsToString(Map<String, String> params)
       throws UnsupportedEncodingException {
     StringBuilder sb = new StringBuilder();
@@ -50,6 +50,13 @@ public interface JsTestDriverClient {
   /** Asks the server for the next browser id. */
   public String getNextBrowserId();
 
+  /**
+   * Has the browser load a test case right after the next command that loads
+   * files, so a later command on the test case starts without waiting for
+   * the loads.
+   */
+  public void prefetch(String browserId, JstdTestCase testCase);
+
   /** uploads the files to the server and requests the browser to load as well.*/
   public void uploadFiles(String browserId, JstdTestCase testCase);
 }
@@ -23,6 +23,8 @@ import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.JsonCommand.CommandType;
 import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.Sessions;
+import com.google.jstestdriver.servlet.fileset.BrowserFileSync;
 import com.google.jstestdriver.util.StopWatch;
 
 import java.util.Collection;
@@ -31,6 +33,8 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
@@ -50,19 +54,27 @@ public class JsTestDriverClientImpl implements JsTestDriverClient {
 
   private final StopWatch watch;
 
+  private final String session;
+
+  /** The test case to load after the next command that loads files, by browser. */
+  private final ConcurrentMap<String, JstdTestCase> prefetches =
+      new ConcurrentHashMap<String, JstdTestCase>();
+
   @Inject
   public JsTestDriverClientImpl(CommandTaskFactory commandTaskFactory,
                                 @Named("server") String baseUrl,
                                 Server server,
                                 @Named("debug") Boolean debug,
                                 FileUploader uploader,
-                                StopWatch watch) {
+                                StopWatch watch,
+                                @Named("session") String session) {
     this.commandTaskFactory = commandTaskFactory;
     this.baseUrl = baseUrl;
     this.server = server;
     this.debug = debug;
     this.uploader = uploader;
     this.watch = watch;
+    this.session = session;
   }
 
   @Override
@@ -93,6 +105,11 @@ public class JsTestDriverClientImpl implements JsTestDriverClient {
 
     params.put("data", cmd);
     params.put("id", browserId);
+    Sessions.putSession(params, session);
+    JstdTestCase prefetch = prefetches.remove(browserId);
+    if (uploadFiles && prefetch != null && prefetch.getId() != null) {
+      params.put(BrowserFileSync.PREFETCH_TEST_CASE_ID, prefetch.getId());
+    }
     watch.start("getCommandTask: %s %s", browserId, cmd);
     CommandTask task =
         commandTaskFactory.getCommandTask(stream, baseUrl, server, params, uploadFiles);
@@ -159,6 +176,11 @@ public class JsTestDriverClientImpl implements JsTestDriverClient {
     sendCommand(browserId, responseStream, gson.toJson(cmd), true, testCase);
   }
 
+  @Override
+  public void prefetch(String browserId, JstdTestCase testCase) {
+    prefetches.put(browserId, testCase);
+  }
+
   @Override
   public void uploadFiles(String browserId, JstdTestCase testCase) {
     uploader.uploadFileSet(browserId, Lists.<JstdTestCase>newArrayList(testCase), new BrowserPanicResponseStream());
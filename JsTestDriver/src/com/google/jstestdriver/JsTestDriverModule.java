@@ -32,6 +32,7 @@ import com.google.jstestdriver.config.DefaultConfiguration;
 import com.google.jstestdriver.guice.BrowserActionProvider;
 import com.google.jstestdriver.guice.FlagsModule;
 import com.google.jstestdriver.hooks.ServerListener;
+import com.google.jstestdriver.util.DaemonThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -150,7 +151,9 @@ public class JsTestDriverModule extends AbstractModule {
 
     bind(new TypeLiteral<List<Action>>(){}).toProvider(ActionListProvider.class);
     bind(new TypeLiteral<List<BrowserAction>>(){}).toProvider(BrowserActionProvider.class);
-    bind(ExecutorService.class).toInstance(Executors.newScheduledThreadPool(10));
+    // for the actions around the browser runs, which get executors of their own.
+    bind(ExecutorService.class).toInstance(
+        Executors.newCachedThreadPool(new DaemonThreadFactory("JsTestDriver")));
 
     bind(FailureAccumulator.class).in(Singleton.class);
 
@@ -168,6 +171,10 @@ public class JsTestDriverModule extends AbstractModule {
 
     bind(Time.class).to(TimeImpl.class);
 
+    if (flags.getKeepAlive()) {
+      bind(Server.class).to(PooledHttpServer.class);
+    }
+
     bind(new TypeLiteral<Set<FileInfo>>() {}).annotatedWith(Names.named("fileSet"))
        .toProvider(FileSetProvider.class).in(Singleton.class);
     bind(new TypeLiteral<List<FileInfo>>() {}).annotatedWith(Names.named("tests"))
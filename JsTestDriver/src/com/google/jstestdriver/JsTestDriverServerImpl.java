@@ -20,7 +20,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.browser.BrowserCaptureEvent;
-import com.google.jstestdriver.browser.BrowserReaper;
+import com.google.jstestdriver.browser.BrowserLivenessWheel;
 import com.google.jstestdriver.config.ExecutionType;
 import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.hooks.ServerListener;
@@ -31,7 +31,9 @@ import com.google.jstestdriver.server.handlers.JstdHandlersModule;
 
 import org.mortbay.component.LifeCycle;
 import org.mortbay.component.LifeCycle.Listener;
+import org.mortbay.jetty.Connector;
 import org.mortbay.jetty.Server;
+import org.mortbay.jetty.security.SslSocketConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,8 +61,13 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
   private final JstdTestCaseStore testCaseStore;
   private final long browserTimeout;
 
+  /** The number of ticks of the liveness wheel in a browser timeout. */
+  private static final int LIVENESS_SLOTS = 8;
+
   private Timer timer;
 
+  private BrowserLivenessWheel livenessWheel;
+
   private final HandlerPathPrefix handlerPrefix;
 
   private final Set<ServerListener> listeners;
@@ -69,6 +76,8 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
 
   private final ExecutionType executionType;
 
+  private final boolean nioConnector;
+
   @Inject
   public JsTestDriverServerImpl(@Assisted("port") int port,
                                 @Assisted("sslPort") int sslPort,
@@ -78,7 +87,8 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
                                 @Named("serverHandlerPrefix") HandlerPathPrefix handlerPrefix,
                                 Set<ServerListener> listeners,
                                 Set<FileInfoScheme> schemes,
-                                @Named("executionType") ExecutionType executionType) {
+                                @Named("executionType") ExecutionType executionType,
+                                @Named("nioConnector") boolean nioConnector) {
     this.port = port;
     this.sslPort = sslPort;
     this.capturedBrowsers = capturedBrowsers;
@@ -88,6 +98,7 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
     this.listeners = listeners;
     this.schemes = schemes;
     this.executionType = executionType;
+    this.nioConnector = nioConnector;
     initServer();
   }
 
@@ -99,7 +110,7 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
       capturedBrowsers.deleteObserver(this);
       capturedBrowsers.addObserver(this);
       server = Guice.createInjector(
-          new JettyModule(port, sslPort, handlerPrefix),
+          new JettyModule(port, sslPort, handlerPrefix, nioConnector),
           new JstdHandlersModule(capturedBrowsers,
                                  testCaseStore,
                                  browserTimeout,
@@ -117,10 +128,15 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
       // TODO(corysmith): Move this to the constructor when we are injecting
       // everything.
       timer = new Timer(true);
-      timer.schedule(new BrowserReaper(capturedBrowsers), browserTimeout * 2, browserTimeout * 2);
+      long tick = Math.max(browserTimeout / LIVENESS_SLOTS, 1);
+      livenessWheel = new BrowserLivenessWheel(capturedBrowsers, new TimeImpl(), tick,
+          LIVENESS_SLOTS * 2);
+      capturedBrowsers.addObserver(livenessWheel);
+      timer.schedule(livenessWheel, tick, tick);
 
       server.start();
-      logger.info("Started the JsTD server on {} with execution type {}", port, executionType);
+      logger.info("Started the JsTD server on {} with execution type {}", getLocalPort(),
+          executionType);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -130,6 +146,7 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
   public void stop() {
     try {
       timer.cancel();
+      capturedBrowsers.deleteObserver(livenessWheel);
       if (server != null) {
         server.stop();
         server.join();
@@ -142,6 +159,21 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
     }
   }
 
+  /**
+   * The port serving http, which the system picks when the server was
+   * created with port 0. Only known once the server started.
+   */
+  public int getLocalPort() {
+    if (server != null) {
+      for (Connector connector : server.getConnectors()) {
+        if (!(connector instanceof SslSocketConnector) && connector.getLocalPort() > 0) {
+          return connector.getLocalPort();
+        }
+      }
+    }
+    return port;
+  }
+
   /** Separate function for synchronization and thread handling. */
   private void notifyListeners(ServerNotification<ServerListener> notification) {
     for (ServerListener listener : listeners) {
@@ -156,7 +188,7 @@ public class JsTestDriverServerImpl implements JsTestDriverServer, Observer {
    */
   @Override
   public boolean isHealthy() {
-    String url = "http://127.0.0.1:" + port + handlerPrefix.prefixPath("/hello");
+    String url = "http://127.0.0.1:" + getLocalPort() + handlerPrefix.prefixPath("/hello");
     HttpURLConnection connection;
     try {
       connection = (HttpURLConnection) new URL(url).openConnection();
@@ -24,7 +24,7 @@ public class Lock {
   private final Object lock = new Object();
   private volatile boolean locked;
   private String sessionId = "";
-  private long lastHeartBeat = 0;
+  private volatile long lastHeartBeat = 0;
 
   public synchronized boolean tryLock(String sessionId) {
     if (locked) {
@@ -43,6 +43,10 @@ public class Lock {
     locked = false;
   }
 
+  public boolean isLocked() {
+    return locked;
+  }
+
   public String getSessionId() {
     return sessionId;
   }
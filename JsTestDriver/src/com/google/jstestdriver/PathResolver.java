@@ -33,6 +33,7 @@ import com.google.inject.name.Named;
 import com.google.jstestdriver.config.UnreadableFile;
 import com.google.jstestdriver.config.UnreadableFilesException;
 import com.google.jstestdriver.hooks.FileParsePostProcessor;
+import com.google.jstestdriver.util.ContentDigest;
 import com.google.jstestdriver.util.DisplayPathSanitizer;
 
 /**
@@ -74,6 +75,11 @@ public class PathResolver {
             + " without a core file to patch");
         }
         currentNonPatch.addPatch(fileInfo);
+        // the patches are loaded as part of the file, so they are part of its identity.
+        if (currentNonPatch.getDigest() != null && fileInfo.getDigest() != null) {
+          currentNonPatch.setDigest(
+              ContentDigest.of(currentNonPatch.getDigest() + fileInfo.getDigest()));
+        }
       } else {
         consolidated.add(fileInfo);
         currentNonPatch = fileInfo;
@@ -86,7 +92,8 @@ public class PathResolver {
   /**
    * Resolves files for a set of FileInfos:
    *  - Expands glob paths (e.g. "*.js") into distinct FileInfos
-   *  - Sets last modified timestamp for each FileInfo
+   *  - Sets last modified timestamp and length for each FileInfo
+   *  - Sets the content digest for each FileInfo
    *
    * @param unresolvedFiles the FileInfos to resolved
    * @return the resolved FileInfos
@@ -123,6 +130,8 @@ public class PathResolver {
 
             FileInfo newFileInfo =
                 fileInfo.fromResolvedPath(absolutePath, displayPath, timestamp);
+            newFileInfo.setLength(resolvedFile.length());
+            newFileInfo.setDigest(ContentDigest.of(resolvedFile));
 
             resolvedFiles.add(newFileInfo);
           }
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.jstestdriver.util.StopWatch;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link Server} that keeps connections to the JsTestDriver server alive
+ * between requests, instead of opening a new connection for each one.
+ * Bodies are streamed through buffers using the declared charset.
+ */
+@Singleton
+public class PooledHttpServer implements Server {
+  private static final Logger logger = LoggerFactory.getLogger(PooledHttpServer.class);
+
+  static final String CHARSET = "UTF-8";
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_CONNECTIONS_PER_HOST = 50;
+
+  private final StopWatch stopWatch;
+  private final HttpClient client;
+  private final AtomicLong connectionsOpened = new AtomicLong();
+  private final AtomicLong connectionsReused = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+
+  @Inject
+  public PooledHttpServer(StopWatch stopWatch) {
+    this.stopWatch = stopWatch;
+    CountingConnectionManager manager = new CountingConnectionManager();
+    // one connection per browser runner, plus heartbeats.
+    manager.getParams().setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+    manager.getParams().setMaxTotalConnections(MAX_CONNECTIONS_PER_HOST * 2);
+    manager.getParams().setTcpNoDelay(true);
+    client = new HttpClient(manager);
+    client.getParams().setCookiePolicy(CookiePolicy.IGNORE_COOKIES);
+    client.getParams().setContentCharset(CHARSET);
+  }
+
+  @Override
+  public String fetch(String url) {
+    stopWatch.start("fetch %s", url);
+    logger.trace("Fetching {}", url);
+    try {
+      String response = execute(new GetMethod(url));
+      logger.trace("Fetch response {}", response);
+      return response;
+    } finally {
+      stopWatch.stop("fetch %s", url);
+    }
+  }
+
+  @Override
+  public void fetchStream(String url, LineHandler handler) {
+    stopWatch.start("fetchStream %s", url);
+    logger.trace("Streaming {}", url);
+    GetMethod method = new GetMethod(url);
+    try {
+      checkStatus(method, client.executeMethod(method));
+      InputStream body = method.getResponseBodyAsStream();
+      if (body == null) {
+        return;
+      }
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(new CountingInputStream(body), method.getResponseCharSet()),
+          BUFFER_SIZE);
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          logger.trace("Stream line {}", line);
+          handler.handle(line);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Connection error on: " + url, e);
+    } finally {
+      method.releaseConnection();
+      stopWatch.stop("fetchStream %s", url);
+    }
+  }
+
+  @Override
+  public String post(String url, Map<String, String> params) {
+    stopWatch.start("post %s", url);
+    try {
+      logger.trace("Post url:{} \nParams:\n{} \n", url, params);
+      PostMethod method = new PostMethod(url);
+      method.setRequestEntity(new ByteArrayRequestEntity(
+          convertParamsToString(params).getBytes(CHARSET),
+          "application/x-www-form-urlencoded; charset=" + CHARSET));
+      String response = execute(method);
+      logger.trace("Post response:\n{}", response);
+      return response;
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    } finally {
+      stopWatch.stop("post %s", url);
+    }
+  }
+
+  @Override
+  public String postJson(String url, JsonElement json) {
+    stopWatch.start("postJson %s", url);
+    try {
+      logger.trace("Post url:{}\nJSON:\n{}\n", url, json);
+      PostMethod method = new PostMethod(url);
+      method.setRequestEntity(new ByteArrayRequestEntity(json.toString().getBytes(CHARSET),
+          "application/jsonrequest; charset=" + CHARSET));
+      String response = execute(method);
+      logger.trace("Post response:\n{}\n", response);
+      return response;
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    } finally {
+      stopWatch.stop("postJson %s", url);
+    }
+  }
+
+  @Override
+  public String postCompressedJson(String url, JsonBody body) {
+    stopWatch.start("postCompressedJson %s", url);
+    try {
+      logger.trace("Post compressed json url:{}", url);
+      PostMethod method = new PostMethod(url);
+      method.setRequestHeader("Content-Encoding", "gzip");
+      method.setRequestEntity(new CompressedJsonRequestEntity(body));
+      String response = execute(method);
+      logger.trace("Post response:\n{}\n", response);
+      return response;
+    } finally {
+      stopWatch.stop("postCompressedJson %s", url);
+    }
+  }
+
+  @Override
+  public String startSession(String baseUrl, String id) {
+    return fetch(baseUrl + "/fileSet?id=" + id + "&session=start");
+  }
+
+  @Override
+  public void stopSession(String baseUrl, String id, String sessionId) {
+    fetch(baseUrl + "/fileSet?id=" + id + "&session=stop" + "&sessionId=" + sessionId);
+    logger.debug("Connection statistics after session {}: {}", sessionId, this);
+  }
+
+  /**
+   * Executes the method, reading the entire response body before returning the
+   * connection to the pool.
+   *
+   * @throws RuntimeException if the request fails or the server answers with
+   *     a status other than 2xx, as {@link HttpServer} does.
+   */
+  private String execute(HttpMethodBase method) {
+    try {
+      if (method instanceof PostMethod) {
+        // streamed entities count their bytes as they are written.
+        bytesSent.addAndGet(Math.max(0,
+            ((PostMethod) method).getRequestEntity().getContentLength()));
+      }
+      checkStatus(method, client.executeMethod(method));
+      InputStream body = method.getResponseBodyAsStream();
+      if (body == null) {
+        return "";
+      }
+      return read(new CountingInputStream(body), method.getResponseCharSet());
+    } catch (IOException e) {
+      throw new RuntimeException("Connection error on: " + method.getPath(), e);
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  /** Fails on an error status, like an HttpURLConnection does when read. */
+  private void checkStatus(HttpMethodBase method, int status) throws IOException {
+    if (status < 200 || status >= 300) {
+      throw new IOException(String.format("Server returned HTTP response code: %s for URL: %s",
+          status, method.getURI()));
+    }
+  }
+
+  private String read(InputStream in, String charset) throws IOException {
+    Reader reader = new InputStreamReader(in, charset);
+    try {
+      StringBuilder sb = new StringBuilder();
+      char[] buffer = new char[BUFFER_SIZE];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        sb.append(buffer, 0, read);
+      }
+      return sb.toString();
+    } finally {
+      reader.close();
+    }
+  }
+
+  String convertParamsToString(Map<String, String> params)
+      throws UnsupportedEncodingException {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      if (sb.length() > 0) {
+        sb.append('&');
+      }
+      sb.append(URLEncoder.encode(entry.getKey(), CHARSET))
+        .append('=')
+        .append(URLEncoder.encode(entry.getValue(), CHARSET));
+    }
+    return sb.toString();
+  }
+
+  /** The number of new connections opened to the server. */
+  public long getConnectionsOpened() {
+    return connectionsOpened.get();
+  }
+
+  /** The number of requests that were served by an already open connection. */
+  public long getConnectionsReused() {
+    return connectionsReused.get();
+  }
+
+  /** The number of request body bytes sent to the server. */
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /** The number of response body bytes read from the server. */
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("PooledHttpServer(opened=%s, reused=%s, sent=%s, received=%s)",
+        connectionsOpened, connectionsReused, bytesSent, bytesReceived);
+  }
+
+  /** Tracks whether the pool handed out a new or an already open connection. */
+  private class CountingConnectionManager extends MultiThreadedHttpConnectionManager {
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration,
+        long timeout) throws ConnectionPoolTimeoutException {
+      HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+      if (connection.isOpen()) {
+        connectionsReused.incrementAndGet();
+      } else {
+        connectionsOpened.incrementAndGet();
+      }
+      return connection;
+    }
+  }
+
+  /**
+   * Writes a gzip compressed json body while it is sent, using chunked
+   * transfer encoding as the length is unknown up front.
+   */
+  private class CompressedJsonRequestEntity implements RequestEntity {
+    private final JsonBody body;
+
+    CompressedJsonRequestEntity(JsonBody body) {
+      this.body = body;
+    }
+
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    public void writeRequest(OutputStream out) throws IOException {
+      GZIPOutputStream compressed = new GZIPOutputStream(new CountingOutputStream(out), BUFFER_SIZE);
+      JsonWriter writer = new JsonWriter(new OutputStreamWriter(compressed, CHARSET));
+      body.write(writer);
+      writer.flush();
+      // finish rather than close, the connection owns the underlying stream.
+      compressed.finish();
+    }
+
+    public long getContentLength() {
+      return -1;
+    }
+
+    public String getContentType() {
+      return "application/json; charset=" + CHARSET;
+    }
+  }
+
+  /** Counts the bytes written to the request body. */
+  private class CountingOutputStream extends FilterOutputStream {
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      bytesSent.incrementAndGet();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      bytesSent.addAndGet(len);
+    }
+  }
+
+  /** Counts the bytes read from the response body. */
+  private class CountingInputStream extends FilterInputStream {
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read != -1) {
+        bytesReceived.incrementAndGet();
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        bytesReceived.addAndGet(read);
+      }
+      return read;
+    }
+  }
+}
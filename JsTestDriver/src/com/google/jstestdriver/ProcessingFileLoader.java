@@ -16,13 +16,16 @@
 
 package com.google.jstestdriver;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.hooks.FileLoadPostProcessor;
+import com.google.jstestdriver.util.ContentDigest;
 import com.google.jstestdriver.util.StopWatch;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -75,10 +78,42 @@ public class ProcessingFileLoader implements FileLoader {
     return processed;
   }
 
-  private FileInfo postProcessFile(FileInfo processed) {
+  /**
+   * Runs the post processors over a loaded file. The digest of a file is of
+   * the contents as read, so a file whose contents were rewritten is given the
+   * digest of the rewritten contents. No client sends that digest for an
+   * unloaded file, so the file is sent again on each run, as the processors
+   * expect to see it each time.
+   */
+  private FileInfo postProcessFile(FileInfo loaded) {
+    FileInfo processed = loaded;
     for (FileLoadPostProcessor hook : postprocessors) {
       processed = hook.process(processed);
     }
+    if (processed != loaded && processed.getDigest() != null
+        && !processed.getData().equals(loaded.getData())) {
+      processed.setDigest(ContentDigest.of(processed.getData()));
+    }
     return processed;
   }
+
+  /**
+   * The digest of a file loaded with a set of post processors: the digest of
+   * its contents folded with the processors. The same file loaded with and
+   * without coverage doesn't have the same digest, so switching coverage
+   * replaces the contents on the server.
+   * @return The digest, or null if the digest of the file is unknown.
+   */
+  public static String processedDigest(String digest,
+      Set<FileLoadPostProcessor> postprocessors) {
+    if (digest == null || postprocessors.isEmpty()) {
+      return digest;
+    }
+    List<String> names = Lists.newArrayListWithCapacity(postprocessors.size());
+    for (FileLoadPostProcessor hook : postprocessors) {
+      names.add(hook.getClass().getName());
+    }
+    Collections.sort(names);
+    return ContentDigest.of(digest + names);
+  }
 }
@@ -36,8 +36,10 @@ public class RelativePathConverter {
     List<FileInfo> convertedPaths = Lists.newLinkedList();
 
     for (FileInfo f : files) {
-      convertedPaths.add(new FileInfo(f.getFilePath().replace(baseDir, ""), f.getTimestamp(),
-          -1, f.isPatch(), f.isServeOnly(), f.getData(), f.getDisplayPath()));
+      FileInfo converted = new FileInfo(f.getFilePath().replace(baseDir, ""), f.getTimestamp(),
+          -1, f.isPatch(), f.isServeOnly(), f.getData(), f.getDisplayPath());
+      converted.setDigest(f.getDigest());
+      convertedPaths.add(converted);
     }
     return convertedPaths;
   }
@@ -15,9 +15,12 @@
  */
 package com.google.jstestdriver;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.reflect.TypeToken;
 import com.google.jstestdriver.protocol.BrowserLog;
 import com.google.jstestdriver.protocol.Noop;
+import com.google.jstestdriver.protocol.ProtocolGson;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -50,6 +53,17 @@ public class Response {
     }
   }
 
+  /** The protocol version in which the payload is serialized into response. */
+  public static final int SERIALIZED_PAYLOAD = 1;
+
+  /**
+   * The protocol version in which the payload is carried as structured json in
+   * data, so it is only encoded once on the wire.
+   */
+  public static final int STRUCTURED_PAYLOAD = 2;
+
+  private static final Gson gson = ProtocolGson.create();
+
   public Response() {}
 
   public Response(String type, String response, BrowserInfo browser, String error, long executionTime) {
@@ -65,13 +79,88 @@ public class Response {
   private BrowserInfo browser = new BrowserInfo();
   private String error = "";
   private long executionTime = 0L;
-
+  private int version = SERIALIZED_PAYLOAD;
+  private JsonElement data;
+
+  /** The serialized form of data, created on demand. */
+  private transient String serializedData;
+  /** The payload, parsed once on demand. */
+  private transient Object parsedResponse;
+
+  /**
+   * Returns the payload as a json string. For structured payloads, this
+   * serializes the data on the first call.
+   */
   public String getResponse() {
+    if (isStructured()) {
+      if (serializedData == null) {
+        serializedData = gson.toJson(data);
+      }
+      return serializedData;
+    }
     return response;
   }
 
   public void setResponse(String response) {
     this.response = response;
+    this.version = SERIALIZED_PAYLOAD;
+    this.data = null;
+    this.serializedData = null;
+    this.parsedResponse = null;
+  }
+
+  /** Sets a structured payload, switching to the structured protocol version. */
+  public void setData(JsonElement data) {
+    this.data = data;
+    this.response = "";
+    this.version = STRUCTURED_PAYLOAD;
+    this.serializedData = null;
+    this.parsedResponse = null;
+  }
+
+  /** Returns the structured payload, or null for serialized payloads. */
+  public JsonElement getData() {
+    return isStructured() ? data : null;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  /** Is the payload carried as structured json? */
+  public boolean isStructured() {
+    return version >= STRUCTURED_PAYLOAD && data != null;
+  }
+
+  /**
+   * Parses the payload into the type declared by the {@link ResponseType}. The
+   * result is cached, so repeated calls do not reparse the payload.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T parseResponse() {
+    if (parsedResponse == null) {
+      Type gsonType = getGsonType();
+      if (gsonType == null) {
+        throw new IllegalStateException("No payload type for " + type);
+      }
+      parsedResponse = isStructured()
+          ? gson.fromJson(data, gsonType)
+          : gson.fromJson(response, gsonType);
+    }
+    return (T) parsedResponse;
+  }
+
+  /**
+   * Creates a copy of this response as a different type, from a different
+   * browser, sharing the payload in its current form.
+   */
+  public Response copyAs(ResponseType responseType, BrowserInfo browserInfo) {
+    Response copy =
+        new Response(responseType.toString(), response, browserInfo, "", executionTime);
+    if (isStructured()) {
+      copy.setData(data);
+    }
+    return copy;
   }
 
   public BrowserInfo getBrowser() {
@@ -113,13 +202,14 @@ public class Response {
   
   /** The type for Gson use to deserialize the response. */
   public Type getGsonType() {
-    return ResponseType.valueOf(type).type;
+    return getResponseType().type;
   }
 
   @Override
   public String toString() {
     return "Response (\nbrowser=[" + browser + "], \nerror=[" + error + "], \nexecutionTime=[" + executionTime
-        + "], \nresponse=[" + response + "], \ntype=[" + type + "])";
+        + "], \nresponse=[" + response + "], \ndata=[" + data + "], \ntype=[" + type
+        + "], \nversion=[" + version + "])";
   }
 
   @Override
@@ -131,6 +221,9 @@ public class Response {
     result = prime * result + (int) (executionTime ^ (executionTime >>> 32));
     result = prime * result + ((response == null) ? 0 : response.hashCode());
     result = prime * result + ((type == null) ? 0 : type.hashCode());
+    // JsonElements do not implement equality, so compare their serialized form.
+    result = prime * result + ((data == null) ? 0 : data.toString().hashCode());
+    result = prime * result + version;
     return result;
   }
 
@@ -151,6 +244,10 @@ public class Response {
     if (type == null) {
       if (other.type != null) return false;
     } else if (!type.equals(other.type)) return false;
+    if (data == null) {
+      if (other.data != null) return false;
+    } else if (other.data == null || !data.toString().equals(other.data.toString())) return false;
+    if (version != other.version) return false;
     return true;
   }
 }
@@ -15,6 +15,7 @@
  */
 package com.google.jstestdriver;
 
+import com.google.jstestdriver.browser.TestImpact;
 import com.google.jstestdriver.hooks.TestsPreProcessor;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.RunData;
@@ -34,17 +35,20 @@ public class RunTestsAction implements BrowserAction {
   private final Set<TestsPreProcessor> preProcessors;
   private final ResponseStreamFactory responseStreamFactory;
   private final StopWatch stopWatch;
+  private final TestImpact testImpact;
 
   public RunTestsAction(ResponseStreamFactory responseStreamFactory,
                         List<String> tests,
                         boolean captureConsole,
                         Set<TestsPreProcessor> preProcessors,
-                        StopWatch stopWatch) {
+                        StopWatch stopWatch,
+                        TestImpact testImpact) {
     this.responseStreamFactory = responseStreamFactory;
     this.tests = tests;
     this.captureConsole = captureConsole;
     this.preProcessors = preProcessors;
     this.stopWatch = stopWatch;
+    this.testImpact = testImpact;
   }
 
   /**
@@ -65,7 +69,10 @@ public class RunTestsAction implements BrowserAction {
 
     stopWatch.start("RunTests: %s", id);
     if (testsToRun.size() == 1 && testsToRun.get(0).equals("all")) {
-      client.runAllTests(id, runTestsActionResponseStream, captureConsole, testCase);
+      // only runs of all the tests tell whether the test case passed.
+      final ResponseStream tracked = testImpact.track(testCase, runTestsActionResponseStream);
+      client.runAllTests(id, tracked, captureConsole, testCase);
+      testImpact.complete(tracked);
     } else if (testsToRun.size() > 0) {
       client.runTests(id, runTestsActionResponseStream, testsToRun, captureConsole, testCase);
     }
@@ -15,7 +15,6 @@
  */
 package com.google.jstestdriver;
 
-import com.google.gson.Gson;
 import com.google.jstestdriver.browser.BrowserPanicException;
 import com.google.jstestdriver.output.TestResultListener;
 
@@ -29,7 +28,6 @@ public class RunTestsActionResponseStream implements ResponseStream {
   private final TestResultGenerator testResultGenerator;
   private final TestResultListener listener;
   private final FailureAccumulator accumulator;
-  private final Gson gson = new Gson();
 
   public RunTestsActionResponseStream(TestResultGenerator testResultGenerator,
       TestResultListener listener, FailureAccumulator accumulator) {
@@ -52,8 +50,7 @@ public class RunTestsActionResponseStream implements ResponseStream {
         }
         break;
       case FILE_LOAD_RESULT:
-        LoadedFiles files = gson.fromJson(response.getResponse(),
-                                          response.getGsonType());
+        LoadedFiles files = response.parseResponse();
         for (FileResult result : files.getLoadedFiles()) {
           if (!result.isSuccess()) {
             accumulator.add();
@@ -62,7 +59,7 @@ public class RunTestsActionResponseStream implements ResponseStream {
         }
         break;
       case BROWSER_PANIC:
-        BrowserPanic panic = gson.fromJson(response.getResponse(), response.getGsonType());
+        BrowserPanic panic = response.parseResponse();
         throw new BrowserPanicException(panic.getBrowserInfo(), panic.getCause());
     }
   }
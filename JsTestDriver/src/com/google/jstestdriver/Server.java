@@ -28,8 +28,12 @@ import java.util.Map;
 public interface Server {
 
   String fetch(String url);
+  /** Fetches a chunked response, passing each line to the handler as it arrives. */
+  void fetchStream(String url, LineHandler handler);
   String post(String url, Map<String, String> params);
   String postJson(String url, JsonElement json);
+  /** Posts a gzip compressed json body, written as it is sent. */
+  String postCompressedJson(String url, JsonBody body);
   String startSession(String baseUrl, String id);
   void stopSession(String baseUrl, String id, String sessionId);
 }
@@ -135,7 +135,7 @@ public class ServerStartupAction implements ObservableAction {
     public JsTestDriverServer create(int port, int sslPort, JstdTestCaseStore testCaseStore) {
       return new JsTestDriverServerImpl(port, sslPort, testCaseStore, capturedBrowsers, timeout,
           nullPathPrefix, Sets.<ServerListener>newHashSet(), Collections.<FileInfoScheme>emptySet(),
-          ExecutionType.INTERACTIVE);
+          ExecutionType.INTERACTIVE, false);
     }
   }
 
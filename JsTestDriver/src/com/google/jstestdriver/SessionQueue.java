@@ -0,0 +1,262 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver;
+
+import com.google.common.collect.Maps;
+
+import org.mortbay.util.ajax.Continuation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Hands the {@link Lock} of a browser to the clients waiting for it, by
+ * priority and then in order of arrival. A waiting client holds a
+ * {@link Ticket} and waits in {@link #await} until its ticket is granted,
+ * instead of retrying, either blocking or with its request suspended.
+ *
+ * The lock is granted to the next ticket when its holder releases it or stops
+ * heart beating. Tickets of clients that stop waiting are dropped.
+ */
+public class SessionQueue {
+  private static final Logger logger = LoggerFactory.getLogger(SessionQueue.class);
+
+  /** The answer to a client whose start or ticket failed. */
+  public static final String FAILED = "FAILED";
+
+  /** Prefixes the answer to a client still waiting: "QUEUED ticket position". */
+  public static final String QUEUED = "QUEUED";
+
+  /** The milliseconds a waiting ticket is kept without its client asking for it. */
+  public static final long ABANDON_TIMEOUT = 30000;
+
+  /** The longest wait between checks of the heart beat of the holder. */
+  private static final long CHECK_INTERVAL = 500;
+
+  private static final Comparator<Ticket> ORDER = new Comparator<Ticket>() {
+    public int compare(Ticket a, Ticket b) {
+      if (a.priority != b.priority) {
+        return a.priority > b.priority ? -1 : 1;
+      }
+      return a.number < b.number ? -1 : (a.number > b.number ? 1 : 0);
+    }
+  };
+
+  /** A client's place in the queue. */
+  public static class Ticket {
+    private final long number;
+    private final int priority;
+    private String sessionId;
+    private long lastSeen;
+
+    private Ticket(long number, int priority, long lastSeen) {
+      this.number = number;
+      this.priority = priority;
+      this.lastSeen = lastSeen;
+    }
+
+    public long getNumber() {
+      return number;
+    }
+
+    public int getPriority() {
+      return priority;
+    }
+
+    @Override
+    public String toString() {
+      return "Ticket [number=" + number + ", priority=" + priority + ", sessionId=" + sessionId
+          + "]";
+    }
+  }
+
+  private final Lock lock;
+  private final Time time;
+  private final long sessionTimeout;
+  private final PriorityQueue<Ticket> waiting = new PriorityQueue<Ticket>(11, ORDER);
+  /** The waiting tickets, and the granted ones until their client picks them up. */
+  private final Map<Long, Ticket> tickets = Maps.newHashMap();
+  /** The suspended requests of waiting tickets, resumed when they are granted. */
+  private final Map<Ticket, Continuation> waiters = Maps.newHashMap();
+  private long nextNumber = 1;
+
+  /**
+   * @param lock The lock of the browser.
+   * @param time The source of the heart beat times.
+   * @param sessionTimeout The milliseconds without a heart beat after which
+   *     the holder of the lock is considered gone.
+   */
+  public SessionQueue(Lock lock, Time time, long sessionTimeout) {
+    this.lock = lock;
+    this.time = time;
+    this.sessionTimeout = sessionTimeout;
+  }
+
+  /** Queues a client, granting it the lock right away if it is free. */
+  public synchronized Ticket enqueue(int priority) {
+    Ticket ticket = new Ticket(nextNumber++, priority, now());
+    waiting.add(ticket);
+    tickets.put(ticket.number, ticket);
+    grant();
+    return ticket;
+  }
+
+  /** @return The ticket with a number, or null if it was dropped or picked up. */
+  public synchronized Ticket getTicket(long number) {
+    return tickets.get(number);
+  }
+
+  /**
+   * Waits for the lock to be granted to a ticket.
+   * @return The session id holding the lock, {@link #FAILED} if the ticket
+   *     was granted but the lock has since passed to another session, or null
+   *     if the ticket wasn't granted in time.
+   */
+  public synchronized String await(Ticket ticket, long millis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + millis;
+    while (true) {
+      String sessionId = poll(ticket);
+      if (sessionId != null) {
+        return sessionId;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return null;
+      }
+      wait(Math.min(remaining, CHECK_INTERVAL));
+    }
+  }
+
+  /**
+   * Waits for the lock to be granted to a ticket without holding the calling
+   * thread. If it isn't granted yet the request is suspended, by throwing
+   * Jetty's RetryRequest, until the ticket is granted or the time passes. The
+   * resumed request must call this again with the same continuation. A holder
+   * that stops heart beating meanwhile is only noticed once the time passes.
+   *
+   * @return The answer of {@link #await(Ticket, long)}.
+   */
+  public synchronized String await(Ticket ticket, Continuation continuation, long millis) {
+    waiters.remove(ticket);
+    String sessionId = poll(ticket);
+    if (sessionId == null) {
+      waiters.put(ticket, continuation);
+      continuation.suspend(millis);
+      waiters.remove(ticket);
+      sessionId = poll(ticket);
+    }
+    return sessionId;
+  }
+
+  /** Marks the ticket as seen, and answers whether it was granted. */
+  private String poll(Ticket ticket) {
+    ticket.lastSeen = now();
+    grant();
+    if (ticket.sessionId == null) {
+      return null;
+    }
+    tickets.remove(ticket.number);
+    if (lock.isLocked() && ticket.sessionId.equals(lock.getSessionId())) {
+      return ticket.sessionId;
+    }
+    logger.debug("the lock granted to {} was lost to {}", ticket, lock.getSessionId());
+    return FAILED;
+  }
+
+  /** Removes a ticket, for a client that no longer waits. */
+  public synchronized void cancel(Ticket ticket) {
+    waiting.remove(ticket);
+    tickets.remove(ticket.number);
+    waiters.remove(ticket);
+  }
+
+  /** @return The position of a waiting ticket, starting with 1. */
+  public synchronized int getPosition(Ticket ticket) {
+    int position = 1;
+    for (Ticket other : waiting) {
+      if (ORDER.compare(other, ticket) < 0) {
+        position++;
+      }
+    }
+    return position;
+  }
+
+  public synchronized int getWaiting() {
+    return waiting.size();
+  }
+
+  /** Releases the lock held by a session, granting it to the next ticket. */
+  public synchronized void release(String sessionId) {
+    lock.unlock(sessionId);
+    grant();
+  }
+
+  /**
+   * Grants the lock to the first waiting ticket, if the lock is free or its
+   * holder stopped heart beating.
+   */
+  private void grant() {
+    dropAbandoned();
+    if (waiting.isEmpty()) {
+      return;
+    }
+    if (lock.isLocked()) {
+      if (now() - lock.getLastHeartBeat() <= sessionTimeout) {
+        return;
+      }
+      logger.debug("forcing unlock of stalled session {}", lock.getSessionId());
+      lock.forceUnlock();
+    }
+    String sessionId = UUID.randomUUID().toString();
+    if (!lock.tryLock(sessionId)) {
+      // locked outside of the queue, the ticket waits for that session instead.
+      logger.debug("lock taken by {} while granting {}", lock.getSessionId(), waiting.peek());
+      return;
+    }
+    Ticket next = waiting.poll();
+    next.sessionId = sessionId;
+    // the client starts heart beating once it picks the session up.
+    lock.setLastHeartBeat(now());
+    logger.debug("granted {}", next);
+    notifyAll();
+    Continuation waiter = waiters.remove(next);
+    if (waiter != null) {
+      waiter.resume();
+    }
+  }
+
+  private void dropAbandoned() {
+    long now = now();
+    for (Iterator<Ticket> i = tickets.values().iterator(); i.hasNext();) {
+      Ticket ticket = i.next();
+      if (now - ticket.lastSeen > ABANDON_TIMEOUT) {
+        logger.debug("dropping abandoned {}", ticket);
+        waiting.remove(ticket);
+        waiters.remove(ticket);
+        i.remove();
+      }
+    }
+  }
+
+  private long now() {
+    return time.now().getMillis();
+  }
+}
@@ -23,6 +23,7 @@ import static java.lang.String.format;
 
 import com.google.common.base.Objects;
 import com.google.jstestdriver.Response.ResponseType;
+import com.google.jstestdriver.commands.FileSyncCommand;
 import com.google.jstestdriver.commands.NoopCommand;
 import com.google.jstestdriver.model.HandlerPathPrefix;
 import com.google.jstestdriver.runner.RunnerType;
@@ -30,15 +31,21 @@ import com.google.jstestdriver.server.handlers.pages.PageType;
 import com.google.jstestdriver.server.handlers.pages.SlavePageRequest;
 
 import org.joda.time.Instant;
+import org.mortbay.util.ajax.Continuation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -80,7 +87,7 @@ public class SlaveBrowser {
   private final Time time;
   private final String id;
   private final BrowserInfo browserInfo;
-  private final BlockingQueue<Command> commandsToRun = new LinkedBlockingQueue<Command>();
+  private final BlockingDeque<Command> commandsToRun = new LinkedBlockingDeque<Command>();
   private long dequeueTimeout = 10;
   private TimeUnit timeUnit = TimeUnit.SECONDS;
   private AtomicReference<Instant> lastHeartbeat;
@@ -90,6 +97,16 @@ public class SlaveBrowser {
   private AtomicReference<Command> lastCommandDequeued = new AtomicReference<Command>(null);
   private final long timeout;
   private final Lock lock = new Lock();
+  private final SessionQueue sessionQueue;
+  private final AtomicLong responseBatches = new AtomicLong();
+  private final AtomicLong batchedResponses = new AtomicLong();
+  private final AtomicLong batchLatency = new AtomicLong();
+  private final AtomicLong maxBatchLatency = new AtomicLong();
+  private final FileLoadBudget fileLoadBudget = new FileLoadBudget();
+  /** Requests suspended until a command is queued. */
+  private final List<Continuation> commandWaiters = new LinkedList<Continuation>();
+  /** Requests suspended until a response arrives. */
+  private final List<Continuation> responseWaiters = new LinkedList<Continuation>();
 
 
   private final HandlerPathPrefix prefix;
@@ -114,6 +131,7 @@ public class SlaveBrowser {
     this.type = type;
     this.state = new AtomicReference<BrowserState>(state);
     lastHeartbeat = new AtomicReference<Instant>(new Instant(0));
+    this.sessionQueue = new SessionQueue(lock, time, SESSION_TIMEOUT);
   }
 
   public String getId() {
@@ -128,8 +146,14 @@ public class SlaveBrowser {
     return success;
   }
   
+  /** Releases the session, handing the browser to the next client queued for it. */
   public void unlock(String sessionId) {
-    lock.unlock(sessionId);
+    sessionQueue.release(sessionId);
+  }
+
+  /** The clients waiting for a session on this browser. */
+  public SessionQueue getSessionQueue() {
+    return sessionQueue;
   }
 
   public void forceUnlock() {
@@ -145,10 +169,17 @@ public class SlaveBrowser {
   }
 
   public void createCommand(String data) {
-    try {
-      commandsToRun.put(new Command(data));
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
+    createCommand(new Command(data));
+  }
+
+  public void createCommand(Command command) {
+    synchronized (commandWaiters) {
+      try {
+        commandsToRun.put(command);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      resume(commandWaiters);
     }
   }
 
@@ -156,20 +187,81 @@ public class SlaveBrowser {
     try {
       Command command = commandsToRun.poll(dequeueTimeout, timeUnit);
       LOGGER.trace("dequeue {}", command);
-
-      synchronized (this) {
-        if (command != null) {
-          commandRunning.set(command);
-          lastCommandDequeued.set(command);
-          return command;
-        }
+      // expand file syncs in place, now that the commands ahead have run.
+      while (command instanceof FileSyncCommand) {
+        expand((FileSyncCommand) command);
+        command = commandsToRun.poll(dequeueTimeout, timeUnit);
+        LOGGER.trace("dequeue expanded {}", command);
       }
+      return startCommand(command);
     } catch (InterruptedException e) {
       // The server was killed
     }
     return new NoopCommand();
   }
 
+  /**
+   * Dequeues the next command without holding the calling thread. If no
+   * command is queued the request is suspended, by throwing Jetty's
+   * RetryRequest, until one is queued or the dequeue timeout passes. The
+   * resumed request must call this again with the same continuation.
+   *
+   * @return The command, or a {@link NoopCommand} if the dequeue timed out.
+   */
+  public Command dequeueCommand(Continuation continuation) {
+    Command command;
+    synchronized (commandWaiters) {
+      commandWaiters.remove(continuation);
+      command = pollCommand();
+      if (command == null) {
+        commandWaiters.add(continuation);
+        continuation.suspend(timeUnit.toMillis(dequeueTimeout));
+        commandWaiters.remove(continuation);
+        command = pollCommand();
+      }
+    }
+    return startCommand(command);
+  }
+
+  private Command pollCommand() {
+    Command command = commandsToRun.poll();
+    while (command instanceof FileSyncCommand) {
+      expand((FileSyncCommand) command);
+      command = commandsToRun.poll();
+    }
+    LOGGER.trace("dequeue {}", command);
+    return command;
+  }
+
+  /**
+   * Replaces a file sync with its commands. A sync that fails is dropped, so
+   * the browser keeps polling for the commands after it.
+   */
+  private void expand(FileSyncCommand command) {
+    List<Command> expanded;
+    try {
+      expanded = command.expand(this);
+    } catch (RuntimeException e) {
+      LOGGER.error("Unable to sync the files of {} on {}: {}",
+          new Object[] {command, browserInfo, e});
+      return;
+    }
+    for (int i = expanded.size() - 1; i >= 0; i--) {
+      commandsToRun.addFirst(expanded.get(i));
+    }
+  }
+
+  private Command startCommand(Command command) {
+    synchronized (this) {
+      if (command != null) {
+        commandRunning.set(command);
+        lastCommandDequeued.set(command);
+        return command;
+      }
+    }
+    return new NoopCommand();
+  }
+
   public Command getLastDequeuedCommand() {
     return lastCommandDequeued.get();
   }
@@ -239,23 +331,130 @@ public class SlaveBrowser {
       StreamMessage message = responses.poll(POLL_RESPONSE_TIMEOUT, TimeUnit.SECONDS);
       if (message == null) {
         LOGGER.trace("responses size {}", responses.size());
-        message = new StreamMessage(false, new Response(ResponseType.UNKNOWN.name(), "{}", browserInfo, "", 0l));
+        return idleMessage();
       } else {
         LOGGER.trace("returning type {}", message.getResponse().getResponseType());
       }
       return message;
     } catch (InterruptedException e) {
       LOGGER.error("Exception during poll {}", e);
-      return new StreamMessage(false, new Response(ResponseType.UNKNOWN.name(), "{}", browserInfo, "", 0l));
+      return idleMessage();
     }
   }
 
+  /**
+   * Takes the next response without holding the calling thread. If none is
+   * queued the request is suspended, by throwing Jetty's RetryRequest, until
+   * a response arrives or the poll times out. The resumed request must call
+   * this again with the same continuation.
+   *
+   * @return The response, or an idle UNKNOWN response if the poll timed out.
+   */
+  public StreamMessage getResponse(Continuation continuation) {
+    StreamMessage message;
+    synchronized (responseWaiters) {
+      responseWaiters.remove(continuation);
+      message = responses.poll();
+      if (message == null) {
+        responseWaiters.add(continuation);
+        continuation.suspend(TimeUnit.SECONDS.toMillis(POLL_RESPONSE_TIMEOUT));
+        responseWaiters.remove(continuation);
+        message = responses.poll();
+      }
+    }
+    return message == null ? idleMessage() : message;
+  }
+
+  /** @return The next response, or null if none is queued. */
+  public StreamMessage pollResponse() {
+    return responses.poll();
+  }
+
+  private StreamMessage idleMessage() {
+    return new StreamMessage(false, new Response(ResponseType.UNKNOWN.name(), "{}", browserInfo, "", 0l));
+  }
+
   public void addResponse(Response response, boolean isLast) {
     if (isLast) {
       commandRunning.set(null);
     }
     LOGGER.debug("adding response type {} done: {}", response.getResponseType(), isLast);
-    responses.offer(new StreamMessage(isLast, response));
+    synchronized (responseWaiters) {
+      responses.offer(new StreamMessage(isLast, response));
+      resume(responseWaiters);
+    }
+  }
+
+  /**
+   * Adds several responses at once, in order.
+   */
+  public void addResponses(Collection<StreamMessage> messages) {
+    for (StreamMessage message : messages) {
+      if (message.isLast()) {
+        commandRunning.set(null);
+      }
+    }
+    LOGGER.debug("adding {} responses", messages.size());
+    synchronized (responseWaiters) {
+      responses.addAll(messages);
+      resume(responseWaiters);
+    }
+  }
+
+  /** Resumes and forgets the suspended requests. Called holding the waiters. */
+  private void resume(List<Continuation> waiters) {
+    for (Continuation waiter : waiters) {
+      waiter.resume();
+    }
+    waiters.clear();
+  }
+
+  /**
+   * Records a batch of responses received from the browser.
+   * @param size The number of responses in the batch.
+   * @param latency Milliseconds the oldest response in the batch waited in the browser.
+   */
+  public void recordResponseBatch(int size, long latency) {
+    responseBatches.incrementAndGet();
+    batchedResponses.addAndGet(size);
+    batchLatency.addAndGet(latency);
+    long max;
+    do {
+      max = maxBatchLatency.get();
+    } while (latency > max && !maxBatchLatency.compareAndSet(max, latency));
+  }
+
+  /** The number of response batches received from the browser. */
+  public long getResponseBatchCount() {
+    return responseBatches.get();
+  }
+
+  /** The mean number of responses per batch. */
+  public double getAverageResponseBatchSize() {
+    long batches = responseBatches.get();
+    return batches == 0 ? 0 : (double) batchedResponses.get() / batches;
+  }
+
+  /** The mean time, in milliseconds, a batch was held in the browser. */
+  public double getAverageResponseBatchLatency() {
+    long batches = responseBatches.get();
+    return batches == 0 ? 0 : (double) batchLatency.get() / batches;
+  }
+
+  /** The longest time, in milliseconds, a batch was held in the browser. */
+  public long getMaxResponseBatchLatency() {
+    return maxBatchLatency.get();
+  }
+
+  /**
+   * Records a chunk of files loaded by the browser, and updates the upload
+   * budget advertised in the {@link BrowserInfo}.
+   * @param bytes The total length of the loaded files.
+   * @param elapsed Milliseconds the browser spent loading them.
+   */
+  public void recordFileLoad(long bytes, long elapsed) {
+    fileLoadBudget.record(bytes, elapsed);
+    browserInfo.setUploadBytes(fileLoadBudget.getBytes());
   }
 
   public void clearResponseQueue() {
@@ -270,6 +469,15 @@ public class SlaveBrowser {
     return commandRunning.get();
   }
 
+  /**
+   * Indicates if the last response to the running command ends the client
+   * stream, rather than being followed by the responses to a later command.
+   */
+  public boolean isRunningStreamEndingCommand() {
+    Command command = commandRunning.get();
+    return command == null || command.endsStream();
+  }
+
   public Command peekCommand() {
     return commandsToRun.peek();
   }
@@ -282,6 +490,25 @@ public class SlaveBrowser {
     }
   }
 
+  /**
+   * Marks the browser dead, and wakes the requests waiting for its responses
+   * so they report it now rather than when their poll times out.
+   */
+  public void markDead() {
+    state.set(BrowserState.DEAD);
+    LOGGER.debug("Browser dead: {}", toString());
+    synchronized (responseWaiters) {
+      // wakes a thread blocked polling the responses.
+      responses.offer(idleMessage());
+      resume(responseWaiters);
+    }
+  }
+
+  /** The milliseconds without a heart beat before the browser is dead, or -1 for never. */
+  public long getTimeout() {
+    return timeout;
+  }
+
   public boolean isAlive() {
     boolean alive = receivedHeartbeat()
         && ((time.now().getMillis() - lastHeartbeat.get().getMillis() < timeout) || timeout == -1);
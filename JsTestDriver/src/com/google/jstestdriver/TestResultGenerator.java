@@ -18,9 +18,7 @@ package com.google.jstestdriver;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
-import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import com.google.jstestdriver.FailureParser.Failure;
 import com.google.jstestdriver.Response.ResponseType;
@@ -40,9 +38,6 @@ public class TestResultGenerator {
 
   private static String NEW_LINE = System.getProperty("line.separator");
 
-  private final Gson gson = new Gson();
-  
-
   private final FailureParser failureParser;
   
   /**
@@ -74,8 +69,7 @@ public class TestResultGenerator {
         return Collections.<TestResult> emptyList();
       }
 
-      Collection<TestResult> results = gson.fromJson(response.getResponse(),
-          new TypeToken<Collection<TestResult>>() {}.getType());
+      Collection<TestResult> results = response.parseResponse();
 
       for (TestResult result : results) {
         BrowserInfo browserInfo = response.getBrowser();
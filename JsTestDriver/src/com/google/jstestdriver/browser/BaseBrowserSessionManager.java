@@ -6,6 +6,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.HeartBeatManager;
 import com.google.jstestdriver.Server;
+import com.google.jstestdriver.SessionQueue;
 import com.google.jstestdriver.util.Sleeper;
 
 import org.slf4j.Logger;
@@ -23,40 +24,59 @@ public class BaseBrowserSessionManager implements BrowserSessionManager {
   private final String baseUrl;
   private final HeartBeatManager heartBeatManager;
   private final Sleeper sleeper;
+  private final int priority;
 
   @Inject
   public BaseBrowserSessionManager(Server server, @Named("server") String baseUrl,
-      HeartBeatManager heartBeatManager, Sleeper sleeper) {
+      HeartBeatManager heartBeatManager, Sleeper sleeper,
+      @Named("sessionPriority") int priority) {
     this.server = server;
     this.baseUrl = baseUrl;
     this.heartBeatManager = heartBeatManager;
     this.sleeper = sleeper;
+    this.priority = priority;
   }
 
   /**
    * {@inheritDoc}
+   *
+   * Queues for the browser on the server, which holds each request until the
+   * session is granted or a while has passed, answering "QUEUED ticket
+   * position" in the latter case. A server that doesn't queue answers
+   * "FAILED" while the browser is in use, in which case the start is retried.
    */
   public String startSession(String browserId) {
-    String sessionId = server.startSession(baseUrl, browserId);
-
-    if ("FAILED".equals(sessionId)) {
-      while ("FAILED".equals(sessionId)) {
+    String response = queue(browserId);
+    while (response.startsWith(SessionQueue.QUEUED) || SessionQueue.FAILED.equals(response)) {
+      if (SessionQueue.FAILED.equals(response)) {
+        logger.error("Currently waiting for browser: {}, with is currently in use. ", browserId);
         try {
-          logger.error("Currently waiting for browser: {}, with is currently in use. ", browserId);
           sleeper.sleep(WAIT_INTERVAL);
         } catch (InterruptedException e) {
           logger.error("Could not create session for browser: " + browserId);
           throw new RuntimeException("Can't start a session on the server!" + browserId);
         }
-        sessionId = server.startSession(baseUrl, browserId);
+        response = queue(browserId);
+      } else {
+        String[] ticket = response.split(" ");
+        logger.info("Waiting for browser: {}, at position {} in its queue.", browserId,
+            ticket[2]);
+        response = server.fetch(baseUrl + "/fileSet?id=" + browserId + "&session=wait&ticket="
+            + ticket[1]);
       }
     }
+    String sessionId = response;
 
     heartBeatManager.startTimer();
     heartBeatManager.startHeartBeat(baseUrl, browserId, sessionId);
     return sessionId;
   }
 
+  private String queue(String browserId) {
+    return server.fetch(baseUrl + "/fileSet?id=" + browserId + "&session=start&queue=true"
+        + "&priority=" + priority);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -16,15 +16,22 @@
 package com.google.jstestdriver.browser;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.Action;
 import com.google.jstestdriver.BrowserAction;
 import com.google.jstestdriver.BrowserInfo;
 import com.google.jstestdriver.JsTestDriverClient;
+import com.google.jstestdriver.Response;
+import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.ResponseStreamFactory;
 import com.google.jstestdriver.RunTestsAction;
 import com.google.jstestdriver.TestErrors;
+import com.google.jstestdriver.TestResult;
+import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.RunData;
 import com.google.jstestdriver.util.RetryingCallable;
 import com.google.jstestdriver.util.StopWatch;
@@ -32,8 +39,10 @@ import com.google.jstestdriver.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -52,7 +61,7 @@ public class BrowserActionExecutorAction implements Action {
 
   private final JsTestDriverClient client;
   private final List<BrowserAction> actions;
-  private final ExecutorService executor;
+  private final RunnerExecutorFactory executorFactory;
   private final Set<BrowserRunner> browserRunners;
   private final String captureAddress;
   private final long testSuiteTimeout;
@@ -61,23 +70,43 @@ public class BrowserActionExecutorAction implements Action {
 
   private final BrowserSessionManager sessionManager;
 
+  private final boolean shard;
+
+  private final String historyPath;
+
+  private final boolean prefetch;
+
+  private final TestImpact testImpact;
+
+  private final ResponseStreamFactory responseStreamFactory;
+
   @Inject
   public BrowserActionExecutorAction(JsTestDriverClient client,
       List<BrowserAction> actions,
-      ExecutorService executor,
+      RunnerExecutorFactory executorFactory,
       Set<BrowserRunner> browserRunners,
       @Named("captureAddress") String captureAddress,
       @Named("testSuiteTimeout") long testTimeout,
       StopWatch stopWatch,
-      BrowserSessionManager sessionManager) {
+      BrowserSessionManager sessionManager,
+      @Named("shard") boolean shard,
+      @Named("testCaseHistory") String historyPath,
+      @Named("prefetchTestCases") boolean prefetch,
+      TestImpact testImpact,
+      ResponseStreamFactory responseStreamFactory) {
     this.client = client;
     this.actions = actions;
-    this.executor = executor;
+    this.executorFactory = executorFactory;
     this.browserRunners = browserRunners;
     this.captureAddress = captureAddress;
     this.testSuiteTimeout = testTimeout;
     this.stopWatch = stopWatch;
     this.sessionManager = sessionManager;
+    this.shard = shard;
+    this.historyPath = historyPath;
+    this.prefetch = prefetch;
+    this.testImpact = testImpact;
+    this.responseStreamFactory = responseStreamFactory;
   }
 
   @Override
@@ -93,16 +122,42 @@ public class BrowserActionExecutorAction implements Action {
     // TODO(corysmith): Change the threaded action runner to
     // return useful information about a run.
     List<Callable<Collection<ResponseStream>>> runners = Lists.newLinkedList();
-    for (BrowserInfo browserInfo : browsers) {
-      runners.add(new BrowserActionRunner(browserInfo.getId().toString(),
-          client,
-          actions,
-          stopWatch,
-          runData.getTestCases(),
-          sessionManager));
-      logger.debug("Queueing BrowserActionRunner {} for {}.", actions, browserInfo);
+    TestCaseHistory history =
+        historyPath == null || historyPath.length() == 0 ? null : new TestCaseHistory(
+            new File(historyPath));
+    List<JstdTestCase> affected = runData.getTestCases();
+    if (testImpact.isEnabled() && getRunTestsAction() != null) {
+      affected = Lists.newArrayList();
+      List<JstdTestCase> unaffected = Lists.newArrayList();
+      for (JstdTestCase testCase : runData.getTestCases()) {
+        (testImpact.isAffected(testCase, browsers) ? affected : unaffected).add(testCase);
+      }
+      logger.info("Running the {} of {} test cases affected by changed files.", affected.size(),
+          runData.getTestCases().size());
+      runData = reportCachedPasses(runData, unaffected, browsers);
+    }
+    Map<String, TestCasePool> pools = Maps.newLinkedHashMap();
+    for (List<BrowserInfo> pool : pool(browsers)) {
+      TestCasePool testCases = history != null && pool.size() > 1
+          ? TestCasePool.longestFirst(affected, pool.size(), history)
+          : TestCasePool.dealt(affected, pool.size(), history);
+      pools.put(pool.get(0).toString(), testCases);
+      for (int i = 0; i < pool.size(); i++) {
+        BrowserInfo browserInfo = pool.get(i);
+        runners.add(new BrowserActionRunner(browserInfo.getId().toString(),
+            client,
+            actions,
+            stopWatch,
+            testCases,
+            i,
+            prefetch,
+            sessionManager));
+        logger.debug("Queueing BrowserActionRunner {} for {}.", actions, browserInfo);
+      }
     }
     for (BrowserRunner runner : browserRunners) {
+      // the browser isn't captured yet, so nothing tells which test cases
+      // already passed in it: it runs them all.
       String browserId = client.getNextBrowserId();
       final BrowserActionRunner actionRunner =
           new BrowserActionRunner(
@@ -110,13 +165,18 @@ public class BrowserActionExecutorAction implements Action {
             client,
             actions,
             stopWatch,
-            runData.getTestCases(),
+            TestCasePool.dealt(runData.getTestCases(), 1, history),
+            0,
+            prefetch,
             sessionManager);
       runners.add(createBrowserManagedRunner(runData, runner, browserId, actionRunner));
       logger.debug("Queueing BrowserActionRunner {} for {}.", actions, runner);
     }
     List<Throwable> exceptions = Lists.newLinkedList();
     long currentTimeout = testSuiteTimeout;
+    // an executor per run, so nothing outlives the run and nothing is shared
+    // with other runs.
+    ExecutorService executor = executorFactory.create(runners.size());
     try {
       final List<Future<Collection<ResponseStream>>> results =
           executor.invokeAll(runners, currentTimeout, TimeUnit.SECONDS);
@@ -138,9 +198,14 @@ public class BrowserActionExecutorAction implements Action {
     } catch (InterruptedException e) {
       throw new RuntimeException(e);
     } finally {
-      // something isn't working....
+      // interrupts the runners left over by the timeout.
       executor.shutdownNow();
     }
+    if (history != null) {
+      history.save();
+      reportMakespans(pools);
+    }
+    testImpact.save();
     logger.debug("Finished BrowserActions {}.", actions);
     if (!exceptions.isEmpty()) {
       throw new TestErrors("Failures during test run.", exceptions);
@@ -153,6 +218,62 @@ public class BrowserActionExecutorAction implements Action {
     return runData;
   }
 
+  /**
+   * Reports the tests of the test cases that weren't run as passed in each
+   * browser, as they were when they last ran.
+   */
+  private RunData reportCachedPasses(RunData runData, List<JstdTestCase> unaffected,
+      Collection<BrowserInfo> browsers) {
+    for (BrowserInfo browser : browsers) {
+      List<TestResult> results = Lists.newArrayList();
+      for (JstdTestCase testCase : unaffected) {
+        results.addAll(testImpact.getCachedPasses(testCase, browser));
+      }
+      if (results.isEmpty()) {
+        continue;
+      }
+      ResponseStream stream =
+          responseStreamFactory.getRunTestsActionResponseStream(browser.getId().toString());
+      stream.stream(new Response(ResponseType.TEST_RESULT.name(), new Gson().toJson(results),
+          browser, "", 0));
+      runData = runData.recordResponse(stream);
+    }
+    return runData;
+  }
+
+  /** Logs how long the pools that were dealt from the history took, against the prediction. */
+  private void reportMakespans(Map<String, TestCasePool> pools) {
+    for (Map.Entry<String, TestCasePool> entry : pools.entrySet()) {
+      TestCasePool pool = entry.getValue();
+      if (pool.getPredictedMakespan() >= 0) {
+        logger.info("{} browsers of {}: predicted makespan {}ms, actual {}ms.",
+            new Object[] {pool.size(), entry.getKey(), pool.getPredictedMakespan(),
+                pool.getMakespan()});
+      }
+    }
+  }
+
+  /**
+   * Groups the browsers that share their test cases. When sharding, browsers
+   * of the same name and version form a pool; otherwise each browser runs
+   * every test case by itself.
+   */
+  private Collection<List<BrowserInfo>> pool(Collection<BrowserInfo> browsers) {
+    Map<String, List<BrowserInfo>> pools = Maps.newLinkedHashMap();
+    for (BrowserInfo browser : browsers) {
+      String key = shard
+          ? browser.getName() + " " + browser.getVersion()
+          : browser.getId().toString();
+      List<BrowserInfo> pool = pools.get(key);
+      if (pool == null) {
+        pool = Lists.newArrayList();
+        pools.put(key, pool);
+      }
+      pool.add(browser);
+    }
+    return pools.values();
+  }
+
   // TODO(corysmith): Pull this into a factory.
   private Callable<Collection<ResponseStream>> createBrowserManagedRunner(RunData runData, BrowserRunner runner,
       String browserId, BrowserActionRunner actionRunner) {
@@ -43,18 +43,38 @@ public class BrowserActionRunner implements Callable<Collection<ResponseStream>>
 
   private final StopWatch stopWatch;
 
-  private final List<JstdTestCase> testCases;
+  private final TestCasePool testCases;
+
+  private final int index;
+
+  private final boolean prefetch;
 
   // TODO(corysmith): enable session manager.
   private final BrowserSessionManager sessionManager;
 
   public BrowserActionRunner(String id, JsTestDriverClient client, List<BrowserAction> actions,
       StopWatch stopWatch, List<JstdTestCase> testCases, BrowserSessionManager sessionManager) {
+    this(id, client, actions, stopWatch, TestCasePool.dealt(testCases, 1), 0, false,
+        sessionManager);
+  }
+
+  /**
+   * Runs the test cases a browser takes from a pool shared with other
+   * browsers.
+   * @param index The index of the browser in the pool.
+   * @param prefetch Whether to load the next test case into the browser while
+   *     the results of the current one are read.
+   */
+  public BrowserActionRunner(String id, JsTestDriverClient client, List<BrowserAction> actions,
+      StopWatch stopWatch, TestCasePool testCases, int index, boolean prefetch,
+      BrowserSessionManager sessionManager) {
     this.id = id;
     this.client = client;
     this.actions = actions;
     this.stopWatch = stopWatch;
     this.testCases = testCases;
+    this.index = index;
+    this.prefetch = prefetch;
     this.sessionManager = sessionManager;
   }
 
@@ -63,16 +83,37 @@ public class BrowserActionRunner implements Callable<Collection<ResponseStream>>
     Collection<ResponseStream> responses = Lists.newArrayList();
     String sessionId = sessionManager.startSession(id);
     logger.debug("start session on {} with id {}", id, sessionId);
-    for (JstdTestCase testCase : testCases) {
-      for (BrowserAction action : actions) {
+    try {
+      runTestCases(responses);
+    } finally {
+      // also when the run failed or was cancelled, so the browser is free
+      // for the next client.
+      logger.debug("stopping session on {} with id {}", id, sessionId);
+      sessionManager.stopSession(sessionId, id);
+    }
+    return responses;
+  }
+
+  private void runTestCases(Collection<ResponseStream> responses) {
+    JstdTestCase testCase = testCases.next(index);
+    while (testCase != null) {
+      // loaded ahead, so the browser can run it as soon as this one is done.
+      // it stays in the pool, so another browser can still take it, and it
+      // isn't lost if this browser fails.
+      JstdTestCase next = prefetch ? testCases.peek(index) : null;
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < actions.size(); i++) {
+        BrowserAction action = actions.get(i);
+        if (next != null && i == actions.size() - 1) {
+          client.prefetch(id, next);
+        }
         stopWatch.start("run %s", action);
         logger.info("Running BrowserAction {} with {}", action, testCase);
         responses.add(action.run(id, client, null, testCase));
         stopWatch.stop("run %s", action);
       }
+      testCases.finished(testCase, System.currentTimeMillis() - start);
+      testCase = testCases.next(index);
     }
-    logger.debug("stopping session on {} with id {}", id, sessionId);
-    sessionManager.stopSession(sessionId, id);
-    return responses;
   }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.CapturedBrowsers;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.Time;
+import com.google.jstestdriver.browser.BrowserCaptureEvent.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.TimerTask;
+
+/**
+ * Declares captured browsers dead once they miss their heart beats, and
+ * removes them from the CapturedBrowsers if there is no command running.
+ *
+ * Browsers are kept in a hashed timing wheel, in the slot of the tick their
+ * timeout ends on. Heart beats don't touch the wheel: when a slot comes up,
+ * browsers that heart beat meanwhile are moved to the slot of their new
+ * deadline, and the others are dead. Each tick only visits the browsers due
+ * in it, rather than scanning all of them.
+ */
+public class BrowserLivenessWheel extends TimerTask implements Observer {
+  private static final Logger logger = LoggerFactory.getLogger(BrowserLivenessWheel.class);
+
+  /** A tracked browser. */
+  private static final class Entry {
+    final SlaveBrowser browser;
+    /** The earliest time the browser can be declared dead. */
+    long notBefore;
+
+    Entry(SlaveBrowser browser, long notBefore) {
+      this.browser = browser;
+      this.notBefore = notBefore;
+    }
+
+    long deadline() {
+      return Math.max(browser.getLastHeartbeat().getMillis() + browser.getTimeout(), notBefore);
+    }
+  }
+
+  private final CapturedBrowsers capturedBrowsers;
+  private final Time time;
+  private final long tick;
+  private final List<List<Entry>> slots;
+  /** The last tick whose slot was visited. */
+  private long currentTick;
+
+  /**
+   * @param capturedBrowsers The browsers to track, including the ones
+   *     captured later.
+   * @param time The source of the heart beat times.
+   * @param tick The milliseconds between runs, which bounds how late a dead
+   *     browser is noticed.
+   * @param slots The number of slots, ideally covering a browser timeout.
+   */
+  public BrowserLivenessWheel(CapturedBrowsers capturedBrowsers, Time time, long tick,
+      int slots) {
+    this.capturedBrowsers = capturedBrowsers;
+    this.time = time;
+    this.tick = tick;
+    this.slots = Lists.newArrayListWithCapacity(slots);
+    for (int i = 0; i < slots; i++) {
+      this.slots.add(Lists.<Entry>newArrayList());
+    }
+    this.currentTick = now() / tick;
+    for (SlaveBrowser browser : capturedBrowsers.getSlaveBrowsers()) {
+      track(browser);
+    }
+  }
+
+  /** Tracks a browser, giving it a timeout to send its first heart beat. */
+  public synchronized void track(SlaveBrowser browser) {
+    if (browser.getTimeout() < 0) {
+      // never times out.
+      return;
+    }
+    schedule(new Entry(browser, now() + browser.getTimeout()));
+  }
+
+  /** Tracks the newly captured browsers. Removed browsers are dropped lazily. */
+  public void update(Observable o, Object arg) {
+    BrowserCaptureEvent event = (BrowserCaptureEvent) arg;
+    if (event.event == Event.CONNECTED) {
+      track(event.getBrowser());
+    }
+  }
+
+  /** Visits the slots of the ticks that passed since the last run. */
+  @Override
+  public void run() {
+    long now = now();
+    List<Entry> expired = Lists.newArrayList();
+    synchronized (this) {
+      long nowTick = now / tick;
+      long first = Math.max(currentTick + 1, nowTick - slots.size() + 1);
+      currentTick = nowTick;
+      for (long t = first; t <= nowTick; t++) {
+        List<Entry> due = slots.set(slotOf(t), Lists.<Entry>newArrayList());
+        for (Entry entry : due) {
+          if (capturedBrowsers.getBrowser(entry.browser.getId()) != entry.browser) {
+            continue;
+          }
+          if (entry.deadline() > now) {
+            schedule(entry);
+          } else {
+            expired.add(entry);
+          }
+        }
+      }
+    }
+    // outside of the wheel, as removing a browser notifies the observers.
+    for (Entry entry : expired) {
+      expire(entry, now);
+    }
+  }
+
+  private void expire(Entry entry, long now) {
+    SlaveBrowser browser = entry.browser;
+    browser.markDead();
+    if (browser.isCommandRunning()) {
+      // the client waiting on the command reports and removes it. Check again
+      // in case it stopped waiting.
+      logger.debug("Dead {} is running a command.", browser);
+      entry.notBefore = now + browser.getTimeout();
+      synchronized (this) {
+        schedule(entry);
+      }
+    } else {
+      logger.debug("Reaping dead {}.", browser);
+      capturedBrowsers.removeSlave(browser.getId());
+    }
+  }
+
+  /** Puts an entry in the slot of the first tick at or after its deadline. */
+  private void schedule(Entry entry) {
+    long deadlineTick = (entry.deadline() + tick - 1) / tick;
+    slots.get(slotOf(Math.max(deadlineTick, currentTick + 1))).add(entry);
+  }
+
+  private int slotOf(long tick) {
+    return (int) (tick % slots.size());
+  }
+
+  private long now() {
+    return time.now().getMillis();
+  }
+}
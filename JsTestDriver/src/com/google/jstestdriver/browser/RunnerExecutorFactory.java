@@ -0,0 +1,34 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.inject.ImplementedBy;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the executor that runs the {@link BrowserActionRunner}s of a single
+ * run. The caller owns the executor and shuts it down once the run is over.
+ */
+@ImplementedBy(ThreadRunnerExecutorFactory.class)
+public interface RunnerExecutorFactory {
+
+  /**
+   * @param runners The number of runners, each of which holds a thread while
+   *     its browser runs.
+   */
+  public ExecutorService create(int runners);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * The milliseconds each test case took to run in earlier runs, kept in a
+ * local json file by test case id. Used to predict how long a test case will
+ * take, so the longest can be started first.
+ */
+public class TestCaseHistory {
+  private static final Logger logger = LoggerFactory.getLogger(TestCaseHistory.class);
+
+  /** The duration predicted for test cases that never ran, without any history. */
+  static final long UNKNOWN_DURATION = 1;
+
+  private final File file;
+  private final Map<String, Long> durations;
+
+  public TestCaseHistory(File file) {
+    this.file = file;
+    this.durations = load(file);
+  }
+
+  private static Map<String, Long> load(File file) {
+    Map<String, Long> durations = Maps.newHashMap();
+    if (!file.isFile()) {
+      return durations;
+    }
+    try {
+      Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+      try {
+        Map<String, Long> loaded =
+            new Gson().fromJson(reader, new TypeToken<Map<String, Long>>() {}.getType());
+        if (loaded != null) {
+          durations.putAll(loaded);
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to read the test case history {}: {}", file, e);
+    } catch (JsonParseException e) {
+      logger.warn("Ignoring the unreadable test case history {}: {}", file, e);
+    }
+    return durations;
+  }
+
+  /**
+   * Records a run of a test case. Runs on several browsers, and across runs,
+   * are averaged with the earlier ones.
+   */
+  public synchronized void record(String id, long millis) {
+    Long previous = durations.get(id);
+    durations.put(id, previous == null ? millis : (previous + millis) / 2);
+  }
+
+  /** @return The recorded milliseconds of a test case, or null if it never ran. */
+  public synchronized Long getDuration(String id) {
+    return durations.get(id);
+  }
+
+  /**
+   * Predicts the milliseconds a test case will take: its recorded duration,
+   * or the mean of the recorded durations if it never ran.
+   */
+  public synchronized long predict(JstdTestCase testCase) {
+    Long duration = durations.get(testCase.getId());
+    if (duration != null) {
+      return duration;
+    }
+    if (durations.isEmpty()) {
+      return UNKNOWN_DURATION;
+    }
+    long total = 0;
+    for (long recorded : durations.values()) {
+      total += recorded;
+    }
+    return Math.max(total / durations.size(), UNKNOWN_DURATION);
+  }
+
+  /**
+   * Writes the history to a temporary file that then replaces the file, so
+   * an interrupted write leaves the previous history.
+   */
+  public synchronized void save() {
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+      try {
+        new Gson().toJson(durations, writer);
+      } finally {
+        writer.close();
+      }
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        throw new IOException("Unable to replace " + file);
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to save the test case history {}: {}", file, e);
+      temp.delete();
+    }
+  }
+}
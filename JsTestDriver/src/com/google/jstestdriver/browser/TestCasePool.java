@@ -0,0 +1,194 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The test cases shared by a pool of browsers of the same type. Each browser
+ * works through its own share first, in order, and then steals from the end
+ * of the largest remaining share, so a browser that finishes early, or one
+ * that dies, doesn't hold the pool back.
+ *
+ * When a {@link TestCaseHistory} is given, the pool records how long each
+ * test case took, and the shares can be dealt longest first from it.
+ */
+public class TestCasePool {
+
+  private static final Comparator<Prediction> LONGEST_FIRST = new Comparator<Prediction>() {
+    public int compare(Prediction a, Prediction b) {
+      return a.millis > b.millis ? -1 : (a.millis < b.millis ? 1 : 0);
+    }
+  };
+
+  private static final class Prediction {
+    final JstdTestCase testCase;
+    final long millis;
+
+    Prediction(JstdTestCase testCase, long millis) {
+      this.testCase = testCase;
+      this.millis = millis;
+    }
+  }
+
+  private final List<LinkedList<JstdTestCase>> shares;
+  private final TestCaseHistory history;
+  private final long predictedMakespan;
+  private long started = -1;
+  private long finished = -1;
+
+  /**
+   * @param shares The test cases each browser starts with.
+   * @param history Records the durations, or null.
+   * @param predictedMakespan The predicted milliseconds until the pool is
+   *     done, or -1 if there is no prediction.
+   */
+  public TestCasePool(List<List<JstdTestCase>> shares, TestCaseHistory history,
+      long predictedMakespan) {
+    this.shares = Lists.newArrayListWithCapacity(shares.size());
+    for (List<JstdTestCase> share : shares) {
+      this.shares.add(Lists.newLinkedList(share));
+    }
+    this.history = history;
+    this.predictedMakespan = predictedMakespan;
+  }
+
+  public TestCasePool(List<List<JstdTestCase>> shares) {
+    this(shares, null, -1);
+  }
+
+  /** Deals the test cases round robin to a number of browsers. */
+  public static TestCasePool dealt(List<JstdTestCase> testCases, int browsers) {
+    return dealt(testCases, browsers, null);
+  }
+
+  /**
+   * Deals the test cases round robin to a number of browsers, recording their
+   * durations in a history.
+   */
+  public static TestCasePool dealt(List<JstdTestCase> testCases, int browsers,
+      TestCaseHistory history) {
+    List<List<JstdTestCase>> shares = newShares(browsers);
+    for (int i = 0; i < testCases.size(); i++) {
+      shares.get(i % browsers).add(testCases.get(i));
+    }
+    return new TestCasePool(shares, history, -1);
+  }
+
+  /**
+   * Deals the test cases longest first, each to the browser with the least
+   * predicted work so far, so a long test case doesn't start last and hold up
+   * the whole pool.
+   */
+  public static TestCasePool longestFirst(List<JstdTestCase> testCases, int browsers,
+      TestCaseHistory history) {
+    List<Prediction> predictions = Lists.newArrayListWithCapacity(testCases.size());
+    for (JstdTestCase testCase : testCases) {
+      predictions.add(new Prediction(testCase, history.predict(testCase)));
+    }
+    // stable, so test cases without a history keep their order.
+    Collections.sort(predictions, LONGEST_FIRST);
+    List<List<JstdTestCase>> shares = newShares(browsers);
+    long[] loads = new long[browsers];
+    for (Prediction prediction : predictions) {
+      int least = 0;
+      for (int i = 1; i < browsers; i++) {
+        if (loads[i] < loads[least]) {
+          least = i;
+        }
+      }
+      shares.get(least).add(prediction.testCase);
+      loads[least] += prediction.millis;
+    }
+    long makespan = 0;
+    for (long load : loads) {
+      makespan = Math.max(makespan, load);
+    }
+    return new TestCasePool(shares, history, makespan);
+  }
+
+  private static List<List<JstdTestCase>> newShares(int browsers) {
+    List<List<JstdTestCase>> shares = Lists.newArrayListWithCapacity(browsers);
+    for (int i = 0; i < browsers; i++) {
+      shares.add(Lists.<JstdTestCase>newArrayList());
+    }
+    return shares;
+  }
+
+  /**
+   * @param browser The index of the browser in the pool.
+   * @return The next test case for a browser, or null once the pool is empty.
+   */
+  public synchronized JstdTestCase next(int browser) {
+    if (started < 0) {
+      started = System.currentTimeMillis();
+    }
+    JstdTestCase testCase = shares.get(browser).pollFirst();
+    return testCase != null ? testCase : largestShare().pollLast();
+  }
+
+  /**
+   * The test case a browser would take next, left in the pool, so another
+   * browser may still take it first.
+   * @param browser The index of the browser in the pool.
+   * @return The test case, or null if the pool is empty.
+   */
+  public synchronized JstdTestCase peek(int browser) {
+    JstdTestCase testCase = shares.get(browser).peekFirst();
+    return testCase != null ? testCase : largestShare().peekLast();
+  }
+
+  private LinkedList<JstdTestCase> largestShare() {
+    LinkedList<JstdTestCase> largest = null;
+    for (LinkedList<JstdTestCase> share : shares) {
+      if (largest == null || share.size() > largest.size()) {
+        largest = share;
+      }
+    }
+    return largest;
+  }
+
+  /** Records that a browser finished running a test case. */
+  public void finished(JstdTestCase testCase, long millis) {
+    if (history != null) {
+      history.record(testCase.getId(), millis);
+    }
+    synchronized (this) {
+      finished = System.currentTimeMillis();
+    }
+  }
+
+  /** The predicted milliseconds until the pool is done, or -1 if there is no prediction. */
+  public long getPredictedMakespan() {
+    return predictedMakespan;
+  }
+
+  /** The milliseconds from the first test case taken to the last one finished. */
+  public synchronized long getMakespan() {
+    return started < 0 || finished < 0 ? 0 : finished - started;
+  }
+
+  /** The number of browsers in the pool. */
+  public int size() {
+    return shares.size();
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.LoadedFiles;
+import com.google.jstestdriver.Response;
+import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.TestResult;
+import com.google.jstestdriver.model.JstdTestCase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps each source file to the test cases that passed with it, kept in a
+ * local json file, so a run of all tests only runs the test cases affected by
+ * a changed file. A test case is affected when one of its files changed since
+ * it last passed, its files changed, it never passed, or it never ran in one
+ * of the browsers.
+ *
+ * The files of a test case are its resolved plugins, dependencies and tests,
+ * and a file changed when its timestamp did.
+ */
+@Singleton
+public class TestImpact {
+  private static final Logger logger = LoggerFactory.getLogger(TestImpact.class);
+
+  /** The message of the results reported for tests that weren't run again. */
+  public static final String CACHED = "cached";
+
+  /** A test that passed, reported again while its test case is unaffected. */
+  private static class Pass {
+    private String testCaseName;
+    private String testName;
+
+    @SuppressWarnings("unused")
+    Pass() {}
+
+    Pass(String testCaseName, String testName) {
+      this.testCaseName = testCaseName;
+      this.testName = testName;
+    }
+
+    @Override
+    public int hashCode() {
+      return (testCaseName + "." + testName).hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Pass)) return false;
+      Pass other = (Pass) obj;
+      return String.valueOf(testCaseName).equals(String.valueOf(other.testCaseName))
+          && String.valueOf(testName).equals(String.valueOf(other.testName));
+    }
+  }
+
+  /** The contents of the file. */
+  private static class State {
+    /** For each source file, the test cases that passed with it, with its timestamp then. */
+    private Map<String, Map<String, Long>> exercised = Maps.newHashMap();
+    /** For each test case that passed, its tests. */
+    private Map<String, List<Pass>> passes = Maps.newHashMap();
+    /** For each test case that passed, the browsers it passed in. */
+    private Map<String, List<String>> browsers = Maps.newHashMap();
+  }
+
+  /** The runs of a test case in this run of the tests, across browsers. */
+  private static class Run {
+    final JstdTestCase testCase;
+    final Set<Pass> passes = Sets.newLinkedHashSet();
+    final Set<String> browsers = Sets.newTreeSet();
+    int started;
+    int completed;
+    boolean failed;
+
+    Run(JstdTestCase testCase) {
+      this.testCase = testCase;
+    }
+  }
+
+  /**
+   * Records what the browser reports about a test case, passing the responses
+   * on to the stream of the action.
+   */
+  private class Tracker implements ResponseStream {
+    private final Run run;
+    private final ResponseStream stream;
+
+    private Tracker(Run run, ResponseStream stream) {
+      this.run = run;
+      this.stream = stream;
+    }
+
+    public void stream(Response response) {
+      try {
+        stream.stream(response);
+      } catch (RuntimeException e) {
+        fail();
+        throw e;
+      }
+      synchronized (TestImpact.this) {
+        run.browsers.add(key(response.getBrowser()));
+      }
+      switch (response.getResponseType()) {
+        case TEST_RESULT:
+          Collection<TestResult> results = response.parseResponse();
+          record(results);
+          break;
+        case FILE_LOAD_RESULT:
+          LoadedFiles files = response.parseResponse();
+          if (files.hasError()) {
+            fail();
+          }
+          break;
+        case BROWSER_PANIC:
+          fail();
+          break;
+      }
+    }
+
+    public void finish() {
+      stream.finish();
+    }
+
+    private void record(Collection<TestResult> results) {
+      synchronized (TestImpact.this) {
+        for (TestResult result : results) {
+          switch (result.getResult()) {
+            case passed:
+              run.passes.add(new Pass(result.getTestCaseName(), result.getTestName()));
+              break;
+            case started:
+              break;
+            default:
+              run.failed = true;
+          }
+        }
+      }
+    }
+
+    private void fail() {
+      synchronized (TestImpact.this) {
+        run.failed = true;
+      }
+    }
+  }
+
+  private final File file;
+  private final boolean enabled;
+  private final State state;
+  /** The files each test case passed with, the inverse of the exercised map. */
+  private final Map<String, Set<String>> files = Maps.newHashMap();
+  private final Map<String, Run> runs = Maps.newHashMap();
+
+  /**
+   * @param path The file to keep the map in, or empty to run every test case.
+   * @param tests The tests to run. Only runs of all tests are analysed, as
+   *     passes of some tests say nothing about the others.
+   */
+  @Inject
+  public TestImpact(@Named("testImpact") String path, @Named("tests") List<String> tests) {
+    this.file = path == null || path.length() == 0 ? null : new File(path);
+    this.enabled = file != null && tests.size() == 1 && "all".equals(tests.get(0));
+    this.state = enabled ? load(file) : new State();
+    for (Map.Entry<String, Map<String, Long>> exercised : state.exercised.entrySet()) {
+      for (String id : exercised.getValue().keySet()) {
+        filesOf(id).add(exercised.getKey());
+      }
+    }
+  }
+
+  private static State load(File file) {
+    if (!file.isFile()) {
+      return new State();
+    }
+    try {
+      Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+      try {
+        State loaded = new Gson().fromJson(reader, State.class);
+        if (loaded != null && loaded.exercised != null && loaded.passes != null
+            && loaded.browsers != null) {
+          return loaded;
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to read the test impact {}: {}", file, e);
+    } catch (JsonParseException e) {
+      logger.warn("Ignoring the unreadable test impact {}: {}", file, e);
+    }
+    return new State();
+  }
+
+  /** Whether test cases are skipped when unaffected. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether a test case has to run in the browsers.
+   * @param browsers The browsers the test case would run in.
+   */
+  public synchronized boolean isAffected(JstdTestCase testCase, Collection<BrowserInfo> browsers) {
+    String id = testCase.getId();
+    if (!enabled || !state.passes.containsKey(id)) {
+      return true;
+    }
+    List<String> passedIn = state.browsers.get(id);
+    for (BrowserInfo browser : browsers) {
+      if (passedIn == null || !passedIn.contains(key(browser))) {
+        return true;
+      }
+    }
+    Set<String> paths = Sets.newHashSet();
+    for (FileInfo file : testCase) {
+      Map<String, Long> exercised = state.exercised.get(file.getFilePath());
+      Long timestamp = exercised == null ? null : exercised.get(id);
+      // files without a timestamp, like urls, can't be told to be unchanged.
+      if (timestamp == null || file.getTimestamp() <= 0
+          || timestamp.longValue() != file.getTimestamp()) {
+        return true;
+      }
+      paths.add(file.getFilePath());
+    }
+    // a file was removed from the test case.
+    return !paths.equals(filesOf(id));
+  }
+
+  /** The tests of a test case that last passed, reported as passed in a browser. */
+  public synchronized List<TestResult> getCachedPasses(JstdTestCase testCase,
+      BrowserInfo browser) {
+    List<TestResult> results = Lists.newArrayList();
+    List<Pass> passes = state.passes.get(testCase.getId());
+    if (passes != null) {
+      for (Pass pass : passes) {
+        results.add(new TestResult(browser, TestResult.Result.passed.name(), CACHED, "",
+            pass.testCaseName, pass.testName, 0));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Starts tracking a run of a test case in a browser.
+   * @param stream The stream of the action running the tests.
+   * @return A stream that records the results and passes them on, or the
+   *     stream itself if test cases aren't skipped.
+   */
+  public ResponseStream track(JstdTestCase testCase, ResponseStream stream) {
+    if (!enabled) {
+      return stream;
+    }
+    synchronized (this) {
+      Run run = runs.get(testCase.getId());
+      if (run == null) {
+        run = new Run(testCase);
+        runs.put(testCase.getId(), run);
+      }
+      run.started++;
+      return new Tracker(run, stream);
+    }
+  }
+
+  /** Marks the test case of a tracked stream as run to the end in its browser. */
+  public synchronized void complete(ResponseStream tracked) {
+    if (tracked instanceof Tracker) {
+      ((Tracker) tracked).run.completed++;
+    }
+  }
+
+  /**
+   * Maps the files of the test cases that passed in every browser they ran
+   * in, and forgets the test cases that didn't, then writes the map to a
+   * temporary file that replaces the file.
+   */
+  public synchronized void save() {
+    if (!enabled) {
+      return;
+    }
+    int passed = 0;
+    for (Run run : runs.values()) {
+      String id = run.testCase.getId();
+      forget(id);
+      if (!run.failed && run.completed == run.started) {
+        map(run);
+        passed++;
+      }
+    }
+    logger.info("{} of {} test cases passed, mapped to their files.", passed, runs.size());
+    runs.clear();
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+      try {
+        new Gson().toJson(state, writer);
+      } finally {
+        writer.close();
+      }
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        throw new IOException("Unable to replace " + file);
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to save the test impact {}: {}", file, e);
+      temp.delete();
+    }
+  }
+
+  private void map(Run run) {
+    String id = run.testCase.getId();
+    for (FileInfo file : run.testCase) {
+      Map<String, Long> exercised = state.exercised.get(file.getFilePath());
+      if (exercised == null) {
+        exercised = Maps.newHashMap();
+        state.exercised.put(file.getFilePath(), exercised);
+      }
+      exercised.put(id, file.getTimestamp());
+      filesOf(id).add(file.getFilePath());
+    }
+    state.passes.put(id, Lists.newArrayList(run.passes));
+    state.browsers.put(id, Lists.newArrayList(run.browsers));
+  }
+
+  private void forget(String id) {
+    Set<String> paths = files.remove(id);
+    if (paths != null) {
+      for (String path : paths) {
+        Map<String, Long> exercised = state.exercised.get(path);
+        if (exercised != null) {
+          exercised.remove(id);
+          if (exercised.isEmpty()) {
+            state.exercised.remove(path);
+          }
+        }
+      }
+    }
+    state.passes.remove(id);
+    state.browsers.remove(id);
+  }
+
+  private Set<String> filesOf(String id) {
+    Set<String> paths = files.get(id);
+    if (paths == null) {
+      paths = Sets.newHashSet();
+      files.put(id, paths);
+    }
+    return paths;
+  }
+
+  private static String key(BrowserInfo browser) {
+    return browser.getName() + " " + browser.getVersion();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.browser;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.google.jstestdriver.util.DaemonThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs each runner on a thread of its own, so no browser waits for another's
+ * thread however many are captured. The threads are daemon platform threads,
+ * or virtual threads when asked for and the jvm has them.
+ */
+public class ThreadRunnerExecutorFactory implements RunnerExecutorFactory {
+  private static final Logger logger = LoggerFactory.getLogger(ThreadRunnerExecutorFactory.class);
+
+  /** A platform thread per runner. */
+  public static final String PLATFORM = "platform";
+
+  /** A virtual thread per runner, on jvms that have them. */
+  public static final String VIRTUAL = "virtual";
+
+  private static final AtomicInteger RUNS = new AtomicInteger();
+
+  private final String threads;
+
+  @Inject
+  public ThreadRunnerExecutorFactory(@Named("runnerThreads") String threads) {
+    this.threads = threads;
+  }
+
+  public ExecutorService create(int runners) {
+    ThreadFactory factory = null;
+    if (VIRTUAL.equals(threads)) {
+      factory = virtualThreadFactory();
+    } else if (!PLATFORM.equals(threads)) {
+      throw new IllegalArgumentException("Unknown runner threads " + threads + ", expected "
+          + PLATFORM + " or " + VIRTUAL + ".");
+    }
+    if (factory == null) {
+      factory = new DaemonThreadFactory("BrowserActionRunner-" + RUNS.incrementAndGet());
+    }
+    return Executors.newFixedThreadPool(Math.max(runners, 1), factory);
+  }
+
+  /**
+   * Looks the virtual thread factory up reflectively, as the sources are
+   * built for jvms without it.
+   * @return The factory, or null if the jvm has no virtual threads.
+   */
+  static ThreadFactory virtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+          .getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      logger.warn("Virtual threads are not available on java {}, using platform threads.",
+          System.getProperty("java.version"));
+      return null;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.commands;
+
+import com.google.jstestdriver.Command;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.servlet.fileset.BrowserFileSync;
+
+import java.util.List;
+
+/**
+ * A placeholder in the browser command queue that is never sent to the
+ * browser. When dequeued it is replaced by the commands that bring the
+ * browser's files up to date with a test case, so the files are compared with
+ * the browser state left by the commands before it.
+ */
+public class FileSyncCommand extends Command {
+
+  private final BrowserFileSync sync;
+  private final String session;
+  private final JstdTestCase testCase;
+  private final boolean allowReset;
+
+  public FileSyncCommand(BrowserFileSync sync, String session, JstdTestCase testCase,
+      boolean allowReset) {
+    super(null, false);
+    this.sync = sync;
+    this.session = session;
+    this.testCase = testCase;
+    this.allowReset = allowReset;
+  }
+
+  /** Determines the commands to send the browser in place of this one. */
+  public List<Command> expand(SlaveBrowser browser) {
+    return sync.determineCommands(browser, session, testCase, allowReset);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("FileSyncCommand(session=%s, testCaseId=%s, allowReset=%s)", session,
+        testCase.getId(), allowReset);
+  }
+}
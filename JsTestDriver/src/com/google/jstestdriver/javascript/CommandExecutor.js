@@ -205,17 +205,17 @@ jstestdriver.CommandExecutor.prototype.listen = function(loadResults) {
   var response;
   if (window.location.href.search('refresh') != -1) {
     response =
-        new jstestdriver.Response(jstestdriver.RESPONSE_TYPES.RESET_RESULT,
-                                  '{"loadedFiles":' + JSON.stringify(loadResults) + '}',
-                                  this.getBrowserInfo(),
-                                  true);
+        jstestdriver.Response.structured(jstestdriver.RESPONSE_TYPES.RESET_RESULT,
+                                         {'loadedFiles': loadResults},
+                                         this.getBrowserInfo(),
+                                         true);
     jstestdriver.log('Runner reset: ' + window.location.href);
   } else {
     response =
-        new jstestdriver.Response(jstestdriver.RESPONSE_TYPES.BROWSER_READY,
-                                  '{"loadedFiles":' + JSON.stringify(loadResults) + '}',
-                                  this.getBrowserInfo(),
-                                  true);
+        jstestdriver.Response.structured(jstestdriver.RESPONSE_TYPES.BROWSER_READY,
+                                         {'loadedFiles': loadResults},
+                                         this.getBrowserInfo(),
+                                         true);
 
   }
   this.streamingService_.close(response, this.__boundExecuteCommand);
@@ -33,6 +33,12 @@ jstestdriver.SERVER_URL = "/query/";
 
 jstestdriver.HEARTBEAT_URL = "/heartbeat";
 
+/** The number of streamed responses to send to the server in one post. */
+jstestdriver.RESPONSE_BATCH_SIZE = 20;
+
+/** The longest time in ms a streamed response waits for its batch to fill. */
+jstestdriver.RESPONSE_BATCH_LATENCY = 250;
+
 if (!window['console']) window['console'] = {};
 if (typeof window['console']['log'] == 'undefined') window['console']['log'] = function(msg) {};
 if (typeof window['console']['debug'] == 'undefined') window['console']['debug'] = function(msg) {};
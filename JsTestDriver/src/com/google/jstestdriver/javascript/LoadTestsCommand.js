@@ -43,9 +43,9 @@ jstestdriver.LoadTestsCommand.prototype.loadTest = function(args) {
 
 
 jstestdriver.LoadTestsCommand.prototype.onFileLoaded = function(status) {
-  var response = new jstestdriver.Response(
+  var response = jstestdriver.Response.structured(
       jstestdriver.RESPONSE_TYPES.FILE_LOAD_RESULT,
-      JSON.stringify(status),
+      status,
       this.getBrowserInfo());
   this.onLoadComplete_(response);
 };
@@ -58,6 +58,32 @@ jstestdriver.Response = function(type, response, browser, start) {
 };
 
 
+/**
+ * The protocol version in which the payload is carried as structured json in
+ * data, instead of being serialized into response.
+ * Coincides with com.google.jstestdriver.Response.STRUCTURED_PAYLOAD.
+ * @type {Number}
+ */
+jstestdriver.Response.STRUCTURED_PAYLOAD = 2;
+
+
+/**
+ * Creates a response that carries its payload as structured json, so that it
+ * is only encoded once on the wire.
+ * @param {jstestdriver.RESPONSE_TYPES} type The type of the response.
+ * @param {Object} data The contents of the response.
+ * @param {jstestdriver.BrowserInfo} browser The browser information.
+ * @param {Boolean} start Is this the first response from the browser.
+ * @return {jstestdriver.Response}
+ */
+jstestdriver.Response.structured = function(type, data, browser, start) {
+  var response = new jstestdriver.Response(type, '', browser, start);
+  response.data = data;
+  response.version = jstestdriver.Response.STRUCTURED_PAYLOAD;
+  return response;
+};
+
+
 jstestdriver.Response.prototype.toString = function() {
   return 'Response(\nresponse=' + this.response + ',\ntype' + this.type + ',\n browser=' + this.browser + ')';
 };
@@ -74,6 +100,19 @@ jstestdriver.CommandResponse = function (done, response) {
 };
 
 
+/**
+ * Coincides with java class com.google.jstestdriver.protocol.BrowserResponseBatch.
+ * @param {Array.<{response: jstestdriver.Response, responseId: string}>} responses
+ *     The batched responses.
+ * @param {Number} latency The ms the oldest response waited to be sent.
+ * @constructor
+ */
+jstestdriver.ResponseBatch = function(responses, latency) {
+  this.responses = responses;
+  this.latency = latency;
+};
+
+
 
 /**
  * Represents the information about the browser.
@@ -67,9 +67,9 @@ jstestdriver.RunTestsCommand.prototype.runTestCases_ =
 
 jstestdriver.RunTestsCommand.prototype.sendTestResults = function() {
   if (this.testsDone_.length > 0) {
-    var response = new jstestdriver.Response(
+    var response = jstestdriver.Response.structured(
             jstestdriver.RESPONSE_TYPES.TEST_RESULT,
-            JSON.stringify(this.testsDone_),
+            this.testsDone_,
             this.getBrowserInfo_());
 
     this.testsDone_ = [];
@@ -100,9 +100,9 @@ jstestdriver.RunTestsCommand.prototype.addTestResult = function(testResult) {
 
 
 jstestdriver.RunTestsCommand.prototype.sendTestResultsOnComplete_ = function() {
-  var response = new jstestdriver.Response(
+  var response = jstestdriver.Response.structured(
       jstestdriver.RESPONSE_TYPES.TEST_RESULT,
-      JSON.stringify(this.testsDone_),
+      this.testsDone_,
       this.getBrowserInfo_());
   this.testsDone_ = [];
   this.streamStop_(response);
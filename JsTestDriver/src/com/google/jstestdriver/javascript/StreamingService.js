@@ -20,27 +20,130 @@
  * @param {function():Number} now Returns the current time in ms.
  * @param {function(String, Object, function():null)} post Posts to the server.
  * @param {function(String, Object)} synchPost Posts synchronously to the server.
+ * @param {Number} opt_batchSize The number of responses to send in one post.
+ *     Defaults to sending each response as it is streamed.
+ * @param {Number} opt_batchLatency The longest time in ms to hold a response
+ *     while waiting for the batch to fill.
+ * @param {function(Function, number):number} opt_setTimeout Schedules the
+ *     flush of a batch that doesn't fill in time.
+ * @param {function(number)} opt_clearTimeout Cancels the scheduled flush.
  * @constructor
  */
 // TODO(corysmith): Separate the state from the service.
-jstestdriver.StreamingService = function(url, now, post, synchPost) {
+jstestdriver.StreamingService = function(url,
+                                         now,
+                                         post,
+                                         synchPost,
+                                         opt_batchSize,
+                                         opt_batchLatency,
+                                         opt_setTimeout,
+                                         opt_clearTimeout) {
   this.url_ = url;
   this.now_ = now;
   this.post_ = post;
   this.activeResponses_ = {};
   this.completeFinalResponse = null;
   this.synchPost_ = synchPost;
+  this.batchSize_ = opt_batchSize || 1;
+  this.batchLatency_ = opt_batchLatency || 0;
+  this.batch_ = [];
+  this.batchStart_ = 0;
+  this.batchCallback_ = null;
+  this.setTimeout_ = opt_setTimeout || jstestdriver.setTimeout;
+  this.clearTimeout_ = opt_clearTimeout || jstestdriver.clearTimeout;
+  this.flushTimeoutId_ = null;
+  this.boundFlushBatch_ = jstestdriver.bind(this, this.flushBatch_);
 };
 
 
 jstestdriver.StreamingService.prototype.synchClose = function(response) {
   var data = new jstestdriver.CommandResponse(true, response);
+  if (this.batch_.length) {
+    data.batch = this.takeBatch_();
+  }
   this.synchPost_(this.url_, data);
 };
 
 
 jstestdriver.StreamingService.prototype.stream = function(response, callback) {
-  this.streamResponse(response, false, callback);
+  if (this.batchSize_ > 1) {
+    this.batchResponse_(response, callback);
+  } else {
+    this.streamResponse(response, false, callback);
+  }
+};
+
+
+/**
+ * Holds the response until the batch is full, or the oldest response has
+ * waited long enough. The first response of a batch schedules its flush, so
+ * a batch that doesn't fill is sent even if no further response arrives.
+ * @private
+ */
+jstestdriver.StreamingService.prototype.batchResponse_ = function(response,
+                                                                  callback) {
+  var now = this.now_();
+  if (!this.batch_.length) {
+    this.batchStart_ = now;
+    this.flushTimeoutId_ = this.setTimeout_(this.boundFlushBatch_,
+                                            this.batchLatency_);
+  }
+  this.batchCallback_ = callback;
+  this.batch_.push({
+    response: response,
+    // responses in a batch can share a timestamp.
+    responseId: now + '.' + this.batch_.length
+  });
+  if (this.batch_.length >= this.batchSize_ ||
+      now - this.batchStart_ >= this.batchLatency_) {
+    this.flush(callback);
+  }
+};
+
+
+/**
+ * Sends all held responses to the server in a single post.
+ * @param {function():null} callback The callback when the post is finished.
+ */
+jstestdriver.StreamingService.prototype.flush = function(callback) {
+  if (!this.batch_.length) {
+    return;
+  }
+  var data = new jstestdriver.CommandResponse(false, null);
+  data.batch = this.takeBatch_();
+  var responses = data.batch.responses;
+  for (var i = 0; i < responses.length; i++) {
+    this.activeResponses_[responses[i].responseId] = responses[i];
+  }
+  this.post_(this.url_, data, callback, 'text/plain');
+};
+
+
+/**
+ * Sends the held responses once the oldest has waited the batch latency.
+ * @private
+ */
+jstestdriver.StreamingService.prototype.flushBatch_ = function() {
+  this.flushTimeoutId_ = null;
+  this.flush(this.batchCallback_);
+};
+
+
+/**
+ * @return {jstestdriver.ResponseBatch} The held responses, clearing the batch
+ *     and its scheduled flush.
+ * @private
+ */
+jstestdriver.StreamingService.prototype.takeBatch_ = function() {
+  if (this.flushTimeoutId_ !== null) {
+    this.clearTimeout_(this.flushTimeoutId_);
+    this.flushTimeoutId_ = null;
+  }
+  this.batchCallback_ = null;
+  var batch = new jstestdriver.ResponseBatch(this.batch_,
+                                             this.now_() - this.batchStart_);
+  this.batch_ = [];
+  return batch;
 };
 
 
@@ -88,6 +191,7 @@ jstestdriver.StreamingService.prototype.streamAcknowledged = function(received)
 jstestdriver.StreamingService.prototype.close =
     function(finalResponse, callback) {
   var context = this;
+  var flushing = this.batch_.length > 0;
   this.completeFinalResponse = function() {
     if (context.hasOpenResponses()) {
       // have to query again, because these may be lost responses from a debug session.
@@ -99,7 +203,12 @@ jstestdriver.StreamingService.prototype.close =
     }
   };
 
-  this.completeFinalResponse();
+  if (flushing) {
+    // the acknowledgement of the batch completes the final response.
+    this.flush(callback);
+  } else {
+    this.completeFinalResponse();
+  }
 };
 
 
@@ -139,7 +139,9 @@ jstestdriver.config = (function(module) {
             url,
             now,
             jstestdriver.convertToJson(jstestdriver.jQuery.post),
-            jstestdriver.createSynchPost(jstestdriver.jQuery));
+            jstestdriver.createSynchPost(jstestdriver.jQuery),
+            jstestdriver.RESPONSE_BATCH_SIZE,
+            jstestdriver.RESPONSE_BATCH_LATENCY);
 
     var executor = new jstestdriver.CommandExecutor(streamingService,
                                                     testCaseManager,
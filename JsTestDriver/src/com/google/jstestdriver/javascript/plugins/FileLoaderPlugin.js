@@ -20,7 +20,7 @@ jstestdriver.plugins.FileLoaderPlugin = function(scriptLoader, stylesheetLoader)
 
 
 jstestdriver.plugins.FileLoaderPlugin.prototype.loadSource = function(file, onSourceLoaded) {
-  if (file.fileSrc.match(/\.css$/)) {
+  if (file.fileSrc.match(/\.css(\?|$)/)) {
     this.stylesheetLoader_.load(file, onSourceLoaded);
   } else {
     this.scriptLoader_.load(file, onSourceLoaded);
@@ -106,10 +106,15 @@ public class JstdTestCase implements Iterable<FileInfo> {
   /**
    * @param original
    * @param update
+   * @return The merged files, or the original list if no file was updated.
    */
   private List<FileInfo> applyUpdates(List<FileInfo> original, List<FileInfo> update) {
+    if (update.isEmpty()) {
+      return original;
+    }
     Map<String, FileInfo> updates = Maps.newHashMap();
     List<FileInfo> merged = Lists.newArrayList();
+    boolean updated = false;
 
     for (FileInfo fileInfo : update) {
       updates.put(fileInfo.getFilePath(), fileInfo);
@@ -118,11 +123,12 @@ public class JstdTestCase implements Iterable<FileInfo> {
     for (FileInfo fileInfo : original) {
       if (updates.containsKey(fileInfo.getFilePath())) {
         merged.add(updates.get(fileInfo.getFilePath()));
+        updated = true;
       } else {
         merged.add(fileInfo);
       }
     }
-    return merged;
+    return updated ? merged : original;
   }
   
   /**
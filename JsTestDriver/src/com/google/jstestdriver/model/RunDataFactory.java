@@ -20,7 +20,9 @@ import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.ProcessingFileLoader;
 import com.google.jstestdriver.ResponseStream;
+import com.google.jstestdriver.hooks.FileLoadPostProcessor;
 import com.google.jstestdriver.hooks.ResourcePreProcessor;
 import com.google.jstestdriver.util.StopWatch;
 
@@ -41,6 +43,7 @@ public class RunDataFactory {
   private final JstdTestCaseFactory testCaseFactory;
   private final List<FileInfo> plugins;
   private final StopWatch stopWatch;
+  private final Set<FileLoadPostProcessor> postprocessors;
 
   @Inject
   public RunDataFactory(@Named("fileSet") Set<FileInfo> fileSet,
@@ -48,13 +51,15 @@ public class RunDataFactory {
                         Set<ResourcePreProcessor> processors,
                         @Named("plugins") List<FileInfo> plugins,
                         JstdTestCaseFactory testCaseFactory,
-                        StopWatch stopWatch) {
+                        StopWatch stopWatch,
+                        Set<FileLoadPostProcessor> postprocessors) {
     this.fileSet = fileSet;
     this.tests = tests;
     this.processors = processors;
     this.plugins = plugins;
     this.testCaseFactory = testCaseFactory;
     this.stopWatch = stopWatch;
+    this.postprocessors = postprocessors;
   }
 
   /**
@@ -77,12 +82,28 @@ public class RunDataFactory {
       }
       return new RunData(Collections.<ResponseStream>emptyList(),
                          testCaseFactory.createCases(
-                             processedPlugins,
-                             processedDependencies,
-                             processedTests),
+                             processedDigests(processedPlugins),
+                             processedDigests(processedDependencies),
+                             processedDigests(processedTests)),
                          testCaseFactory);
     } finally {
       stopWatch.stop("Create RunData");
     }
   }
+
+  /**
+   * Copies the files with the digests they have once loaded, see
+   * {@link ProcessingFileLoader#processedDigest}.
+   */
+  private List<FileInfo> processedDigests(List<FileInfo> files) {
+    if (postprocessors.isEmpty()) {
+      return files;
+    }
+    List<FileInfo> identified = Lists.newArrayListWithCapacity(files.size());
+    for (FileInfo file : files) {
+      identified.add(file.identifiedBy(
+          ProcessingFileLoader.processedDigest(file.getDigest(), postprocessors)));
+    }
+    return identified;
+  }
 }
@@ -0,0 +1,45 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.model;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * Names the sessions that keep the test cases and files of concurrent clients
+ * apart on the server, for both the clients and the server.
+ */
+public final class Sessions {
+
+  /** The session of the clients that don't name one. */
+  public static final String DEFAULT_SESSION = "";
+
+  /** The request parameter naming the session of the client. */
+  public static final String PARAMETER = "session";
+
+  private Sessions() {}
+
+  /**
+   * Appends the session parameter to the query of a url, unless the session
+   * is the default one.
+   */
+  public static String appendSession(String url, String session) {
+    if (DEFAULT_SESSION.equals(session)) {
+      return url;
+    }
+    try {
+      return url + (url.indexOf('?') < 0 ? "?" : "&") + PARAMETER + "="
+          + URLEncoder.encode(session, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Adds the session to request parameters, unless it is the default one. */
+  public static void putSession(Map<String, String> params, String session) {
+    if (!DEFAULT_SESSION.equals(session)) {
+      params.put(PARAMETER, session);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.protocol;
+
+import com.google.jstestdriver.Response;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Carries several streamed responses from a browser in a single post.
+ * Coincides with the javascript class jstestdriver.ResponseBatch.
+ */
+public class BrowserResponseBatch {
+
+  /** A response and the id the browser expects to be acknowledged. */
+  public static class Entry {
+    private Response response;
+    private String responseId;
+
+    public Entry() {}
+
+    public Entry(Response response, String responseId) {
+      this.response = response;
+      this.responseId = responseId;
+    }
+
+    public Response getResponse() {
+      return response;
+    }
+
+    public String getResponseId() {
+      return responseId;
+    }
+  }
+
+  private List<Entry> responses;
+  /** Milliseconds the oldest response waited in the browser before sending. */
+  private long latency;
+
+  public BrowserResponseBatch() {}
+
+  public BrowserResponseBatch(List<Entry> responses, long latency) {
+    this.responses = responses;
+    this.latency = latency;
+  }
+
+  public List<Entry> getResponses() {
+    return responses == null ? Collections.<Entry>emptyList() : responses;
+  }
+
+  public long getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String toString() {
+    return "BrowserResponseBatch [size=" + getResponses().size() + ", latency=" + latency + "]";
+  }
+}
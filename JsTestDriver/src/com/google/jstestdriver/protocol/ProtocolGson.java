@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+import java.lang.reflect.Type;
+
+/**
+ * Creates {@link Gson} instances that can read and write the messages passed
+ * between the browser, server and client. Structured payloads are kept as
+ * {@link JsonElement}s, which a plain Gson can neither create nor serialize.
+ */
+public final class ProtocolGson {
+
+  private ProtocolGson() {}
+
+  /** Passes JsonElements through untouched. */
+  private static class JsonElementAdapter
+      implements JsonSerializer<JsonElement>, JsonDeserializer<JsonElement> {
+    public JsonElement serialize(JsonElement src, Type typeOfSrc,
+        JsonSerializationContext context) {
+      return src;
+    }
+
+    public JsonElement deserialize(JsonElement json, Type typeOfT,
+        JsonDeserializationContext context) {
+      return json;
+    }
+  }
+
+  public static Gson create() {
+    return new GsonBuilder()
+        .registerTypeAdapter(JsonElement.class, new JsonElementAdapter())
+        .create();
+  }
+}
@@ -49,6 +49,7 @@ public class GatewayConfiguration {
   private JsonArray gatewayConfig = new JsonArray();
   private List<RequestMatcher> matchers;
   private Map<RequestMatcher, String> destinations;
+  private RoutingTable<RequestMatcher> routes;
 
   /**
    * Constructs a {@link GatewayConfiguration}. {@link GatewayConfiguration} is
@@ -69,6 +70,14 @@ public class GatewayConfiguration {
     return matchers;
   }
 
+  /**
+   * @return The {@link RoutingTable} of the matchers, which the
+   * {@link RequestDispatcher} uses to find the matcher of a request.
+   */
+  synchronized RoutingTable<RequestMatcher> getRoutes() {
+    return routes;
+  }
+
   /**
    * Instantiates a {@link GatewayRequestHandler} to gateway the current request
    * along to the matching host.
@@ -106,6 +115,7 @@ public class GatewayConfiguration {
     }
     this.matchers = listBuilder.build();
     this.destinations = mapBuilder.build();
+    this.routes = RoutingTable.of(matchers);
   }
 
   /**
@@ -115,5 +125,6 @@ public class GatewayConfiguration {
   public synchronized void clearConfiguration() {
     this.matchers = ImmutableList.of();
     this.destinations = ImmutableMap.of();
+    this.routes = RoutingTable.of(matchers);
   }
 }
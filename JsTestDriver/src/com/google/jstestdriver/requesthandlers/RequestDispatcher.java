@@ -4,12 +4,11 @@ package com.google.jstestdriver.requesthandlers;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
+import org.mortbay.jetty.RetryRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -26,8 +25,7 @@ class RequestDispatcher {
 
   private final HttpServletRequest request;
   private final HttpServletResponse response;
-  private final List<RequestMatcher> matchers;
-  private final Map<RequestMatcher, Provider<RequestHandler>> handlerProviders;
+  private final RoutingTable<Provider<RequestHandler>> routes;
   private GatewayConfiguration gatewayConfiguration;
   private final UnsupportedMethodErrorSender errorSender;
 
@@ -35,14 +33,12 @@ class RequestDispatcher {
   public RequestDispatcher(
       HttpServletRequest request,
       HttpServletResponse response,
-      List<RequestMatcher> matchers,
-      Map<RequestMatcher, Provider<RequestHandler>> handlerProviders,
+      RoutingTable<Provider<RequestHandler>> routes,
       GatewayConfiguration gatewayConfiguration,
       UnsupportedMethodErrorSender errorSender) {
     this.request = request;
     this.response = response;
-    this.matchers = matchers;
-    this.handlerProviders = handlerProviders;
+    this.routes = routes;
     this.gatewayConfiguration = gatewayConfiguration;
     this.errorSender = errorSender;
   }
@@ -50,7 +46,7 @@ class RequestDispatcher {
   /**
    * Dispatches the request to the {@link RequestHandler} associated with the
    * first matching {@link RequestMatcher} based on the request's HTTP method
-   * and URI.
+   * and URI, found through the {@link RoutingTable}s.
    * 
    * @throws IOException
    */
@@ -58,29 +54,21 @@ class RequestDispatcher {
     try {
       HttpMethod method = HttpMethod.valueOf(request.getMethod());
       String uri = request.getRequestURI();
-      boolean pathMatched = false;
-      
-      for (RequestMatcher matcher : matchers) {
-        if (matcher.uriMatches(uri)) {
-          pathMatched = true;
-          if (matcher.methodMatches(method)) {
-            logger.trace("handling {} {}", uri, request);
-            handlerProviders.get(matcher).get().handleIt();
-            return;
-          }
-        }
+
+      Provider<RequestHandler> handlerProvider = routes.find(uri, method);
+      if (handlerProvider != null) {
+        logger.trace("handling {} {}", uri, request);
+        handlerProvider.get().handleIt();
+        return;
       }
-      for (RequestMatcher matcher : gatewayConfiguration.getMatchers()) {
-        if (matcher.uriMatches(uri)) {
-          pathMatched = true;
-          if (matcher.methodMatches(method)) {
-            logger.trace("gatewaying {} {}", uri, request);
-            gatewayConfiguration.getRequestHandler(matcher).handleIt();
-            return;
-          }
-        }
+      RoutingTable<RequestMatcher> gatewayRoutes = gatewayConfiguration.getRoutes();
+      RequestMatcher gatewayMatcher = gatewayRoutes.find(uri, method);
+      if (gatewayMatcher != null) {
+        logger.trace("gatewaying {} {}", uri, request);
+        gatewayConfiguration.getRequestHandler(gatewayMatcher).handleIt();
+        return;
       }
-      if (pathMatched) {
+      if (routes.matchesPath(uri) || gatewayRoutes.matchesPath(uri)) {
         errorSender.methodNotAllowed();
       } else {
         response.sendError(HttpServletResponse.SC_NOT_FOUND, "Not found.");
@@ -88,6 +76,9 @@ class RequestDispatcher {
     } catch (IllegalArgumentException e) {
       logger.error("Error in request {}", e);
       errorSender.methodNotAllowed();
+    } catch (RetryRequest e) {
+      // a suspended request, jetty dispatches it again once resumed.
+      throw e;
     } catch (Exception e) {
       logger.error("Error in request {}", e);
     }
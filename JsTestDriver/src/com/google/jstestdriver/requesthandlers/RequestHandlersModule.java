@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Key;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryProvider;
@@ -93,6 +94,12 @@ public abstract class RequestHandlersModule extends AbstractModule {
     return client;
   }
 
+  @Provides @Singleton RoutingTable<Provider<RequestHandler>> provideRoutingTable(
+      List<RequestMatcher> matchers,
+      Map<RequestMatcher, Provider<RequestHandler>> handlerProviders) {
+    return new RoutingTable<Provider<RequestHandler>>(matchers, handlerProviders);
+  }
+
   @Provides @Singleton ServletContext provideServletContext(Servlet servlet) {
     return ((GenericServlet) servlet).getServletContext();
   }
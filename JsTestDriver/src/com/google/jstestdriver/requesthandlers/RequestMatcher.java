@@ -20,7 +20,11 @@ class RequestMatcher {
   private final String pattern;
   private final Kind kind;
 
-  private enum Kind { PREFIX, SUFFIX, LITERAL }
+  /**
+   * PREFIX patterns begin with a wildcard and match the end of a uri, SUFFIX
+   * patterns end with one and match the start.
+   */
+  enum Kind { PREFIX, SUFFIX, LITERAL }
 
   public RequestMatcher(HttpMethod method, String pattern) {
     this.method = method;
@@ -63,6 +67,15 @@ class RequestMatcher {
     }
   }
 
+  /** The pattern without its wildcard. */
+  String getPattern() {
+    return pattern;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
   public String getPrefix() {
     return kind == Kind.PREFIX ? "" : pattern;
   }
@@ -0,0 +1,151 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+package com.google.jstestdriver.requesthandlers;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * An index of {@link RequestMatcher}s, built once, that finds the first
+ * matcher for a request without testing every pattern. Literal patterns are
+ * hashed, "/root/*" patterns are kept in a trie walked along the uri, and
+ * "*.mp3" patterns are hashed by their length from the end of the uri.
+ */
+final class RoutingTable<T> {
+
+  /** A matcher, its value and its position in the original order. */
+  private static class Route<T> {
+    final int order;
+    final RequestMatcher matcher;
+    final T value;
+
+    Route(int order, RequestMatcher matcher, T value) {
+      this.order = order;
+      this.matcher = matcher;
+      this.value = value;
+    }
+  }
+
+  private static class Node<T> {
+    final Map<Character, Node<T>> children = Maps.newHashMap();
+    final List<Route<T>> routes = Lists.newArrayList();
+  }
+
+  private final Map<String, List<Route<T>>> literals = Maps.newHashMap();
+  private final Node<T> startsWith = new Node<T>();
+  private final Map<String, List<Route<T>>> endsWith = Maps.newHashMap();
+  private final int[] endsWithLengths;
+
+  /**
+   * @param matchers The matchers, in order of precedence.
+   * @param values The value of each matcher.
+   */
+  RoutingTable(List<RequestMatcher> matchers, Map<RequestMatcher, ? extends T> values) {
+    SortedSet<Integer> lengths = Sets.newTreeSet();
+    for (int i = 0; i < matchers.size(); i++) {
+      RequestMatcher matcher = matchers.get(i);
+      Route<T> route = new Route<T>(i, matcher, values.get(matcher));
+      String pattern = matcher.getPattern();
+      switch (matcher.getKind()) {
+        case LITERAL:
+          add(literals, pattern, route);
+          break;
+        case SUFFIX:
+          Node<T> node = startsWith;
+          for (int c = 0; c < pattern.length(); c++) {
+            Node<T> child = node.children.get(pattern.charAt(c));
+            if (child == null) {
+              child = new Node<T>();
+              node.children.put(pattern.charAt(c), child);
+            }
+            node = child;
+          }
+          node.routes.add(route);
+          break;
+        case PREFIX:
+          add(endsWith, pattern, route);
+          lengths.add(pattern.length());
+          break;
+      }
+    }
+    endsWithLengths = new int[lengths.size()];
+    int i = 0;
+    for (Integer length : lengths) {
+      endsWithLengths[i++] = length;
+    }
+  }
+
+  /** Creates a table that finds the matchers themselves. */
+  static RoutingTable<RequestMatcher> of(List<RequestMatcher> matchers) {
+    Map<RequestMatcher, RequestMatcher> values = Maps.newHashMap();
+    for (RequestMatcher matcher : matchers) {
+      values.put(matcher, matcher);
+    }
+    return new RoutingTable<RequestMatcher>(matchers, values);
+  }
+
+  private void add(Map<String, List<Route<T>>> index, String pattern, Route<T> route) {
+    List<Route<T>> routes = index.get(pattern);
+    if (routes == null) {
+      routes = Lists.newArrayList();
+      index.put(pattern, routes);
+    }
+    routes.add(route);
+  }
+
+  /**
+   * @return The value of the first matcher for the uri and method, or null if
+   *     none matches.
+   */
+  T find(String uri, HttpMethod method) {
+    Route<T> route = first(uri, method);
+    return route == null ? null : route.value;
+  }
+
+  /** @return true if any matcher matches the uri, whatever its method. */
+  boolean matchesPath(String uri) {
+    return first(uri, null) != null;
+  }
+
+  /** Finds the earliest route for the uri, and method unless it is null. */
+  private Route<T> first(String uri, HttpMethod method) {
+    if (uri == null) {
+      return null;
+    }
+    Route<T> first = first(null, literals.get(uri), method);
+    Node<T> node = startsWith;
+    first = first(first, node.routes, method);
+    for (int i = 0; i < uri.length() && node != null; i++) {
+      node = node.children.get(uri.charAt(i));
+      if (node != null) {
+        first = first(first, node.routes, method);
+      }
+    }
+    for (int length : endsWithLengths) {
+      if (length > uri.length()) {
+        break;
+      }
+      first = first(first, endsWith.get(uri.substring(uri.length() - length)), method);
+    }
+    return first;
+  }
+
+  private Route<T> first(Route<T> first, List<Route<T>> routes, HttpMethod method) {
+    if (routes == null) {
+      return first;
+    }
+    for (Route<T> route : routes) {
+      if (first != null && first.order < route.order) {
+        return first;
+      }
+      if (method == null || route.matcher.methodMatches(method)) {
+        return route;
+      }
+    }
+    return first;
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.jstestdriver.util.DaemonThreadFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves contents to another ContentStore on a writer thread, so uploads
+ * don't wait for the disk. Contents waiting to be written are loaded from
+ * memory, and saving them again while they wait does nothing.
+ *
+ * Once the waiting contents take too many bytes, or too many saves are
+ * waiting, the uploads save their contents themselves, which bounds the
+ * memory held for the writer. Contents still
+ * waiting when the server exits are lost, and uploaded again when needed.
+ */
+public class BackgroundContentStore implements ContentStore {
+
+  /** The number of saves that may wait for the writer. */
+  private static final int MAX_PENDING = 1024;
+
+  /** The bytes of contents that may wait for the writer. */
+  private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+  private final ContentStore store;
+  private final Executor writer;
+  private final long maxPendingBytes;
+  private final ConcurrentMap<String, String> pending = new ConcurrentHashMap<String, String>();
+  private final AtomicLong pendingBytes = new AtomicLong();
+
+  public BackgroundContentStore(ContentStore store) {
+    this(store, new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(MAX_PENDING),
+        new DaemonThreadFactory("ContentStoreWriter"), new ThreadPoolExecutor.CallerRunsPolicy()),
+        MAX_PENDING_BYTES);
+  }
+
+  /**
+   * @param writer Runs the saves to the store.
+   * @param maxPendingBytes The bytes of contents that may wait for the writer.
+   */
+  public BackgroundContentStore(ContentStore store, Executor writer, long maxPendingBytes) {
+    this.store = store;
+    this.writer = writer;
+    this.maxPendingBytes = maxPendingBytes;
+  }
+
+  public String load(String digest) {
+    String data = digest == null ? null : pending.get(digest);
+    return data != null ? data : store.load(digest);
+  }
+
+  public void save(final String digest, final String data) {
+    if (digest == null || pending.containsKey(digest)) {
+      return;
+    }
+    final long bytes = sizeOf(data);
+    if (!reserve(bytes)) {
+      store.save(digest, data);
+      return;
+    }
+    if (pending.putIfAbsent(digest, data) != null) {
+      pendingBytes.addAndGet(-bytes);
+      return;
+    }
+    writer.execute(new Runnable() {
+      public void run() {
+        try {
+          store.save(digest, data);
+        } finally {
+          pending.remove(digest);
+          pendingBytes.addAndGet(-bytes);
+        }
+      }
+    });
+  }
+
+  /** @return Whether the bytes fit under the limit, and were added to it. */
+  private boolean reserve(long bytes) {
+    while (true) {
+      long current = pendingBytes.get();
+      if (current + bytes > maxPendingBytes) {
+        return false;
+      }
+      if (pendingBytes.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  /** The bytes a string holds on the heap, two for each char. */
+  private static long sizeOf(String data) {
+    return 2L * data.length();
+  }
+
+  /** The number of contents waiting to be written. */
+  public int getPending() {
+    return pending.size();
+  }
+
+  /** The bytes of the contents waiting to be written. */
+  public long getPendingBytes() {
+    return pendingBytes.get();
+  }
+}
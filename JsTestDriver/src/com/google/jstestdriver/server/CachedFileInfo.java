@@ -0,0 +1,54 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.FilesCache;
+
+/**
+ * A loaded file whose contents live in the {@link ResourceCache} instead of
+ * the heap, found by the digest of the contents. Once the contents are evicted
+ * the file reports itself as unloaded, so the next test case upload asks the
+ * client for it again.
+ */
+class CachedFileInfo extends FileInfo {
+
+  private final transient ResourceCache cache;
+  private final transient String contentDigest;
+
+  CachedFileInfo(FileInfo file, ResourceCache cache, String contentDigest) {
+    super(file.getFilePath(), file.getTimestamp(), file.getLength(), file.isPatch(),
+        file.isServeOnly(), null, file.getDisplayPath());
+    setDigest(file.getDigest());
+    this.cache = cache;
+    this.contentDigest = contentDigest;
+  }
+
+  /** @return The digest of the contents, as computed by the server. */
+  String getContentDigest() {
+    return contentDigest;
+  }
+
+  /** @return The cached contents, or null if they are no longer cached. */
+  EncodedResource getResource() {
+    return cache.get(contentDigest);
+  }
+
+  /**
+   * @throws FilesCache.MissingFileException if the contents were evicted, as
+   *     {@link JstdTestCaseStore#getEncodedResource} does.
+   */
+  @Override
+  public String getData() {
+    EncodedResource resource = getResource();
+    if (resource == null) {
+      throw new FilesCache.MissingFileException();
+    }
+    return resource.decode();
+  }
+
+  @Override
+  public boolean isLoaded() {
+    return cache.contains(contentDigest);
+  }
+}
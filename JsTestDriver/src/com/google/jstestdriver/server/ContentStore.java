@@ -0,0 +1,16 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+/**
+ * Keeps file contents by their content digest, so they survive the
+ * {@link JstdTestCaseStore}.
+ */
+public interface ContentStore {
+
+  /** @return The contents with the digest, or null if they aren't stored. */
+  String load(String digest);
+
+  /** Stores contents under their digest. */
+  void save(String digest, String data);
+}
@@ -0,0 +1,218 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.common.collect.Lists;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps file contents in a directory, named by their digest, so a restarted
+ * server doesn't need them uploaded again.
+ *
+ * Contents are written to a temporary file, synced and renamed into place,
+ * so a crash leaves either the whole file or none of it. Reading a file
+ * touches it; once the directory grows past its capacity the least recently
+ * used files are deleted.
+ */
+public class DiskContentStore implements ContentStore {
+  private static final Logger logger = LoggerFactory.getLogger(DiskContentStore.class);
+
+  private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{40}");
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Comparator<StoredFile> LEAST_RECENTLY_USED =
+      new Comparator<StoredFile>() {
+        public int compare(StoredFile a, StoredFile b) {
+          return a.lastUsed < b.lastUsed ? -1 : (a.lastUsed > b.lastUsed ? 1 : 0);
+        }
+      };
+
+  /** A stored file with its last use read once, as loads keep touching it. */
+  private static final class StoredFile {
+    final File file;
+    final long lastUsed;
+    final long length;
+
+    StoredFile(File file) {
+      this.file = file;
+      this.lastUsed = file.lastModified();
+      this.length = file.length();
+    }
+  }
+
+  private final File directory;
+  private final long capacity;
+  private final AtomicLong size = new AtomicLong();
+  private final Object collectionLock = new Object();
+
+  /**
+   * @param directory The directory to keep the contents in, created if needed.
+   * @param capacity The number of bytes to keep before deleting the least
+   *     recently used contents.
+   */
+  public DiskContentStore(File directory, long capacity) {
+    this.directory = directory;
+    this.capacity = capacity;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Unable to create the file store " + directory);
+    }
+    long stored = 0;
+    for (File file : listFiles()) {
+      if (file.getName().endsWith(TEMP_SUFFIX)) {
+        // left by a crash while writing.
+        file.delete();
+      } else {
+        stored += file.length();
+      }
+    }
+    size.set(stored);
+    logger.info("Opened file store {} with {} bytes", directory, stored);
+    collect();
+  }
+
+  public String load(String digest) {
+    if (!isValid(digest)) {
+      return null;
+    }
+    File file = fileFor(digest);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      String data = read(file);
+      file.setLastModified(System.currentTimeMillis());
+      return data;
+    } catch (IOException e) {
+      // collected meanwhile, or unreadable. Either way, upload it again.
+      logger.warn("Unable to read {} from the file store: {}", digest, e);
+      return null;
+    }
+  }
+
+  public void save(String digest, String data) {
+    if (!isValid(digest)) {
+      return;
+    }
+    File file = fileFor(digest);
+    if (file.isFile()) {
+      file.setLastModified(System.currentTimeMillis());
+      return;
+    }
+    File parent = file.getParentFile();
+    parent.mkdirs();
+    File temp = null;
+    try {
+      temp = File.createTempFile(digest + "-", TEMP_SUFFIX, parent);
+      byte[] bytes = data.getBytes("UTF-8");
+      FileOutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(bytes);
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+      if (temp.renameTo(file)) {
+        if (size.addAndGet(bytes.length) > capacity) {
+          collect();
+        }
+      } else {
+        // saved concurrently with the same contents.
+        temp.delete();
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to save {} to the file store: {}", digest, e);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /** The number of bytes in the store. */
+  public long getSize() {
+    return size.get();
+  }
+
+  /**
+   * Deletes the least recently used contents until the store is a little
+   * under its capacity.
+   */
+  private void collect() {
+    synchronized (collectionLock) {
+      if (size.get() <= capacity) {
+        return;
+      }
+      List<StoredFile> files = Lists.newArrayList();
+      for (File file : listFiles()) {
+        if (!file.getName().endsWith(TEMP_SUFFIX)) {
+          files.add(new StoredFile(file));
+        }
+      }
+      Collections.sort(files, LEAST_RECENTLY_USED);
+      long target = capacity - capacity / 10;
+      int deleted = 0;
+      for (StoredFile stored : files) {
+        if (size.get() <= target) {
+          break;
+        }
+        if (stored.file.delete()) {
+          size.addAndGet(-stored.length);
+          deleted++;
+        }
+      }
+      logger.info("Deleted {} files from the file store {}", deleted, directory);
+    }
+  }
+
+  private List<File> listFiles() {
+    List<File> files = Lists.newArrayList();
+    File[] subdirectories = directory.listFiles();
+    if (subdirectories == null) {
+      return files;
+    }
+    for (File subdirectory : subdirectories) {
+      File[] contents = subdirectory.listFiles();
+      if (contents != null) {
+        Collections.addAll(files, contents);
+      }
+    }
+    return files;
+  }
+
+  private boolean isValid(String digest) {
+    return digest != null && DIGEST.matcher(digest).matches();
+  }
+
+  /** Spreads the files over subdirectories named by the first byte of the digest. */
+  private File fileFor(String digest) {
+    return new File(new File(directory, digest.substring(0, 2)), digest);
+  }
+
+  private String read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toString("UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+}
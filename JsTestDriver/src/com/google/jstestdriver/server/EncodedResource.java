@@ -0,0 +1,136 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.jstestdriver.util.ContentDigest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The encoded form of a test resource, computed once and served to every
+ * browser: the UTF-8 bytes, a gzipped variant and a strong ETag of the bytes.
+ * The bytes are kept in direct buffers, outside of the java heap, and are
+ * identified by their digest.
+ */
+public final class EncodedResource {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int CHUNK_SIZE = 8192;
+
+  private final ByteBuffer bytes;
+  private final ByteBuffer gzipped;
+  private final String digest;
+  private final String etag;
+
+  private EncodedResource(ByteBuffer bytes, ByteBuffer gzipped, String digest) {
+    this.bytes = bytes;
+    this.gzipped = gzipped;
+    this.digest = digest;
+    this.etag = "\"" + digest + "\"";
+  }
+
+  /** Encodes the contents of a test resource. */
+  public static EncodedResource encode(String source) {
+    byte[] bytes = toBytes(source);
+    return encode(bytes, ContentDigest.of(bytes));
+  }
+
+  /**
+   * Encodes bytes that were already digested, for callers that look the
+   * digest up before paying for the compression.
+   */
+  public static EncodedResource encode(byte[] bytes, String digest) {
+    byte[] gzipped = gzip(bytes);
+    return new EncodedResource(store(bytes),
+        gzipped.length < bytes.length ? store(gzipped) : null, digest);
+  }
+
+  /** The UTF-8 bytes of the contents of a test resource. */
+  public static byte[] toBytes(String source) {
+    try {
+      return source.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static ByteBuffer store(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.flip();
+    return buffer.asReadOnlyBuffer();
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+    try {
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      gzip.write(bytes);
+      gzip.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /** Decodes the contents of the resource. */
+  public String decode() {
+    return UTF_8.decode(bytes.duplicate()).toString();
+  }
+
+  /** Whether there is a gzipped variant, which is only kept when it is smaller. */
+  public boolean hasGzipped() {
+    return gzipped != null;
+  }
+
+  /** The length of the plain or the gzipped bytes. */
+  public int getLength(boolean gzip) {
+    return (gzip ? gzipped : bytes).remaining();
+  }
+
+  /** The number of bytes held by the resource. */
+  public long getSize() {
+    return bytes.capacity() + (gzipped == null ? 0 : gzipped.capacity());
+  }
+
+  /** Writes the plain or the gzipped bytes. */
+  public void writeTo(OutputStream out, boolean gzip) throws IOException {
+    ByteBuffer source = (gzip ? gzipped : bytes).duplicate();
+    byte[] chunk = new byte[Math.min(CHUNK_SIZE, source.remaining())];
+    while (source.hasRemaining()) {
+      int length = Math.min(chunk.length, source.remaining());
+      source.get(chunk, 0, length);
+      out.write(chunk, 0, length);
+    }
+  }
+
+  /** The digest of the bytes, which identifies the resource. */
+  public String getDigest() {
+    return digest;
+  }
+
+  /** A quoted, strong ETag derived from the bytes. */
+  public String getEtag() {
+    return etag;
+  }
+
+  /** Whether an If-None-Match header value matches this resource. */
+  public boolean matches(String ifNoneMatch) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      String trimmed = tag.trim();
+      if ("*".equals(trimmed) || etag.equals(trimmed)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
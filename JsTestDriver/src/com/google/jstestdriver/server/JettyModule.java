@@ -22,14 +22,14 @@ import com.google.jstestdriver.annotations.MaxFormContentSize;
 import com.google.jstestdriver.annotations.Port;
 import com.google.jstestdriver.model.HandlerPathPrefix;
 
-import org.mortbay.jetty.Handler;
+import org.mortbay.jetty.Connector;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.bio.SocketConnector;
+import org.mortbay.jetty.nio.SelectChannelConnector;
 import org.mortbay.jetty.security.SslSocketConnector;
 import org.mortbay.jetty.servlet.Context;
 import org.mortbay.jetty.servlet.HashSessionIdManager;
 import org.mortbay.jetty.servlet.ServletHolder;
-import org.mortbay.servlet.GzipFilter;
 
 import java.net.URL;
 import java.util.Random;
@@ -50,11 +50,19 @@ public class JettyModule extends AbstractModule {
   private final int port;
   private final int sslPort;
   private final HandlerPathPrefix handlerPrefix;
-
-  public JettyModule(int port, int sslPort, HandlerPathPrefix handlerPrefix) {
+  private final boolean nioConnector;
+
+  /**
+   * @param nioConnector Serve http with a select channel connector, which
+   *     lets the long polling handlers suspend their requests instead of
+   *     holding a thread for every browser and client.
+   */
+  public JettyModule(int port, int sslPort, HandlerPathPrefix handlerPrefix,
+      boolean nioConnector) {
     this.port = port;
     this.sslPort = sslPort;
     this.handlerPrefix = handlerPrefix;
+    this.nioConnector = nioConnector;
   }
 
   @Override
@@ -75,8 +83,8 @@ public class JettyModule extends AbstractModule {
 
   @Provides
   @Singleton
-  SocketConnector provideSocketConnector(@Port Integer port) {
-    SocketConnector connector = new SocketConnector();
+  Connector provideConnector(@Port Integer port) {
+    Connector connector = nioConnector ? new SelectChannelConnector() : new SocketConnector();
     connector.setPort(port);
     return connector;
   }
@@ -89,7 +97,7 @@ public class JettyModule extends AbstractModule {
 
   @Provides
   @Singleton
-  Server provideJettyServer(SocketConnector connector, SslSocketConnector sslConnector,
+  Server provideJettyServer(Connector connector, SslSocketConnector sslConnector,
       @MaxFormContentSize Integer maxFormContentSize, ServletHolder servletHolder) {
     Server server = new Server();
     server.setGracefulShutdown(1);
@@ -100,7 +108,6 @@ public class JettyModule extends AbstractModule {
     Context context = new Context(server, "/", Context.SESSIONS);
     context.setMaxFormContentSize(maxFormContentSize);
 
-    context.addFilter(GzipFilter.class, handlerPrefix.prefixPath("/test/*"), Handler.ALL);
     // TODO(rdionne): Fix HttpServletRequest#getPathInfo() provided by
     // RequestHandlerServlet.
     context.addServlet(servletHolder, handlerPrefix.prefixPath("/"));
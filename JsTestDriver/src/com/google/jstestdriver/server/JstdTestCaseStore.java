@@ -2,98 +2,494 @@
 
 package com.google.jstestdriver.server;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.google.jstestdriver.FileInfo;
 import com.google.jstestdriver.FilesCache;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.model.JstdTestCaseDelta;
+import com.google.jstestdriver.model.Sessions;
+import com.google.jstestdriver.util.ContentDigest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A store for JstdTestCases.
+ *
+ * Readers never take a lock: files are kept in a concurrent
+ * {@link FilesCache} that is updated one path at a time, and the test cases
+ * are published as immutable, versioned {@link Snapshot}s that writers
+ * replace with a compare and set.
+ *
+ * Clients sharing a server may each name a session. A session has its own
+ * test cases and files, so concurrent runs don't replace each other's test
+ * cases or files at the same path. Clients that don't name one share the
+ * default session. Named sessions are dropped after an hour without use.
+ *
+ * The contents of loaded files are moved into a bounded {@link ResourceCache},
+ * keyed by the digest of the contents so identical files are held once for
+ * all sessions. When they are evicted the files become unloaded again, and the
+ * next upload of a test case that uses them asks the client for them, unless
+ * the optional {@link ContentStore} on disk still has their contents. The disk
+ * store is keyed by the digest the server computes of the contents, so files
+ * uploaded before a restart of the server don't need to be uploaded again, and
+ * a client with a wrong digest can't replace the contents other clients get. Contents are written to disk by
+ * a {@link BackgroundContentStore}, off the upload.
  * @author corysmith@google.com (Cory Smith)
  *
  */
 @Singleton
 public class JstdTestCaseStore {
   private static final Logger logger = LoggerFactory.getLogger(JstdTestCaseStore.class);
-  private final ConcurrentMap<String, JstdTestCase> cases =
-      new ConcurrentHashMap<String, JstdTestCase>();
-  private final FilesCache files = new FilesCache(Maps.<String, FileInfo>newHashMap());
 
+  /** The milliseconds a named session is kept without being used. */
+  static final long SESSION_TIMEOUT = 60 * 60 * 1000L;
+
+  /** The milliseconds the files of a test case are kept in memory once a browser syncs it. */
+  static final long PIN_TIMEOUT = 10 * 60 * 1000L;
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(
+      new Snapshot(0, Collections.<String, Cases>emptyMap()));
+  private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+  private final ResourceCache resources;
+  private final ContentStore contents;
 
+  /** The default size of the resource cache, in megabytes. */
+  public static final int DEFAULT_CACHE_SIZE = 128;
+
+  public JstdTestCaseStore() {
+    this(DEFAULT_CACHE_SIZE, new NullContentStore());
+  }
 
   /**
-   * Adds a testcase to the store, returning a delta of files that need to be
-   * loaded.
+   * @param cacheSize The megabytes of file contents to keep in memory.
+   * @param fileStore The directory to keep file contents in across restarts,
+   *     or an empty string to keep them only in memory.
+   * @param fileStoreSize The megabytes of file contents to keep on disk.
+   */
+  @Inject
+  public JstdTestCaseStore(@Named("resourceCacheSize") int cacheSize,
+      @Named("fileStore") String fileStore,
+      @Named("fileStoreSize") int fileStoreSize) {
+    this(cacheSize, fileStore.length() == 0 ? new NullContentStore()
+        : new BackgroundContentStore(
+            new DiskContentStore(new File(fileStore), fileStoreSize * 1024L * 1024L)));
+  }
+
+  public JstdTestCaseStore(int cacheSize, ContentStore contents) {
+    this.resources = new ResourceCache(cacheSize * 1024L * 1024L);
+    this.contents = contents;
+    sessions.put(Sessions.DEFAULT_SESSION, new Session(System.currentTimeMillis()));
+  }
+
+  /** The files of a session. */
+  private static final class Session {
+    final FilesCache files = new FilesCache(Maps.<String, FileInfo>newHashMap());
+    volatile long lastUsed;
+
+    Session(long lastUsed) {
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  /**
+   * An immutable view of the test cases in the store. Each change to the
+   * store publishes a new snapshot with a higher version.
+   */
+  public static final class Snapshot {
+    private final long version;
+    private final Map<String, Cases> sessions;
+
+    private Snapshot(long version, Map<String, Cases> sessions) {
+      this.version = version;
+      this.sessions = sessions;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    /** Retrieve a test case of the default session, or null if it is unknown. */
+    public JstdTestCase getCase(String testCaseId) {
+      return getCase(Sessions.DEFAULT_SESSION, testCaseId);
+    }
+
+    /** Retrieve a test case of a session, or null if it is unknown. */
+    public JstdTestCase getCase(String session, String testCaseId) {
+      Cases cases = sessions.get(session);
+      if (testCaseId == null || cases == null) {
+        return null;
+      }
+      return cases.cases.get(testCaseId);
+    }
+
+    /** The test cases of the default session. */
+    public Collection<JstdTestCase> getCases() {
+      return getCases(Sessions.DEFAULT_SESSION);
+    }
+
+    public Collection<JstdTestCase> getCases(String session) {
+      Cases cases = sessions.get(session);
+      if (cases == null) {
+        return Collections.emptyList();
+      }
+      return Collections.unmodifiableCollection(cases.cases.values());
+    }
+
+    private Snapshot with(String session, JstdTestCase testCase) {
+      Cases cases = sessions.containsKey(session) ? sessions.get(session) : Cases.EMPTY;
+      return withCases(session, cases.with(testCase));
+    }
+
+    private Snapshot apply(String session, JstdTestCaseDelta delta) {
+      Cases cases = sessions.get(session);
+      if (cases == null) {
+        return new Snapshot(version + 1, sessions);
+      }
+      return withCases(session, cases.apply(delta));
+    }
+
+    private Snapshot without(String session) {
+      Map<String, Cases> updated = Maps.newHashMap(sessions);
+      updated.remove(session);
+      return new Snapshot(version + 1, updated);
+    }
+
+    /** Replaces the cases of a session, sharing those of the other sessions. */
+    private Snapshot withCases(String session, Cases cases) {
+      if (sessions.get(session) == cases) {
+        return new Snapshot(version + 1, sessions);
+      }
+      Map<String, Cases> updated = Maps.newHashMap(sessions);
+      updated.put(session, cases);
+      return new Snapshot(version + 1, updated);
+    }
+
+    @Override
+    public String toString() {
+      return "Snapshot [version=" + version + ", sessions=" + sessions + "]";
+    }
+  }
+
+  /**
+   * The test cases of a session. The test cases are indexed by the paths of
+   * their files, so a delta only rewrites the cases that contain one of its
+   * files. The other cases, and the index, are shared with the next version.
+   */
+  private static final class Cases {
+    static final Cases EMPTY = new Cases(Collections.<String, JstdTestCase>emptyMap(),
+        Collections.<String, Set<String>>emptyMap());
+
+    final Map<String, JstdTestCase> cases;
+    /** The ids of the test cases containing each file path. */
+    final Map<String, Set<String>> index;
+
+    Cases(Map<String, JstdTestCase> cases, Map<String, Set<String>> index) {
+      this.cases = cases;
+      this.index = index;
+    }
+
+    Cases with(JstdTestCase testCase) {
+      Map<String, JstdTestCase> updated = Maps.newHashMap(cases);
+      JstdTestCase old = updated.put(testCase.getId(), testCase);
+      return new Cases(updated, reindex(old, testCase));
+    }
+
+    /** Copies the index, moving the id of a replaced test case to its new paths. */
+    private Map<String, Set<String>> reindex(JstdTestCase old, JstdTestCase testCase) {
+      Set<String> oldPaths = old == null ? Collections.<String>emptySet() : pathsOf(old);
+      Set<String> newPaths = pathsOf(testCase);
+      Map<String, Set<String>> updated = Maps.newHashMap(index);
+      for (String path : oldPaths) {
+        if (!newPaths.contains(path)) {
+          Set<String> ids = Sets.newHashSet(updated.get(path));
+          ids.remove(testCase.getId());
+          if (ids.isEmpty()) {
+            updated.remove(path);
+          } else {
+            updated.put(path, Collections.unmodifiableSet(ids));
+          }
+        }
+      }
+      for (String path : newPaths) {
+        if (!oldPaths.contains(path)) {
+          Set<String> ids = updated.containsKey(path)
+              ? Sets.newHashSet(updated.get(path)) : Sets.<String>newHashSet();
+          ids.add(testCase.getId());
+          updated.put(path, Collections.unmodifiableSet(ids));
+        }
+      }
+      return updated;
+    }
+
+    private static Set<String> pathsOf(JstdTestCase testCase) {
+      Set<String> paths = Sets.newHashSet();
+      for (FileInfo file : testCase) {
+        paths.add(file.getFilePath());
+      }
+      return paths;
+    }
+
+    Cases apply(JstdTestCaseDelta delta) {
+      Set<String> affected = Sets.newHashSet();
+      for (FileInfo file : Iterables.concat(
+          delta.getDependencies(), delta.getTests(), delta.getPlugins())) {
+        Set<String> ids = index.get(file.getFilePath());
+        if (ids != null) {
+          affected.addAll(ids);
+        }
+      }
+      if (affected.isEmpty()) {
+        return this;
+      }
+      // a delta keeps the paths of the files it replaces, so the index is shared.
+      Map<String, JstdTestCase> applied = Maps.newHashMap(cases);
+      for (String id : affected) {
+        applied.put(id, cases.get(id).applyDelta(delta));
+      }
+      return new Cases(applied, index);
+    }
+
+    @Override
+    public String toString() {
+      return cases.toString();
+    }
+  }
+
+  /**
+   * Adds a testcase to the default session, returning a delta of files that
+   * need to be loaded.
    */
   public JstdTestCaseDelta addCase(JstdTestCase testCase) {
-    JstdTestCase updatedTestCase;
-    synchronized (files) {
-      updatedTestCase = testCase.applyDelta(new JstdTestCaseDelta(
-          updateCache(testCase.getDependencies()),
-          updateCache(testCase.getTests()),
-          updateCache(testCase.getPlugins())));
+    return addCase(Sessions.DEFAULT_SESSION, testCase);
+  }
+
+  /**
+   * Adds a testcase to a session, returning a delta of files that need to be
+   * loaded.
+   */
+  public JstdTestCaseDelta addCase(String session, JstdTestCase testCase) {
+    logger.info("adding TestCase {} to session '{}' of {}",
+        new Object[] {testCase.getId(), session, this});
+    FilesCache files = session(session).files;
+    // stored once, so the retries below only compare and replace.
+    List<FileInfo> dependencies = store(files, testCase.getDependencies());
+    List<FileInfo> tests = store(files, testCase.getTests());
+    List<FileInfo> plugins = store(files, testCase.getPlugins());
+    while (true) {
+      Snapshot current = snapshot.get();
+      // resolved against the files on each attempt, so a delta applied
+      // while the case was being added is not lost.
+      JstdTestCase updatedTestCase = testCase.applyDelta(new JstdTestCaseDelta(
+          updateCache(files, dependencies),
+          updateCache(files, tests),
+          updateCache(files, plugins)));
+      if (snapshot.compareAndSet(current, current.with(session, updatedTestCase))) {
+        return updatedTestCase.createUnloadedDelta();
+      }
     }
-    logger.info("adding TestCase {} to {}", testCase.getId(), this);
-    cases.put(testCase.getId(), updatedTestCase);
-    return updatedTestCase.createUnloadedDelta();
   }
 
   /**
-   * Updates the files cache with files and returns ones that are already to
-   * update the testcase with.
+   * Returns the files of a session, starting the session if needed. Starting
+   * a session drops the ones that haven't been used for a while.
    */
-  private List<FileInfo> updateCache(List<FileInfo> newFiles) {
-    List<FileInfo> replace = Lists.newArrayList();
+  private Session session(String name) {
+    long now = System.currentTimeMillis();
+    Session session = sessions.get(name);
+    if (session == null) {
+      Session started = new Session(now);
+      session = sessions.putIfAbsent(name, started);
+      if (session == null) {
+        logger.info("started session '{}'", name);
+        expireSessions(now);
+        return started;
+      }
+    }
+    session.lastUsed = now;
+    return session;
+  }
+
+  /** Drops the named sessions, with their test cases, unused since the timeout. */
+  void expireSessions(long now) {
+    for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+      String name = entry.getKey();
+      if (!Sessions.DEFAULT_SESSION.equals(name) && now - entry.getValue().lastUsed > SESSION_TIMEOUT
+          && sessions.remove(name, entry.getValue())) {
+        while (true) {
+          Snapshot current = snapshot.get();
+          if (snapshot.compareAndSet(current, current.without(name))) {
+            break;
+          }
+        }
+        logger.info("expired session '{}'", name);
+      }
+    }
+  }
+
+  /**
+   * Updates the files cache with files and returns the ones to update the
+   * test cases with.
+   */
+  private List<FileInfo> updateCache(FilesCache files, List<FileInfo> newFiles) {
+    List<FileInfo> replace = Lists.newArrayListWithCapacity(newFiles.size());
+    for (FileInfo file : newFiles) {
+      replace.add(updateFile(files, file));
+    }
+    return replace;
+  }
+
+  /** Stores each of the files, see {@link #store(FilesCache, FileInfo)}. */
+  private List<FileInfo> store(FilesCache files, List<FileInfo> newFiles) {
+    List<FileInfo> stored = Lists.newArrayListWithCapacity(newFiles.size());
     for (FileInfo file : newFiles) {
-      FileInfo oldFile = files.getFile(file.getDisplayPath());
+      stored.add(store(files, file));
+    }
+    return stored;
+  }
+
+  /**
+   * Loads an unloaded file from the content store, or saves the contents of a
+   * loaded one to it, and moves loaded contents to the resource cache. The
+   * contents are saved under the digest computed here rather than the one the
+   * client claims for them.
+   * @return The file to update the files cache with.
+   */
+  private FileInfo store(FilesCache files, FileInfo file) {
+    boolean uploaded = file.isLoaded() && !(file instanceof CachedFileInfo);
+    if (!file.isLoaded()) {
+      file = loadStored(files, file);
+    }
+    if (file.isLoaded() && !(file instanceof CachedFileInfo)) {
+      String data = file.getData();
+      CachedFileInfo cached = cache(file);
+      if (uploaded) {
+        contents.save(cached.getContentDigest(), data);
+      }
+      file = cached;
+    }
+    return file;
+  }
+
+  /**
+   * Updates a single path of the files cache, retrying when another upload
+   * changed it in the meantime.
+   * @return The file for the test cases to use.
+   */
+  private FileInfo updateFile(FilesCache files, FileInfo file) {
+    String path = file.getDisplayPath();
+    while (true) {
+      FileInfo oldFile = files.getFile(path);
       if (oldFile == null) {
-        files.addFile(file);
-        logger.debug("adding {}", file.getDisplayPath());
-      } else if (oldFile.shouldReplaceWith(file)) {
-        logger.debug("replacing {}", oldFile.getDisplayPath());
-        files.addFile(file);
-      } else if (file.isLoaded()) {
-        logger.debug("updating {} (loaded)", file.getDisplayPath());
-        files.addFile(file);
-      } else if (oldFile.isLoaded() && !file.isLoaded()){
-        logger.debug("not replacing {}", file.getDisplayPath());
+        if (files.addFileIfAbsent(file) == null) {
+          logger.debug("adding {}", path);
+          return file;
+        }
+      } else if (oldFile.shouldReplaceWith(file) || file.isLoaded()) {
+        if (files.replaceFile(oldFile, file)) {
+          if (file.isLoaded()) {
+            logger.debug("updating {} (loaded)", path);
+          } else {
+            logger.debug("replacing {}", path);
+          }
+          return file;
+        }
+      } else if (oldFile.isLoaded() && !file.isLoaded()) {
+        logger.debug("not replacing {}", path);
         // the old file the same as the new, except the old is loaded.
-        replace.add(oldFile);
+        return oldFile;
       } else {
-        logger.debug("files are equal {}", file.getDisplayPath());
+        logger.debug("files are equal {}", path);
+        return file;
       }
     }
-    return replace;
   }
 
   /**
-   * Returns a collection of all the test cases.
+   * Moves the contents of a loaded file to the resource cache. Contents that
+   * are already cached, for another session or path, are shared rather than
+   * encoded again.
+   */
+  private CachedFileInfo cache(FileInfo file) {
+    byte[] bytes = EncodedResource.toBytes(file.getData());
+    String digest = ContentDigest.of(bytes);
+    if (!resources.contains(digest)) {
+      resources.put(EncodedResource.encode(bytes, digest));
+    }
+    return new CachedFileInfo(file, resources, digest);
+  }
+
+  /**
+   * Loads an unloaded file from the content store, unless the cached file at
+   * its path is loaded and the same. Only contents that digest to the digest of
+   * the file are used, so files whose digests identify more than their contents,
+   * such as post processed ones, are uploaded again.
+   * @return The loaded file, or the file if its contents aren't stored.
+   */
+  private FileInfo loadStored(FilesCache files, FileInfo file) {
+    if (file.getDigest() == null) {
+      return file;
+    }
+    FileInfo oldFile = files.getFile(file.getDisplayPath());
+    if (oldFile != null && oldFile.isLoaded() && !oldFile.shouldReplaceWith(file)) {
+      return file;
+    }
+    String data = contents.load(file.getDigest());
+    if (data == null) {
+      return file;
+    }
+    if (!file.getDigest().equals(ContentDigest.of(EncodedResource.toBytes(data)))) {
+      logger.warn("Ignoring stored contents of {} that don't match digest {}",
+          file.getDisplayPath(), file.getDigest());
+      return file;
+    }
+    logger.debug("loaded {} from the file store", file.getDisplayPath());
+    return file.load(data, file.getTimestamp());
+  }
+
+  /**
+   * Returns the current snapshot of the test cases, for readers that need a
+   * consistent view across several lookups.
+   */
+  public Snapshot snapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Returns a collection of all the test cases of the default session.
    */
   public Collection<JstdTestCase> getCases() {
-    return cases.values();
+    return snapshot.get().getCases();
   }
 
   /**
-   * Retrieve a test case from the store.
+   * Retrieve a test case from the default session.
    */
   public JstdTestCase getCase(String testCaseId) {
-    if (testCaseId == null) {
-      return null;
-    }
-    return cases.get(testCaseId);
+    return snapshot.get().getCase(testCaseId);
+  }
+
+  /**
+   * Retrieve a test case from a session.
+   */
+  public JstdTestCase getCase(String session, String testCaseId) {
+    return snapshot.get().getCase(session, testCaseId);
   }
 
   /**
@@ -102,24 +498,103 @@ public class JstdTestCaseStore {
   // TODO(corysmith): Workaround until the semantics of loading files are worked
   // out. Ideally, there should be some way of associating a file with a slaved browser.
   public String getFileContent(String path) {
-    return files.getFileContent(path);
+    return sessions.get(Sessions.DEFAULT_SESSION).files.getFileContent(path);
   }
 
   /**
-   * Applies a JstdTestCaseDelta to the file cache and all test cases.
+   * Returns the encoded contents of a given filename of the default session.
+   * @throws FilesCache.MissingFileException if the file is unknown, hasn't
+   *     been loaded or was evicted from both the resource cache and the
+   *     content store.
    */
-  public void applyDelta(JstdTestCaseDelta delta) {
-    synchronized (files) {
-      updateCache(delta.getDependencies());
-      updateCache(delta.getTests());
-      updateCache(delta.getPlugins());
+  public EncodedResource getEncodedResource(String path) {
+    return getEncodedResource(Sessions.DEFAULT_SESSION, path);
+  }
+
+  /**
+   * Returns the encoded contents of a given filename of a session.
+   * @throws FilesCache.MissingFileException if the session or file is
+   *     unknown, the file hasn't been loaded or was evicted from both the
+   *     resource cache and the content store.
+   */
+  public EncodedResource getEncodedResource(String session, String path) {
+    Session owner = sessions.get(session);
+    if (owner == null) {
+      throw new FilesCache.MissingFileException();
+    }
+    owner.lastUsed = System.currentTimeMillis();
+    FileInfo file = owner.files.getFile(path);
+    if (file instanceof CachedFileInfo) {
+      EncodedResource resource = ((CachedFileInfo) file).getResource();
+      if (resource != null) {
+        return resource;
+      }
+      // evicted from memory, but it may still be on disk.
+      FileInfo reloaded = updateFile(owner.files, store(owner.files, file));
+      if (reloaded instanceof CachedFileInfo) {
+        resource = ((CachedFileInfo) reloaded).getResource();
+        if (resource != null) {
+          return resource;
+        }
+      }
+    }
+    throw new FilesCache.MissingFileException();
+  }
+
+  /** Returns the cache holding the contents of the loaded files. */
+  /**
+   * Keeps the cached contents of a test case from being evicted for the
+   * {@link #PIN_TIMEOUT}, so a browser that was told to load the test case
+   * can still fetch its files when other sessions fill the cache meanwhile.
+   * The pins expire by themselves, so browsers that never fetch don't hold
+   * the contents forever.
+   */
+  public void pin(String session, JstdTestCase testCase) {
+    Session owner = sessions.get(session);
+    if (owner == null) {
+      return;
+    }
+    long until = System.currentTimeMillis() + PIN_TIMEOUT;
+    for (FileInfo file : testCase) {
+      FileInfo cached = owner.files.getFile(file.getDisplayPath());
+      if (cached instanceof CachedFileInfo) {
+        resources.pin(((CachedFileInfo) cached).getContentDigest(), until);
+      }
     }
-    synchronized (cases) {
-      Map<String, JstdTestCase> applied = Maps.newHashMap();
-      for (Entry<String, JstdTestCase> entry : cases.entrySet()) {
-        applied.put(entry.getKey(), entry.getValue().applyDelta(delta));
+  }
+
+  public ResourceCache getResourceCache() {
+    return resources;
+  }
+
+  /** Returns the number of sessions, including the default one. */
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Applies a JstdTestCaseDelta to the file cache and all test cases of the
+   * default session.
+   */
+  public void applyDelta(JstdTestCaseDelta delta) {
+    applyDelta(Sessions.DEFAULT_SESSION, delta);
+  }
+
+  /**
+   * Applies a JstdTestCaseDelta to the file cache and all test cases of a
+   * session.
+   */
+  public void applyDelta(String session, JstdTestCaseDelta delta) {
+    FilesCache files = session(session).files;
+    JstdTestCaseDelta stored = new JstdTestCaseDelta(
+        updateCache(files, store(files, delta.getDependencies())),
+        updateCache(files, store(files, delta.getTests())),
+        updateCache(files, store(files, delta.getPlugins())));
+    while (true) {
+      Snapshot current = snapshot.get();
+      if (snapshot.compareAndSet(current, current.apply(session, stored))) {
+        return;
       }
-      cases.putAll(applied);
     }
   }
 }
@@ -0,0 +1,16 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+/**
+ * A ContentStore that keeps nothing, for servers without a file store.
+ */
+public class NullContentStore implements ContentStore {
+
+  public String load(String digest) {
+    return null;
+  }
+
+  public void save(String digest, String data) {
+  }
+}
@@ -0,0 +1,190 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.server;
+
+import com.google.common.collect.Lists;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the encoded contents of the test resources up to a number of bytes,
+ * evicting the least recently used resources when it is full. Resources are
+ * keyed by the digest of their contents, so identical files uploaded by
+ * different sessions, or at different paths, are only held once.
+ *
+ * Resources can be pinned for a while, so the files a browser is about to
+ * load aren't evicted by the uploads of other sessions meanwhile.
+ *
+ * Lookups don't lock; only evictions and pins are serialized.
+ */
+public final class ResourceCache {
+  private static final Logger logger = LoggerFactory.getLogger(ResourceCache.class);
+
+  private static final Comparator<Candidate> LEAST_RECENTLY_USED =
+      new Comparator<Candidate>() {
+        public int compare(Candidate a, Candidate b) {
+          return a.lastUsed < b.lastUsed ? -1 : (a.lastUsed > b.lastUsed ? 1 : 0);
+        }
+      };
+
+  private static final class Entry {
+    final EncodedResource resource;
+    volatile long lastUsed;
+    volatile long pinnedUntil;
+
+    Entry(EncodedResource resource, long lastUsed) {
+      this.resource = resource;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  /** An entry with its last use fixed, as readers keep updating it while sorting. */
+  private static final class Candidate {
+    final String digest;
+    final Entry entry;
+    final long lastUsed;
+
+    Candidate(String digest, Entry entry) {
+      this.digest = digest;
+      this.entry = entry;
+      this.lastUsed = entry.lastUsed;
+    }
+  }
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final long capacity;
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final Object evictionLock = new Object();
+
+  /** @param capacity The number of bytes to hold before evicting. */
+  public ResourceCache(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Stores a resource under its digest, unless a resource with the same
+   * digest is already cached.
+   * @return The cached resource, which is shared by everyone storing the
+   *     same contents.
+   */
+  public EncodedResource put(EncodedResource resource) {
+    Entry entry = new Entry(resource, clock.incrementAndGet());
+    Entry cached = entries.putIfAbsent(resource.getDigest(), entry);
+    if (cached != null) {
+      cached.lastUsed = clock.incrementAndGet();
+      return cached.resource;
+    }
+    if (size.addAndGet(resource.getSize()) > capacity) {
+      evict(entry);
+    }
+    return resource;
+  }
+
+  /**
+   * Returns the resource with a digest.
+   * @return The resource, or null if it was evicted or never stored.
+   */
+  public EncodedResource get(String digest) {
+    Entry entry = entries.get(digest);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    entry.lastUsed = clock.incrementAndGet();
+    return entry.resource;
+  }
+
+  /** Whether the resource with a digest is cached. */
+  public boolean contains(String digest) {
+    return entries.containsKey(digest);
+  }
+
+  /**
+   * Keeps the resource with a digest from being evicted until a time, or
+   * longer if it was already pinned for longer.
+   * @param until The time in milliseconds the pin expires.
+   * @return Whether the resource is cached.
+   */
+  public boolean pin(String digest, long until) {
+    synchronized (evictionLock) {
+      Entry entry = entries.get(digest);
+      if (entry == null) {
+        return false;
+      }
+      entry.pinnedUntil = Math.max(entry.pinnedUntil, until);
+      return true;
+    }
+  }
+
+  /**
+   * Evicts the least recently used resources until the cache is a little
+   * under its capacity, so the next few stores don't evict again. The entry
+   * just stored and the pinned entries are kept, even if they don't fit.
+   */
+  private void evict(Entry stored) {
+    synchronized (evictionLock) {
+      if (size.get() <= capacity) {
+        return;
+      }
+      List<Candidate> candidates = Lists.newArrayListWithCapacity(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+      }
+      Collections.sort(candidates, LEAST_RECENTLY_USED);
+      long target = capacity - capacity / 10;
+      long now = System.currentTimeMillis();
+      for (Candidate candidate : candidates) {
+        if (size.get() <= target) {
+          break;
+        }
+        if (candidate.entry != stored && candidate.entry.pinnedUntil <= now
+            && entries.remove(candidate.digest, candidate.entry)) {
+          size.addAndGet(-candidate.entry.resource.getSize());
+          evictions.incrementAndGet();
+          logger.debug("evicted {}", candidate.digest);
+        }
+      }
+    }
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /** The number of bytes held by the cached resources. */
+  public long getSize() {
+    return size.get();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceCache [size=" + size + ", capacity=" + capacity + ", hits=" + hits
+        + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+}
@@ -29,11 +29,15 @@ import com.google.jstestdriver.LoadedFiles;
 import com.google.jstestdriver.Response;
 import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.StreamMessage;
 import com.google.jstestdriver.protocol.BrowserLog;
+import com.google.jstestdriver.protocol.BrowserResponseBatch;
 import com.google.jstestdriver.protocol.BrowserStreamAcknowledged;
+import com.google.jstestdriver.protocol.ProtocolGson;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
 
 import org.mortbay.jetty.MimeTypes;
+import org.mortbay.util.ajax.Continuation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,13 +60,15 @@ class BrowserQueryResponseHandler implements RequestHandler {
   private static final Logger logger =
       LoggerFactory.getLogger(BrowserQueryResponseHandler.class);
 
-  private final Gson gson = new Gson();
+  private final Gson gson = ProtocolGson.create();
 
   private final HttpServletRequest request;
   private final HttpServletResponse response;
   private final CapturedBrowsers browsers;
   // TODO(corysmith): factor out a streaming session class.
   private final ConcurrentMap<SlaveBrowser, List<String>> streamedResponses;
+  /** Set while handling a request that waits for commands without a thread. */
+  private Continuation continuation;
 
   @Inject
   public BrowserQueryResponseHandler(
@@ -78,19 +84,28 @@ class BrowserQueryResponseHandler implements RequestHandler {
 
   @Override
   public void handleIt() throws IOException {
-    logger.trace("Browser Query Post:\n\tpath:{}\n\tresponse:{}\n\tdone:{}\n\tresponseId:{}",
+    logger.trace("Browser Query Post:\n\tpath:{}\n\tresponse:{}\n\tdone:{}\n\tresponseId:{}\n\tbatch:{}",
         new Object[] {
           request.getPathInfo().substring(1),
           request.getParameter("response"),
           request.getParameter("done"),
-          request.getParameter("responseId")
+          request.getParameter("responseId"),
+          request.getParameter("batch")
         });
 
     response.setContentType(MimeTypes.TEXT_JSON_UTF_8);
+    continuation = Continuations.suspendable(request);
+    if (continuation != null && continuation.isPending()) {
+      // resumed while waiting for a command, the responses were handled when
+      // the request was first dispatched.
+      serviceResumed(request.getPathInfo().substring(1), response.getWriter());
+      return;
+    }
     service(request.getPathInfo().substring(1),
             request.getParameter("response"),
             request.getParameter("done"),
             request.getParameter("responseId"),
+            request.getParameter("batch"),
             response.getWriter());
   }
 
@@ -99,11 +114,24 @@ class BrowserQueryResponseHandler implements RequestHandler {
                       String done,
                       String responseId,
                       PrintWriter writer) {
+    service(id, response, done, responseId, null, writer);
+  }
+
+  public void service(String id,
+                      String response,
+                      String done,
+                      String responseId,
+                      String batch,
+                      PrintWriter writer) {
     SlaveBrowser browser = browsers.getBrowser(id);
 
     if (browser != null) {
       boolean isLast = Boolean.parseBoolean(done);
       try {
+        if (isResponseValid(batch)) {
+          // a trailing response closes the stream instead of the batch.
+          serviceBatch(batch, isLast && !isResponseValid(response), browser);
+        }
         serviceBrowser(response, isLast, responseId, writer, browser);
       } catch (JsonParseException e) {
         writer.print(gson.toJson(new JsonCommand(JsonCommand.CommandType.STOP, null)));
@@ -113,70 +141,40 @@ class BrowserQueryResponseHandler implements RequestHandler {
     } else {
       // TODO(corysmith): handle this better.
       logger.error("Unknown browser {} with response {}.\n Known {}", new Object[]{id, response, browsers.getSlaveBrowsers()});
-      writer.print(gson.toJson(new JsonCommand(JsonCommand.CommandType.STOP, Lists.newArrayList("Stopping due to missing browser."))));
-      try {
-        Thread.sleep(1000); // pause to make sure the browser doesn't spin.
-      } catch (InterruptedException e) {
-        
-      }
+      stopMissingBrowser(writer);
     }
     writer.flush();
   }
 
+  private void serviceResumed(String id, PrintWriter writer) {
+    SlaveBrowser browser = browsers.getBrowser(id);
+    if (browser != null) {
+      sendCommand(browser, writer);
+    } else {
+      logger.error("Browser {} removed while waiting for a command.", id);
+      stopMissingBrowser(writer);
+    }
+    writer.flush();
+  }
+
+  private void stopMissingBrowser(PrintWriter writer) {
+    writer.print(gson.toJson(new JsonCommand(JsonCommand.CommandType.STOP, Lists.newArrayList("Stopping due to missing browser."))));
+    try {
+      Thread.sleep(1000); // pause to make sure the browser doesn't spin.
+    } catch (InterruptedException e) {
+      
+    }
+  }
+
   private void serviceBrowser(String response, Boolean done, String responseId, PrintWriter writer,
       SlaveBrowser browser) throws JsonParseException {
     addResponseId(responseId, browser);
     browser.heartBeat();
-    Command command = null;
     if (isResponseValid(response)) {
       Response res = gson.fromJson(response, Response.class);
-      logger.trace("response type: " +  res.getResponseType());
-      // TODO (corysmith): Replace this with polymorphism,
-      // using the response type to create disposable actions.
-      switch (res.getResponseType()) {
-        case BROWSER_READY:
-          handleFileLoadResult(browser, res);
-          // TODO(corysmith): Move the loading of files to a browser into the
-          // server
-          browser.addResponse(
-              new Response(ResponseType.FILE_LOAD_RESULT.toString(), res.getResponse(), browser
-                  .getBrowserInfo(), "", res.getExecutionTime()), false);
-          browser.ready();
-          break;
-        case FILE_LOAD_RESULT:
-          handleFileLoadResult(browser, res);
-          browser.addResponse(res, done);
-          break;
-        case NOOP:
-          break;
-        case LOG:
-          BrowserLog log = gson.fromJson(res.getResponse(), res.getGsonType());
-          if (log.getLevel() == 1000) {
-            logger.info("Error in browser: " + res.toString());
-          } else {
-            logger.info("Message from the browser: " + res.toString());
-          }
-          browser.addResponse(res, done);
-          break;
-        // reset the browsers fileset.
-        case RESET_RESULT:
-          browser.resetFileSet();
-          logger.debug("Clearing fileset for {}", browser);
-          handleFileLoadResult(browser, res);
-          // queue the load results for the next command to be run.
-          browser.addResponse(
-              new Response(ResponseType.FILE_LOAD_RESULT.toString(), res.getResponse(), browser
-                  .getBrowserInfo(), "", res.getExecutionTime()), false);
-          browser.addResponse(res, done);
-          break;
-        case UNKNOWN:
-          logger.error("Recieved Unknown: " + response);
-          browser.addResponse(res, done);
-          break;
-        default:
-          browser.addResponse(res, done);
-          break;
-      }
+      List<StreamMessage> messages = Lists.newArrayListWithCapacity(2);
+      handleResponse(browser, res, done, messages);
+      browser.addResponses(messages);
       logger.trace("Received:\n done: {} \n res:\n {}\n", new Object[] {done, res});
     }
     if (isResponseIdValid(responseId) && !done && !isResponseValid(response)) {
@@ -200,37 +198,128 @@ class BrowserQueryResponseHandler implements RequestHandler {
     } else {
       streamedResponses.clear();
     }
-    if(command == null) {
-     command = browser.dequeueCommand();
-     browser.heartBeat();
-    }
-    
-    logger.trace("sending command {}", command == null ? "null" : command.getCommand());
+    sendCommand(browser, writer);
+  }
+
+  /**
+   * Writes the next command for the browser. When suspending requests, the
+   * request is suspended until a command is queued.
+   */
+  private void sendCommand(SlaveBrowser browser, PrintWriter writer) {
+    Command command = continuation == null
+        ? browser.dequeueCommand() : browser.dequeueCommand(continuation);
+    browser.heartBeat();
+
+    logger.trace("sending command {}", command.getCommand());
     writer.print(command.getCommand());
   }
 
+  /**
+   * Parses a batch of streamed responses in a single pass, and queues them on
+   * the browser together. The done flag applies to the last response.
+   */
+  private void serviceBatch(String batch, boolean done, SlaveBrowser browser)
+      throws JsonParseException {
+    BrowserResponseBatch responseBatch = gson.fromJson(batch, BrowserResponseBatch.class);
+    List<BrowserResponseBatch.Entry> entries = responseBatch.getResponses();
+    List<StreamMessage> messages = Lists.newArrayListWithCapacity(entries.size() + 1);
+    for (int i = 0; i < entries.size(); i++) {
+      BrowserResponseBatch.Entry entry = entries.get(i);
+      addResponseId(entry.getResponseId(), browser);
+      handleResponse(browser, entry.getResponse(), done && i == entries.size() - 1, messages);
+    }
+    browser.addResponses(messages);
+    browser.recordResponseBatch(entries.size(), responseBatch.getLatency());
+    logger.trace("Received batch {} from {}", responseBatch, browser);
+  }
+
+  /**
+   * Processes a single response, adding the messages to be queued for the
+   * client to messages.
+   */
+  private void handleResponse(SlaveBrowser browser, Response res, boolean done,
+      List<StreamMessage> messages) {
+    logger.trace("response type: " +  res.getResponseType());
+    // the stream continues with the responses to the next command.
+    done = done && browser.isRunningStreamEndingCommand();
+    // TODO (corysmith): Replace this with polymorphism,
+    // using the response type to create disposable actions.
+    switch (res.getResponseType()) {
+      case BROWSER_READY:
+        handleFileLoadResult(browser, res);
+        // TODO(corysmith): Move the loading of files to a browser into the
+        // server
+        messages.add(new StreamMessage(false,
+            res.copyAs(ResponseType.FILE_LOAD_RESULT, browser.getBrowserInfo())));
+        // the ready state must follow the queued load results.
+        browser.addResponses(messages);
+        messages.clear();
+        browser.ready();
+        break;
+      case FILE_LOAD_RESULT:
+        handleFileLoadResult(browser, res);
+        messages.add(new StreamMessage(done, res));
+        break;
+      case NOOP:
+        break;
+      case LOG:
+        BrowserLog log = res.parseResponse();
+        if (log.getLevel() == 1000) {
+          logger.info("Error in browser: " + res.toString());
+        } else {
+          logger.info("Message from the browser: " + res.toString());
+        }
+        messages.add(new StreamMessage(done, res));
+        break;
+      // reset the browsers fileset.
+      case RESET_RESULT:
+        browser.resetFileSet();
+        logger.debug("Clearing fileset for {}", browser);
+        handleFileLoadResult(browser, res);
+        // queue the load results for the next command to be run.
+        messages.add(new StreamMessage(false,
+            res.copyAs(ResponseType.FILE_LOAD_RESULT, browser.getBrowserInfo())));
+        messages.add(new StreamMessage(done, res));
+        break;
+      case UNKNOWN:
+        logger.error("Recieved Unknown: " + res);
+        messages.add(new StreamMessage(done, res));
+        break;
+      default:
+        messages.add(new StreamMessage(done, res));
+        break;
+    }
+  }
+
   /**
    * @param browser
    * @param res
    */
   private void handleFileLoadResult(SlaveBrowser browser, Response res) {
-    LoadedFiles loadedFiles = gson.fromJson(res.getResponse(), res.getGsonType());
+    LoadedFiles loadedFiles = res.parseResponse();
     Collection<FileResult> allLoadedFiles = loadedFiles.getLoadedFiles();
     logger.info("loaded {} files", allLoadedFiles.size());
     if (!allLoadedFiles.isEmpty()) {
       LinkedHashSet<FileInfo> fileInfos = new LinkedHashSet<FileInfo>();
       Collection<FileSource> errorFiles = new LinkedHashSet<FileSource>();
+      long loadedBytes = 0;
+      long elapsed = 0;
 
       for (FileResult fileResult : allLoadedFiles) {
         FileSource fileSource = fileResult.getFileSource();
 
         if (fileResult.isSuccess()) {
           fileInfos.add(fileSource.toFileInfo(null));
+          if (fileSource.getLength() > 0) {
+            loadedBytes += fileSource.getLength();
+            elapsed += fileResult.getElapsed();
+          }
         } else {
           errorFiles.add(fileSource);
         }
       }
       browser.addFiles(fileInfos, loadedFiles);
+      browser.recordFileLoad(loadedBytes, elapsed);
       if (errorFiles.size() > 0) {
         logger.info("clearing fileset on browser errors:" + errorFiles);
         browser.resetFileSet();
@@ -7,10 +7,12 @@ import com.google.jstestdriver.BrowserInfo;
 import com.google.jstestdriver.BrowserPanic;
 import com.google.jstestdriver.CapturedBrowsers;
 import com.google.jstestdriver.Response;
+import com.google.jstestdriver.Response.ResponseType;
 import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.StreamMessage;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
 
+import org.mortbay.util.ajax.Continuation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +32,8 @@ class CommandGetHandler implements RequestHandler {
   private final HttpServletResponse response;
   private final Gson gson;
   private final CapturedBrowsers capturedBrowsers;
+  /** Set while handling a request that waits for responses without a thread. */
+  private Continuation continuation;
 
   @Inject
   public CommandGetHandler(
@@ -50,7 +54,14 @@ class CommandGetHandler implements RequestHandler {
     } else if (request.getParameter("nextBrowserId") != null) {
       response.getWriter().write(capturedBrowsers.getUniqueId());
     } else {
-      streamResponse(request.getParameter("id"), response.getWriter());
+      continuation = Continuations.suspendable(request);
+      if (request.getParameter("stream") == null) {
+        streamResponse(request.getParameter("id"), response.getWriter());
+      } else if (continuation != null) {
+        streamAvailableResponses(request.getParameter("id"), response.getWriter());
+      } else {
+        streamResponses(request.getParameter("id"), response.getWriter());
+      }
     }
     response.getWriter().flush();
   }
@@ -64,6 +75,60 @@ class CommandGetHandler implements RequestHandler {
     writer.write(gson.toJson(getResponse(browser)));
   }
 
+  /**
+   * Writes each message for the running command as a line of json, flushing
+   * after every message so the client sees it as a chunk. Polls that time out
+   * are written as blank lines to keep the connection open.
+   */
+  private void streamResponses(String id, PrintWriter writer) {
+    SlaveBrowser browser = capturedBrowsers.getBrowser(id);
+    StreamMessage message;
+    do {
+      message = getResponse(browser);
+      if (isIdle(message)) {
+        writer.write("\n");
+      } else {
+        writer.write(gson.toJson(message));
+        writer.write("\n");
+      }
+      writer.flush();
+      if (writer.checkError()) {
+        logger.debug("Client stopped reading the response stream for {}", id);
+        return;
+      }
+    } while (!message.isLast());
+  }
+
+  /**
+   * Waits for the next message without holding a thread, then writes it and
+   * any others already queued as lines of json. The stream ends there, or
+   * with a blank line when the wait times out; the client asks again until it
+   * receives the last message.
+   */
+  private void streamAvailableResponses(String id, PrintWriter writer) {
+    SlaveBrowser browser = capturedBrowsers.getBrowser(id);
+    StreamMessage message = getResponse(browser);
+    while (true) {
+      if (!isIdle(message)) {
+        writer.write(gson.toJson(message));
+      }
+      writer.write("\n");
+      if (message.isLast() || isIdle(message)) {
+        return;
+      }
+      StreamMessage next = browser.pollResponse();
+      if (next == null) {
+        return;
+      }
+      message = substituteBrowserInfo(next);
+    }
+  }
+
+  private boolean isIdle(StreamMessage message) {
+    return !message.isLast()
+        && ResponseType.UNKNOWN.equals(message.getResponse().getResponseType());
+  }
+
   private StreamMessage getResponse(SlaveBrowser browser) {
     StreamMessage cmdResponse = null;
 
@@ -84,7 +149,8 @@ class CommandGetHandler implements RequestHandler {
         response.setType(BrowserPanic.TYPE_NAME);
         return new StreamMessage(true, response);
       }
-      cmdResponse = substituteBrowserInfo(browser.getResponse());
+      cmdResponse = substituteBrowserInfo(continuation == null
+          ? browser.getResponse() : browser.getResponse(continuation));
     }
     return cmdResponse;
   }
@@ -8,7 +8,10 @@ import com.google.jstestdriver.CapturedBrowsers;
 import com.google.jstestdriver.FileSource;
 import com.google.jstestdriver.JsonCommand;
 import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.commands.FileSyncCommand;
+import com.google.jstestdriver.model.Sessions;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
+import com.google.jstestdriver.servlet.fileset.BrowserFileSync;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,25 +32,58 @@ class CommandPostHandler implements RequestHandler {
   private final HttpServletRequest request;
   private final Gson gson;
   private final CapturedBrowsers capturedBrowsers;
+  private final BrowserFileSync fileSync;
 
   @Inject
   public CommandPostHandler(HttpServletRequest request, Gson gson,
-      CapturedBrowsers capturedBrowsers) {
+      CapturedBrowsers capturedBrowsers, BrowserFileSync fileSync) {
     this.request = request;
     this.gson = gson;
     this.capturedBrowsers = capturedBrowsers;
+    this.fileSync = fileSync;
   }
 
   public void handleIt() throws IOException {
-    service(request.getParameter("id"), request.getParameter("data"));
+    service(request.getParameter("id"), request.getParameter("data"),
+        FileSetPostHandler.sessionOf(request), request.getParameter(BrowserFileSync.TEST_CASE_ID),
+        request.getParameter(BrowserFileSync.PREFETCH_TEST_CASE_ID));
   }
 
   public void service(String id, String data) {
+    service(id, data, Sessions.DEFAULT_SESSION, null, null);
+  }
+
+  public void service(String id, String data, String session, String testCaseId) {
+    service(id, data, session, testCaseId, null);
+  }
+
+  /**
+   * Queues a command on the browser. If a test case id is given, the test
+   * case files of the session are loaded into the browser before the command
+   * is run. If a test case to prefetch is given, its files are loaded right
+   * after the command, while the client is still reading the responses.
+   *
+   * @throws IllegalArgumentException if a test case is unknown, before
+   *     anything is queued.
+   */
+  public void service(String id, String data, String session, String testCaseId,
+      String prefetchTestCaseId) {
     SlaveBrowser browser = capturedBrowsers.getBrowser(id);
+    FileSyncCommand sync = testCaseId == null ? null : fileSync.resolve(session, testCaseId);
+    FileSyncCommand prefetch =
+        prefetchTestCaseId == null ? null : fileSync.resolve(session, prefetchTestCaseId);
+
+    if (sync != null) {
+      browser.createCommand(sync);
+    }
 
     data = translateUrls(data);
     logger.trace("Adding command to browser queue: {}", data);
     browser.createCommand(data);
+
+    if (prefetch != null) {
+      browser.createCommand(prefetch);
+    }
   }
 
   // TODO(corysmith): figure out what this does.
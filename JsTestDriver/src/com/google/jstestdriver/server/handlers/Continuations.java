@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.server.handlers;
+
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+import org.mortbay.util.ajax.WaitingContinuation;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Finds the continuations that let long polling handlers release their thread
+ * while waiting.
+ */
+final class Continuations {
+
+  private Continuations() {}
+
+  /**
+   * @return The continuation of a request served by a connector that can
+   *     suspend requests, such as the select channel connector, or null if the
+   *     request has to wait in its thread.
+   */
+  static Continuation suspendable(HttpServletRequest request) {
+    Continuation continuation = ContinuationSupport.getContinuation(request, null);
+    // blocking connectors only offer continuations that wait in the thread.
+    return continuation instanceof WaitingContinuation ? null : continuation;
+  }
+}
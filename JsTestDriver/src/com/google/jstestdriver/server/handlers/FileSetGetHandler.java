@@ -17,18 +17,19 @@ package com.google.jstestdriver.server.handlers;
 
 import com.google.inject.Inject;
 import com.google.jstestdriver.CapturedBrowsers;
-import com.google.jstestdriver.Lock;
+import com.google.jstestdriver.SessionQueue;
+import com.google.jstestdriver.SessionQueue.Ticket;
 import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.Time;
 import com.google.jstestdriver.annotations.ResponseWriter;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
 
+import org.mortbay.util.ajax.Continuation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -41,6 +42,12 @@ class FileSetGetHandler implements RequestHandler {
 
   private static final int HEARTBEAT_TIMEOUT = 2000;
 
+  /**
+   * The milliseconds a queued client is held before it is told its position.
+   * Connectors that can suspend requests hold it without a thread.
+   */
+  static final long QUEUE_WAIT = 10000;
+
   private final HttpServletRequest request;
   private final PrintWriter writer;
 
@@ -72,13 +79,23 @@ class FileSetGetHandler implements RequestHandler {
       sessionHeartBeat(id, sessionId);
     } else {
       if (session.equals("start")) {
-        startSession(id, writer);
+        if (request.getParameter("queue") != null) {
+          queueSession(id, parsePriority(request.getParameter("priority")), writer);
+        } else {
+          startSession(id, writer);
+        }
+      } else if (session.equals("wait")) {
+        waitSession(id, Long.parseLong(request.getParameter("ticket")), writer);
       } else if (session.equals("stop")) {
         stopSession(id, sessionId, writer);
       }
     }
   }
 
+  private int parsePriority(String priority) {
+    return priority == null ? 0 : Integer.parseInt(priority);
+  }
+
   private void sessionHeartBeat(String id, String sessionId) {
     SlaveBrowser browser = capturedBrowsers.getBrowser(id);
     if (browser == null) {
@@ -98,37 +115,89 @@ class FileSetGetHandler implements RequestHandler {
     }
   }
 
+  /**
+   * Starts a session if the browser is free and no one is queued for it,
+   * answering FAILED otherwise.
+   */
   public void startSession(String id, PrintWriter writer) {
     logger.debug("trying to start session for {}", id);
-    System.out.printf("\ntrying to start session for %s", id);
     SlaveBrowser browser = capturedBrowsers.getBrowser(id);
-    String sessionId = UUID.randomUUID().toString();
-    SlaveBrowser slaveBrowser = capturedBrowsers.getBrowser(id);
-
-    if (browser.tryLock(sessionId)) {
-      System.out.printf("\ngot session lock %s", sessionId);
-      logger.debug("got session lock {} for {}", sessionId, id);
-      writer.write(sessionId);
-      slaveBrowser.resetCommandQueue();
-      slaveBrowser.clearResponseQueue();
-      browser.heartBeatLock(sessionId);
+    SessionQueue queue = browser.getSessionQueue();
+    Ticket ticket = queue.enqueue(0);
+    String sessionId = await(queue, ticket, 0);
+    if (sessionId == null || SessionQueue.FAILED.equals(sessionId)) {
+      logger.debug("session unvailable for {}", id);
+      queue.cancel(ticket);
+      writer.write(SessionQueue.FAILED);
     } else {
-      System.out.printf("\nrequest forceUnlock for %s", sessionId);
-      logger.debug("checking session status for {}", id);
-      // session is probably stalled
-      if (!browser.inUse()) {
-        System.out.printf("\nforcing unlock for %s", id);
-        logger.debug("forcing unlock for {}", id);
-        browser.forceUnlock();
-
-        slaveBrowser.resetCommandQueue();
-        slaveBrowser.clearResponseQueue();
-        writer.write(browser.tryLock(sessionId) ? sessionId : "FAILED");
-      } else {
-        logger.debug("session unvailable for {}", id);
-        writer.write("FAILED");
+      begin(browser, sessionId, writer);
+    }
+    writer.flush();
+  }
+
+  /**
+   * Queues for a session, answering with the session id once it is granted,
+   * or with the ticket and its position if it isn't granted within a while.
+   */
+  public void queueSession(String id, int priority, PrintWriter writer) {
+    SlaveBrowser browser = capturedBrowsers.getBrowser(id);
+    Continuation continuation = Continuations.suspendable(request);
+    // a resumed request was already queued.
+    Ticket ticket = continuation == null ? null : (Ticket) continuation.getObject();
+    if (ticket == null) {
+      ticket = browser.getSessionQueue().enqueue(priority);
+      logger.debug("queued {} for {}", ticket, id);
+      if (continuation != null) {
+        continuation.setObject(ticket);
       }
     }
+    respond(browser, ticket, continuation, writer);
+  }
+
+  /** Waits on a queued ticket, answering like {@link #queueSession}. */
+  public void waitSession(String id, long number, PrintWriter writer) {
+    SlaveBrowser browser = capturedBrowsers.getBrowser(id);
+    Ticket ticket = browser.getSessionQueue().getTicket(number);
+    if (ticket == null) {
+      logger.debug("ticket {} for {} was dropped", number, id);
+      writer.write(SessionQueue.FAILED);
+      writer.flush();
+      return;
+    }
+    respond(browser, ticket, Continuations.suspendable(request), writer);
+  }
+
+  private void respond(SlaveBrowser browser, Ticket ticket, Continuation continuation,
+      PrintWriter writer) {
+    SessionQueue queue = browser.getSessionQueue();
+    String sessionId = continuation == null
+        ? await(queue, ticket, QUEUE_WAIT) : queue.await(ticket, continuation, QUEUE_WAIT);
+    if (sessionId == null) {
+      writer.write(String.format("%s %s %s", SessionQueue.QUEUED, ticket.getNumber(),
+          queue.getPosition(ticket)));
+    } else if (SessionQueue.FAILED.equals(sessionId)) {
+      writer.write(SessionQueue.FAILED);
+    } else {
+      begin(browser, sessionId, writer);
+    }
     writer.flush();
   }
-}
\ No newline at end of file
+
+  private String await(SessionQueue queue, Ticket ticket, long millis) {
+    try {
+      return queue.await(ticket, millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /** Hands the browser, with empty queues, to a granted session. */
+  private void begin(SlaveBrowser browser, String sessionId, PrintWriter writer) {
+    logger.debug("got session lock {} for {}", sessionId, browser.getId());
+    browser.resetCommandQueue();
+    browser.clearResponseQueue();
+    browser.heartBeatLock(sessionId);
+    writer.write(sessionId);
+  }
+}
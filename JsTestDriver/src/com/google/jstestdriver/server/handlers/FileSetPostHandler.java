@@ -22,12 +22,18 @@ import com.google.inject.Inject;
 import com.google.jstestdriver.CapturedBrowsers;
 import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.Sessions;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
 import com.google.jstestdriver.servlet.fileset.FileSetRequestHandler;
+import com.google.jstestdriver.servlet.fileset.StreamingFileSetRequestHandler;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.Collection;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -36,7 +42,10 @@ import javax.servlet.http.HttpServletResponse;
  * @author jeremiele@google.com (Jeremie Lenfant-Engelmann)
  */
 class FileSetPostHandler implements RequestHandler {
-  
+
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final int BUFFER_SIZE = 8192;
+
   private final Gson gson = new GsonBuilder().create();
   private final HttpServletRequest request;
   private final HttpServletResponse response;
@@ -60,11 +69,41 @@ class FileSetPostHandler implements RequestHandler {
   @Override
   public void handleIt() throws IOException {
     final FileSetRequestHandler<?> handler = handlerFromAction(request);
-    response.getOutputStream().print(
-        gson.toJson(handler.handle(browserFromId(request.getParameter("id")),
-            request.getParameter("data"))));
+    final SlaveBrowser browser = browserFromId(request.getParameter("id"));
+    final String session = sessionOf(request);
+    final Object result;
+    if (isJsonBody(request) && handler instanceof StreamingFileSetRequestHandler) {
+      Reader body = openBody(request);
+      try {
+        result = ((StreamingFileSetRequestHandler<?>) handler).handle(browser, session, body);
+      } finally {
+        body.close();
+      }
+    } else {
+      result = handler.handle(browser, session, request.getParameter("data"));
+    }
+    response.getOutputStream().print(gson.toJson(result));
+  }
+
+  private boolean isJsonBody(HttpServletRequest req) {
+    return req.getContentType() != null && req.getContentType().startsWith(JSON_CONTENT_TYPE);
   }
 
+  /** Opens the request body, decompressing it as it is read if needed. */
+  private Reader openBody(HttpServletRequest req) throws IOException {
+    InputStream in = req.getInputStream();
+    if ("gzip".equalsIgnoreCase(req.getHeader("Content-Encoding"))) {
+      in = new GZIPInputStream(in, BUFFER_SIZE);
+    }
+    return new BufferedReader(new InputStreamReader(in, "UTF-8"), BUFFER_SIZE);
+  }
+
+
+  /** The session the client named, or the default one. */
+  static String sessionOf(HttpServletRequest req) {
+    String session = req.getParameter(Sessions.PARAMETER);
+    return session == null ? Sessions.DEFAULT_SESSION : session;
+  }
 
   private SlaveBrowser browserFromId(String id) {
     if (id == null) {
@@ -8,6 +8,8 @@ import com.google.jstestdriver.FileInfo;
 import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.annotations.ResponseWriter;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+import com.google.jstestdriver.server.ResourceCache;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -25,15 +27,18 @@ import javax.servlet.http.HttpServletResponse;
 class HomeHandler implements RequestHandler {
 
   private final CapturedBrowsers capturedBrowsers;
+  private final JstdTestCaseStore store;
   private final HttpServletResponse response;
   private final PrintWriter writer;
 
   @Inject
   public HomeHandler(
       CapturedBrowsers capturedBrowsers,
+      JstdTestCaseStore store,
       HttpServletResponse response,
       @ResponseWriter PrintWriter writer) {
     this.capturedBrowsers = capturedBrowsers;
+    this.store = store;
     this.response = response;
     this.writer = writer;
   }
@@ -59,6 +64,16 @@ class HomeHandler implements RequestHandler {
       } else {
         writer.write("Currently waiting...<br/>");
       }
+      writer.write(String.format("Upload budget: %skB per chunk<br/>",
+          info.getUploadBytes() / 1024));
+      if (browser.getResponseBatchCount() > 0) {
+        writer.write(String.format(
+            "Response batches: %s, average size %.1f, average latency %.1fms, max latency %sms<br/>",
+            browser.getResponseBatchCount(),
+            browser.getAverageResponseBatchSize(),
+            browser.getAverageResponseBatchLatency(),
+            browser.getMaxResponseBatchLatency()));
+      }
       writer.write("<ul style='display:none'>");
       for (FileInfo fileInfo : browser.getFileSet()) {
         writer.write("<li>");
@@ -69,6 +84,11 @@ class HomeHandler implements RequestHandler {
       writer.write("</div>");
       writer.flush();
     }
+    ResourceCache cache = store.getResourceCache();
+    writer.write(String.format(
+        "<p>File cache: %skB of %skB, hits: %s, misses: %s, evictions: %s</p>",
+        cache.getSize() / 1024, cache.getCapacity() / 1024, cache.getHits(), cache.getMisses(),
+        cache.getEvictions()));
     writer.write("</body></html>");
     writer.flush();
   }
@@ -32,6 +32,7 @@ import static com.google.jstestdriver.server.handlers.pages.SlavePageRequest.TES
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
 import com.google.inject.Key;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
@@ -53,6 +54,7 @@ import com.google.jstestdriver.annotations.Port;
 import com.google.jstestdriver.config.ExecutionType;
 import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.model.HandlerPathPrefix;
+import com.google.jstestdriver.protocol.ProtocolGson;
 import com.google.jstestdriver.requesthandlers.HttpMethod;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
 import com.google.jstestdriver.requesthandlers.RequestHandlersModule;
@@ -230,6 +232,10 @@ public class JstdHandlersModule extends RequestHandlersModule {
         browsers);
   }
 
+  @Provides Gson provideGson() {
+    return ProtocolGson.create();
+  }
+
   @Provides @Singleton List<FileSetRequestHandler<?>> provideFileSetRequestHandlers(
       BrowserFileCheck browserFileCheck, TestCaseUpload serverFileUpload, DeltaUpload deltaUpload) {
     return ImmutableList.of(browserFileCheck, serverFileUpload, deltaUpload);
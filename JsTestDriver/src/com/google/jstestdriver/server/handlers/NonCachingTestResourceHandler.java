@@ -35,7 +35,8 @@ public class NonCachingTestResourceHandler implements RequestHandler {
   @Override
   public void handleIt() throws IOException {
     response.setHeader("Pragma", "no-cache");
-    response.setHeader("Cache-Control", "private, no-cache, no-store, max-age=0, must-revalidate");
+    // no-store would keep the browsers from revalidating against the ETag.
+    response.setHeader("Cache-Control", "private, no-cache, max-age=0, must-revalidate");
     response.setHeader("Expires", TIME_IN_THE_PAST);
     handler.handleIt();
   }
@@ -144,8 +144,7 @@ class StandaloneRunnerHandler implements RequestHandler {
                       ((System.currentTimeMillis() - testStart) / 1000)});
                   break;
                 case FILE_LOAD_RESULT:
-                  LoadedFiles files =
-                      gson.fromJson(response.getResponse(), response.getGsonType());
+                  LoadedFiles files = response.parseResponse();
                   for (FileResult result : files.getLoadedFiles()) {
                     if (result.isSuccess()) {
                       loaded++;
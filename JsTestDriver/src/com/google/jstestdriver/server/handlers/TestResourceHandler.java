@@ -17,14 +17,16 @@ package com.google.jstestdriver.server.handlers;
 
 import com.google.inject.Inject;
 import com.google.jstestdriver.FilesCache;
+import com.google.jstestdriver.model.Sessions;
 import com.google.jstestdriver.requesthandlers.RequestHandler;
+import com.google.jstestdriver.server.EncodedResource;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -52,23 +54,67 @@ class TestResourceHandler implements RequestHandler {
   @Override
   public void handleIt() throws IOException {
     String fileName = request.getPathInfo().substring(1); /* remove the first / */
-    service(fileName, response.getWriter());
+    service(FileSetPostHandler.sessionOf(request), fileName, request.getHeader("If-None-Match"),
+        request.getHeader("Accept-Encoding"), response.getOutputStream());
   }
 
-  public void service(String fileName, PrintWriter writer) throws IOException {
+  public void service(String fileName, String ifNoneMatch, String acceptEncoding,
+      OutputStream out) throws IOException {
+    service(Sessions.DEFAULT_SESSION, fileName, ifNoneMatch, acceptEncoding, out);
+  }
+
+  /**
+   * Writes the pre-encoded bytes of a file of a session, answering with a 304
+   * when the browser already has them and with the gzipped variant when it
+   * accepts it.
+   */
+  public void service(String session, String fileName, String ifNoneMatch,
+      String acceptEncoding, OutputStream out) throws IOException {
+    EncodedResource resource;
     try {
-      String fileContent = store.getFileContent(fileName);
-      String mimeType = parseMimeType(fileName);
-      if (mimeType != null) {
-        response.setContentType(mimeType);
-      } else {
-        response.setHeader("Content-Type", "text/plain");
-      }
-      writer.write(fileContent);
-      writer.flush();
+      resource = store.getEncodedResource(session, fileName);
     } catch (FilesCache.MissingFileException e) {
       response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    String mimeType = parseMimeType(fileName);
+    if (mimeType != null) {
+      response.setContentType(mimeType);
+    } else {
+      response.setHeader("Content-Type", "text/plain");
+    }
+    response.setHeader("ETag", resource.getEtag());
+    response.setHeader("Vary", "Accept-Encoding");
+    if (resource.matches(ifNoneMatch)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    boolean gzip = resource.hasGzipped() && acceptsGzip(acceptEncoding);
+    if (gzip) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+    response.setContentLength(resource.getLength(gzip));
+    resource.writeTo(out, gzip);
+    out.flush();
+  }
+
+  private boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim();
+      if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+        for (int i = 1; i < parameters.length; i++) {
+          if (parameters[i].trim().matches("q=0(\\.0*)?")) {
+            return false;
+          }
+        }
+        return true;
+      }
     }
+    return false;
   }
 
   private String parseMimeType(String fileName) {
@@ -23,6 +23,7 @@ import com.google.jstestdriver.hooks.FileInfoScheme;
 import com.google.jstestdriver.model.HandlerPathPrefix;
 import com.google.jstestdriver.model.JstdTestCase;
 import com.google.jstestdriver.server.JstdTestCaseStore;
+import com.google.jstestdriver.server.JstdTestCaseStore.Snapshot;
 import com.google.jstestdriver.util.HtmlWriter;
 
 import org.slf4j.Logger;
@@ -63,18 +64,19 @@ public class TestFileUtil {
    */
   public void writeTestFiles(HtmlWriter writer, String testCaseId) {
     JstdTestCase testCase;
+    Snapshot snapshot = store.snapshot();
 
-    if (store.getCase(testCaseId) == null) { // no optimization without testcase id
-      if (store.getCases().size() == 1) {
-        testCase = store.getCases().iterator().next();
+    if (snapshot.getCase(testCaseId) == null) { // no optimization without testcase id
+      if (snapshot.getCases().size() == 1) {
+        testCase = snapshot.getCases().iterator().next();
         logger.debug("One test case found, writing: {}", testCase);
       } else {
-        logger.debug("More than one testcase found:\n{}", store.getCases());
+        logger.debug("More than one testcase found:\n{}", snapshot.getCases());
         // no point in writing out random test cases, just quit.
         return;
       }
     } else {
-      testCase = store.getCase(testCaseId);
+      testCase = snapshot.getCase(testCaseId);
       logger.debug("Testcase found at id {}: {}", testCaseId, testCase);
     }
 
@@ -31,8 +31,15 @@ public class BrowserFileCheck implements FileSetRequestHandler<BrowserFileSet> {
   }
 
   @Override
-  public BrowserFileSet handle(SlaveBrowser browser, String data) {
-    JstdTestCase testCase = gson.fromJson(data, JstdTestCase.class);
+  public BrowserFileSet handle(SlaveBrowser browser, String session, String data) {
+    // the browser's files are compared by digest, so the session doesn't matter.
+    return check(browser, gson.fromJson(data, JstdTestCase.class));
+  }
+
+  /**
+   * Compares the files loaded in the browser with the test case.
+   */
+  public BrowserFileSet check(SlaveBrowser browser, JstdTestCase testCase) {
     if (browser == null) {
       logger.debug("no browser, returning empty set.");
       return new BrowserFileSet(Collections.<FileInfo>emptyList(),
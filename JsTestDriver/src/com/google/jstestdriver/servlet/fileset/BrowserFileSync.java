@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.servlet.fileset;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.Command;
+import com.google.jstestdriver.FileInfo;
+import com.google.jstestdriver.FileSource;
+import com.google.jstestdriver.FileUploader;
+import com.google.jstestdriver.JsTestDriverFileFilter;
+import com.google.jstestdriver.JsonCommand;
+import com.google.jstestdriver.JsonCommand.CommandType;
+import com.google.jstestdriver.SlaveBrowser;
+import com.google.jstestdriver.browser.BrowserFileSet;
+import com.google.jstestdriver.commands.FileSyncCommand;
+import com.google.jstestdriver.hooks.FileInfoScheme;
+import com.google.jstestdriver.model.HandlerPathPrefix;
+import com.google.jstestdriver.model.JstdTestCase;
+import com.google.jstestdriver.model.Sessions;
+import com.google.jstestdriver.server.JstdTestCaseStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings the files loaded in a browser up to date with a test case from the
+ * {@link JstdTestCaseStore}, by queuing the RESET and LOADTEST commands on the
+ * browser that the client used to send itself.
+ */
+public class BrowserFileSync {
+  /** The command parameter naming the test case to load before the command. */
+  public static final String TEST_CASE_ID = "testCaseId";
+
+  /**
+   * The command parameter naming the test case to load after the command, so
+   * the browser doesn't wait for the client before loading it.
+   */
+  public static final String PREFETCH_TEST_CASE_ID = "prefetchTestCaseId";
+
+  private static final Logger logger = LoggerFactory.getLogger(BrowserFileSync.class);
+
+  private final JstdTestCaseStore store;
+  private final BrowserFileCheck fileCheck;
+  private final JsTestDriverFileFilter filter;
+  private final HandlerPathPrefix prefix;
+  private final Set<FileInfoScheme> schemes;
+  private final Gson gson;
+
+  @Inject
+  public BrowserFileSync(JstdTestCaseStore store,
+      BrowserFileCheck fileCheck,
+      JsTestDriverFileFilter filter,
+      HandlerPathPrefix prefix,
+      Set<FileInfoScheme> schemes,
+      Gson gson) {
+    this.store = store;
+    this.fileCheck = fileCheck;
+    this.filter = filter;
+    this.prefix = prefix;
+    this.schemes = schemes;
+    this.gson = gson;
+  }
+
+  /**
+   * Queues the loading of the test case on the browser. The files are
+   * compared when the browser reaches this point in its queue, and the
+   * responses of the loads are streamed ahead of those of the next command.
+   *
+   * @throws IllegalArgumentException if the session has no such test case.
+   */
+  public void sync(SlaveBrowser browser, String session, String testCaseId) {
+    browser.createCommand(resolve(session, testCaseId));
+  }
+
+  /**
+   * Looks up the test case to load when the command is posted, so an unknown
+   * test case fails the client's request instead of the browser's poll. Only
+   * the comparison with the browser's files waits for the dequeue, as it
+   * depends on what the commands ahead load. The files of the test case are
+   * pinned in the store until the browser has had time to fetch them.
+   *
+   * @throws IllegalArgumentException if the session has no such test case.
+   */
+  public FileSyncCommand resolve(String session, String testCaseId) {
+    JstdTestCase testCase = store.getCase(session, testCaseId);
+    if (testCase == null) {
+      throw new IllegalArgumentException(
+          String.format("Unknown test case %s of session '%s'", testCaseId, session));
+    }
+    store.pin(session, testCase);
+    return new FileSyncCommand(this, session, testCase, true);
+  }
+
+  /**
+   * Determines the commands that load the test case into the browser. If the
+   * browser has to be reset, the files left to load are determined once the
+   * reset has finished.
+   */
+  public List<Command> determineCommands(SlaveBrowser browser, String session,
+      JstdTestCase testCase, boolean allowReset) {
+    BrowserFileSet browserFileSet = fileCheck.check(browser, testCase);
+    if (allowReset && (browserFileSet.shouldReset() || !browserFileSet.getExtraFiles().isEmpty())) {
+      logger.debug("reset browser {} testcase {}", browser, testCase.getId());
+      return Lists.<Command>newArrayList(
+          new Command(gson.toJson(new JsonCommand(CommandType.RESET,
+              resetParameters(session, testCase.getId()))), false),
+          new FileSyncCommand(this, session, testCase, false));
+    }
+    // need a linked hashset here to avoid adding a file more than once.
+    Set<FileInfo> filesToLoad = new LinkedHashSet<FileInfo>();
+    for (FileInfo file : browserFileSet.getFilesToUpload()) {
+      filesToLoad.addAll(filter.resolveFilesDeps(file, testCase.getServable()));
+    }
+    return createLoadCommands(browser.getBrowserInfo(), session, filesToLoad);
+  }
+
+  /**
+   * The runner page only preloads test cases of the default session, so the
+   * browser is reset without a preload for the other sessions.
+   */
+  public static List<String> resetParameters(String session, String testCaseId) {
+    if (Sessions.DEFAULT_SESSION.equals(session)) {
+      return Lists.newArrayList("preload", testCaseId);
+    }
+    return Lists.newArrayList("load");
+  }
+
+  private List<Command> createLoadCommands(BrowserInfo info, String session,
+      Set<FileInfo> files) {
+    List<FileSource> sources = Lists.newArrayList();
+    String query = Sessions.appendSession("", session);
+    for (FileInfo file : files) {
+      if (!file.isServeOnly()) {
+        sources.add(file.toFileSource(prefix, schemes, query));
+      }
+    }
+    List<Command> commands = Lists.newArrayList();
+    for (int i = 0, end; i < sources.size(); i = end) {
+      end = FileUploader.findChunkEnd(sources, i, info.getUploadSize(), info.getUploadBytes());
+      List<String> loadParameters = Lists.newArrayList(
+          gson.toJson(sources.subList(i, end)), "false");
+      commands.add(new Command(
+          gson.toJson(new JsonCommand(CommandType.LOADTEST, loadParameters)), false));
+    }
+    return commands;
+  }
+}
@@ -2,22 +2,37 @@
 
 package com.google.jstestdriver.servlet.fileset;
 
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import com.google.inject.Inject;
+import com.google.jstestdriver.FileInfo;
 import com.google.jstestdriver.SlaveBrowser;
 import com.google.jstestdriver.model.JstdTestCaseDelta;
 import com.google.jstestdriver.server.JstdTestCaseStore;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * @author corysmith@google.com (Cory Smith)
  *
  */
-public class DeltaUpload implements FileSetRequestHandler<String> {
+public class DeltaUpload implements StreamingFileSetRequestHandler<String> {
   
   public static final String ACTION = "deltaUpdate";
+
+  /** The names of the file lists in a streamed {@link JstdTestCaseDelta}. */
+  public static final String DEPENDENCIES = "dependencies";
+  public static final String TESTS = "tests";
+  public static final String PLUGINS = "plugins";
+
+  /** The amount of file content read before it is applied to the store. */
+  static final long APPLY_BYTES = 1024 * 1024;
+
   private final JstdTestCaseStore store;
   private final Gson gson;
   
@@ -28,15 +43,78 @@ public class DeltaUpload implements FileSetRequestHandler<String> {
   }
   
   @Override
-  public String handle(SlaveBrowser browser, String data) {
+  public String handle(SlaveBrowser browser, String session, String data) {
     Collection<JstdTestCaseDelta> deltas = deserialize(data);
     for (JstdTestCaseDelta delta : deltas) {
-      store.applyDelta(delta);
+      store.applyDelta(session, delta);
     }
     return "{\"ok\":1}";
   }
   
 
+  /**
+   * Reads the deltas a file at a time, applying them to the store in batches
+   * so the request body is never held in memory as a whole.
+   */
+  @Override
+  public String handle(SlaveBrowser browser, String session, Reader data)
+      throws IOException {
+    JsonReader reader = new JsonReader(data);
+    PendingDelta pending = new PendingDelta();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        List<FileInfo> files = pending.filesFor(name);
+        if (files == null) {
+          reader.skipValue();
+          continue;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+          FileInfo file = gson.fromJson(reader, FileInfo.class);
+          files.add(file);
+          pending.bytes += file.getData() == null ? 0 : file.getData().length();
+          if (pending.bytes > APPLY_BYTES) {
+            store.applyDelta(session, pending.toDelta());
+            pending = new PendingDelta();
+            // the batch may end mid list, so continue the same list.
+            files = pending.filesFor(name);
+          }
+        }
+        reader.endArray();
+      }
+      reader.endObject();
+    }
+    reader.endArray();
+    store.applyDelta(session, pending.toDelta());
+    return "{\"ok\":1}";
+  }
+
+  /** The files read since the last batch was applied. */
+  private static class PendingDelta {
+    final List<FileInfo> dependencies = Lists.newArrayList();
+    final List<FileInfo> tests = Lists.newArrayList();
+    final List<FileInfo> plugins = Lists.newArrayList();
+    long bytes = 0;
+
+    List<FileInfo> filesFor(String name) {
+      if (DEPENDENCIES.equals(name)) {
+        return dependencies;
+      } else if (TESTS.equals(name)) {
+        return tests;
+      } else if (PLUGINS.equals(name)) {
+        return plugins;
+      }
+      return null;
+    }
+
+    JstdTestCaseDelta toDelta() {
+      return new JstdTestCaseDelta(dependencies, tests, plugins);
+    }
+  }
+
   private Collection<JstdTestCaseDelta> deserialize(String data) {
     return gson.fromJson(data, new TypeToken<Collection<JstdTestCaseDelta>>() {}.getType());
   }
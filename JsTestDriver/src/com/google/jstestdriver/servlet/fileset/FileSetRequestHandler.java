@@ -8,10 +8,11 @@ import com.google.jstestdriver.SlaveBrowser;
 
 /**
  * Defines the handler for the FileSetServlet. Each handler processes the 
- * request and data, returning an object indicating the response.
+ * request and data for the session of the client, returning an object
+ * indicating the response.
  * @author corysmith@google.com (Cory Smith)
  */
 public interface FileSetRequestHandler<T> {
-  T handle(SlaveBrowser browser, String data);
+  T handle(SlaveBrowser browser, String session, String data);
   boolean canHandle(String action);
 }
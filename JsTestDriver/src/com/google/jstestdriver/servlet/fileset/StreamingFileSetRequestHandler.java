@@ -0,0 +1,16 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.jstestdriver.servlet.fileset;
+
+import com.google.jstestdriver.SlaveBrowser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A handler for the FileSetServlet that can also read its data as a json
+ * request body, processing it while it is received.
+ */
+public interface StreamingFileSetRequestHandler<T> extends FileSetRequestHandler<T> {
+  T handle(SlaveBrowser browser, String session, Reader data) throws IOException;
+}
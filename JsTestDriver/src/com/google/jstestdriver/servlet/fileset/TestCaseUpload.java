@@ -29,11 +29,12 @@ public class TestCaseUpload implements FileSetRequestHandler<Collection<JstdTest
   }
 
   @Override
-  public Collection<JstdTestCaseDelta> handle(SlaveBrowser browser, String data) {
+  public Collection<JstdTestCaseDelta> handle(SlaveBrowser browser, String session,
+      String data) {
     Collection<JstdTestCase> testCases = deserialize(data);
     List<JstdTestCaseDelta> deltas = Lists.newArrayList(); 
     for (JstdTestCase testCase : testCases) {
-      deltas.add(store.addCase(testCase));
+      deltas.add(store.addCase(session, testCase));
     }
     return deltas;
   }
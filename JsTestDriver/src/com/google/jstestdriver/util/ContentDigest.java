@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.jstestdriver.util;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the digests used to identify the contents of test resources,
+ * independent of their timestamps.
+ */
+public class ContentDigest {
+
+  private static final String ALGORITHM = "SHA-1";
+
+  private ContentDigest() {}
+
+  /** Digests the bytes of a file. */
+  public static String of(File file) {
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      MessageDigest digest = create();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+      return new String(Hex.encodeHex(digest.digest()));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to digest " + file, e);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /** Digests a string, such as a combination of other digests. */
+  public static String of(String contents) {
+    try {
+      return new String(Hex.encodeHex(create().digest(contents.getBytes("UTF-8"))));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Digests an array of bytes. */
+  public static String of(byte[] bytes) {
+    return new String(Hex.encodeHex(create().digest(bytes)));
+  }
+
+  private static MessageDigest create() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}